@@ -1,9 +1,16 @@
 import model.User;
 import service.AppointmentService;
+import service.AsyncAppointmentService;
+import service.CacheWarmer;
+import service.HospitalException;
 import ui.LoginMenu;
 import ui.MainMenu;
+import dao.DAOFactory;
 import dao.DBConnection;
+import dao.ShardRouter;
+import util.StartupTimer;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 
 public class App {
@@ -22,8 +29,28 @@ public class App {
         printWelcomeBanner();
 
         try {
+            StartupTimer startupTimer = new StartupTimer();
+
             // Test database connection
+            long connectStart = System.nanoTime();
             testDatabaseConnection();
+            startupTimer.record("Database connection", connectStart, null);
+
+            // Availability checks are answered from the in-memory schedule index once it has loaded
+            long indexStart = System.nanoTime();
+            try {
+                int indexed = new AppointmentService().loadScheduleIndex();
+                startupTimer.record("Schedule index", indexStart, indexed + " upcoming appointments");
+            } catch (HospitalException e) {
+                System.err.println("Warning: schedule index not loaded - " + e.getMessage());
+            }
+
+            // Warm caches so the first requests after a restart are not all misses
+            if (CacheWarmer.isEnabled()) {
+                System.out.println("Warming up caches...");
+                new CacheWarmer(new AppointmentService(), startupTimer).warmUp();
+            }
+            startupTimer.printReport();
 
             // Main application loop
             runApplication();
@@ -84,9 +111,16 @@ public class App {
      * Test database connection
      */
     private static void testDatabaseConnection() {
+        if (DAOFactory.isInMemory()) {
+            System.out.println("Using in-memory storage (data is lost on exit)\n");
+            return;
+        }
+
         System.out.print("Connecting to database... ");
-        try {
-            DBConnection.getConnection();
+        try (Connection conn = DBConnection.getConnection()) {
+            if (!conn.isValid(5)) {
+                throw new SQLException("Server did not answer the connection check");
+            }
             System.out.println("✓ Connected successfully!\n");
         } catch (SQLException e) {
             System.err.println("\n\n❌ Database Connection Failed!");
@@ -107,9 +141,11 @@ public class App {
         try {
             // Shutdown appointment service thread pool
             AppointmentService.shutdown();
+            AsyncAppointmentService.shutdown();
 
-            // Close database connection
+            // Close pooled database connections
             DBConnection.closeConnection();
+            ShardRouter.closeConnections();
 
             System.out.println("✓ Resources cleaned up successfully");
 
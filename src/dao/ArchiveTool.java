@@ -0,0 +1,32 @@
+package dao;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Moves appointments older than the retention window from appointments to appointments_archive on every shard.
+ * The window is -Darchive.retentionDays (default 365); rows go in transactions of -Darchive.batchSize
+ * (default 1000) so bookings are never blocked for long, and an interrupted run can simply be started again.
+ * Meant to run nightly from cron while the application keeps serving; archived rows still show up in
+ * histories and reports.
+ *
+ * Usage: java -Darchive.retentionDays=365 -cp bin dao.ArchiveTool
+ */
+public class ArchiveTool {
+    private static final int RETENTION_DAYS = Math.max(1, Integer.getInteger("archive.retentionDays", 365));
+
+    public static void main(String[] args) {
+        LocalDate cutoff = LocalDate.now().minusDays(RETENTION_DAYS);
+
+        try {
+            int moved = new MySqlAppointmentDAO().archiveAppointmentsBefore(cutoff);
+            System.out.println("✓ Archived " + moved + " appointments dated before " + cutoff);
+        } catch (SQLException e) {
+            System.err.println("Archiving failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            ShardRouter.closeConnections();
+            DBConnection.closeConnection();
+        }
+    }
+}
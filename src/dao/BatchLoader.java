@@ -0,0 +1,149 @@
+package dao;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * DataLoader-style request coalescing for primary-key lookups.
+ * Keys requested within a short window (-Ddao.batchWindowMs, default 2) are collected,
+ * up to -Ddao.maxBatchSize keys (default 100), and loaded with one IN (...) query.
+ * Concurrent requests for the same key share a single future.
+ * A window of 0 disables batching and callers query directly.
+ */
+public class BatchLoader<K, V> {
+    private static final long WINDOW_MS = Long.getLong("dao.batchWindowMs", 2);
+    private static final int MAX_BATCH_SIZE = Math.max(1, Integer.getInteger("dao.maxBatchSize", 100));
+
+    // One timer thread for all loaders; batches themselves run on virtual threads
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "batch-loader-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final BatchFunction<K, V> batchFunction;
+
+    // Keys waiting for the current window to close (guarded by this)
+    private Batch<K, V> pending = new Batch<>();
+
+    public BatchLoader(BatchFunction<K, V> batchFunction) {
+        this.batchFunction = batchFunction;
+    }
+
+    public static boolean isEnabled() {
+        return WINDOW_MS > 0;
+    }
+
+    // Queue a key; the future completes with the value, or null if no row matched
+    public CompletableFuture<V> load(K key) {
+        Deadline callerDeadline = QueryContext.getDeadline();
+        boolean callerNeedsPrimary = DBConnection.mustReadFromPrimary();
+        Batch<K, V> fullBatch = null;
+        CompletableFuture<V> future;
+
+        synchronized (this) {
+            pending.primaryReads |= callerNeedsPrimary;
+            future = pending.futures.get(key);
+            if (future != null) {
+                pending.extendDeadline(callerDeadline);
+                return future;
+            }
+
+            future = new CompletableFuture<>();
+            if (pending.futures.isEmpty()) {
+                pending.deadline = callerDeadline;
+                Batch<K, V> batch = pending;
+                timer.schedule(() -> flush(batch), WINDOW_MS, TimeUnit.MILLISECONDS);
+            } else {
+                pending.extendDeadline(callerDeadline);
+            }
+            pending.futures.put(key, future);
+
+            if (pending.futures.size() >= MAX_BATCH_SIZE) {
+                fullBatch = pending;
+                pending = new Batch<>();
+            }
+        }
+
+        if (fullBatch != null) {
+            Batch<K, V> batch = fullBatch;
+            dispatcher.execute(() -> dispatch(batch));
+        }
+        return future;
+    }
+
+    // Blocking variant for DAO methods that keep their synchronous signature; honours the caller's deadline
+    public V get(K key) throws SQLException {
+        Deadline deadline = QueryContext.getDeadline();
+        try {
+            CompletableFuture<V> future = load(key);
+            return deadline.isBounded()
+                    ? future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS)
+                    : future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for batched lookup", e);
+        } catch (TimeoutException e) {
+            throw new SQLTimeoutException("Query deadline exceeded");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Batched lookup failed", e.getCause());
+        }
+    }
+
+    // Window expired: dispatch the batch unless it was already sent for being full
+    private void flush(Batch<K, V> batch) {
+        synchronized (this) {
+            if (pending != batch) {
+                return;
+            }
+            pending = new Batch<>();
+        }
+        dispatcher.execute(() -> dispatch(batch));
+    }
+
+    // The batch query runs until the last waiting caller's deadline, on the primary if any caller
+    // needs read-your-writes
+    private void dispatch(Batch<K, V> batch) {
+        try {
+            Set<K> keys = Collections.unmodifiableSet(new LinkedHashSet<>(batch.futures.keySet()));
+            Map<K, V> values = QueryContext.withDeadline(batch.deadline, () -> batch.primaryReads
+                    ? QueryContext.withPrimaryReads(() -> batchFunction.load(keys))
+                    : batchFunction.load(keys));
+            batch.futures.forEach((key, future) -> future.complete(values.get(key)));
+        } catch (SQLException | RuntimeException e) {
+            batch.futures.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    // Keys collected in one window and the deadline the batch query runs under
+    private static class Batch<K, V> {
+        private final Map<K, CompletableFuture<V>> futures = new HashMap<>();
+        private Deadline deadline = Deadline.none();
+        private boolean primaryReads;
+
+        private void extendDeadline(Deadline callerDeadline) {
+            deadline = deadline.latest(callerDeadline);
+        }
+    }
+
+    @FunctionalInterface
+    public interface BatchFunction<K, V> {
+        Map<K, V> load(Set<K> keys) throws SQLException;
+    }
+}
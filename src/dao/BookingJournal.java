@@ -0,0 +1,640 @@
+package dao;
+
+import model.Appointment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTimeoutException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-behind booking journal (-Dbooking.writeBehind=true).
+ * A booking reserves one of its doctor-day's places in memory, together with the patient's one place with
+ * the doctor that day, is appended to a local journal file and is acknowledged once the journal is fsync'd;
+ * bookings arriving while an fsync is running share the next one (group commit). A flusher thread then
+ * inserts journaled bookings into MySQL with multi-row INSERTs.
+ * Ids are assigned here, from blocks reserved in each shard's journal_id_sequence within the lowest
+ * 100 billion ids of the shard's range. The journal only opens when every shard's AUTO_INCREMENT is already
+ * past that range, so journal ids never meet a directly booked id; replaying the journal after a crash is
+ * idempotent: a row already stored under the id with the same patient, doctor and date is skipped. Bookings that cannot be stored are appended to
+ * -Dbooking.conflictsPath (default booking.conflicts) and reported when the journal opens.
+ * Assumes this process is the only one booking while the journal is enabled. MySQL storage only: with
+ * -Dstorage=memory bookings are already as fast as the journal could make them.
+ */
+public class BookingJournal {
+    private static final int RECORD_SIZE = 32;
+    private static final int MAX_GROUP_SIZE = 256;
+
+    private static final int FLUSH_BATCH_SIZE = Math.max(1, Integer.getInteger("booking.flushBatchSize", 500));
+    private static final long SHUTDOWN_FLUSH_MS = Long.getLong("booking.shutdownFlushMs", 5000);
+    private static final long COMPACT_BYTES = Long.getLong("booking.journalCompactBytes", 1024 * 1024);
+    private static final long FLUSH_RETRY_MS = 1000;
+
+    // Shard k owns ids from k * SHARD_ID_SPAN + 1; the journal takes the first JOURNAL_ID_RANGE of them
+    private static final long SHARD_ID_SPAN = 1_000_000_000_000L;
+    private static final long JOURNAL_ID_RANGE = 100_000_000_000L;
+    private static final int ID_BLOCK_SIZE = 1000;
+
+    private final FileChannel channel;
+    private final MySqlAppointmentDAO appointmentDAO = new MySqlAppointmentDAO();
+
+    // Places per doctor-day held by journaled bookings not yet in MySQL, and those bookings by id
+    private final Map<Long, Integer> reservedPlaces = new ConcurrentHashMap<>();
+    // Patients holding those places per doctor-day; only changed inside reservedPlaces' compute for the same
+    // key, so the duplicate check and the place count move together
+    private final Map<Long, Set<Integer>> pendingPatients = new ConcurrentHashMap<>();
+    private final Map<Long, Appointment> pendingById = new ConcurrentHashMap<>();
+
+    // Told about each journaled booking once it is stored in MySQL
+    private final Consumer<Appointment> onStored;
+
+    // Unused rest of the id block reserved for each shard, guarded by idLock; a ReentrantLock rather than a
+    // monitor, so a virtual thread waiting on the refill's JDBC call does not pin its carrier
+    private final Map<Integer, IdBlock> idBlocks = new HashMap<>();
+    private final ReentrantLock idLock = new ReentrantLock();
+
+    // Bookings that could not be stored, one CSV line each: time, id, patient, doctor, date, reason
+    private final Path conflictsPath;
+
+    private final LinkedBlockingQueue<PendingAppend> appendQueue = new LinkedBlockingQueue<>();
+    private final LinkedBlockingQueue<Record> flushQueue = new LinkedBlockingQueue<>();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(MAX_GROUP_SIZE * RECORD_SIZE);
+
+    // Sequence numbers of the last record written to the journal and the last one stored in MySQL
+    private volatile long appendedSeq;
+    private volatile long flushedSeq;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushed = flushLock.newCondition();
+
+    private volatile boolean running = true;
+    private volatile IOException writeFailure;
+    private final Thread writer;
+    private final Thread flusher;
+
+    // Metrics
+    private final AtomicLong groupCommits = new AtomicLong();
+    private final AtomicLong flushedCount = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+
+    private BookingJournal(Path path, Path conflictsPath, Consumer<Appointment> onStored) throws IOException {
+        this.onStored = onStored;
+        this.conflictsPath = conflictsPath;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+        if (Files.exists(conflictsPath)) {
+            try (Stream<String> lines = Files.lines(conflictsPath, StandardCharsets.UTF_8)) {
+                conflicts.set(lines.count());
+            }
+            if (conflicts.get() > 0) {
+                System.err.println("Warning: " + conflicts.get() + " journaled bookings could not be stored - see "
+                        + conflictsPath.toAbsolutePath());
+            }
+        }
+
+        writer = new Thread(this::runWriter, "booking-journal-writer");
+        writer.setDaemon(true);
+        flusher = new Thread(this::runFlusher, "booking-journal-flusher");
+        flusher.setDaemon(true);
+        writer.start();
+        flusher.start();
+    }
+
+    // Open the journal at -Dbooking.journalPath (default booking.journal) when write-behind is enabled; null
+    // when disabled, with in-memory storage, when a shard's AUTO_INCREMENT still reaches into the journal's ids
+    // or when the file cannot be opened, so bookings stay synchronous (an existing journal is kept for the next
+    // start). onStored is called from the flusher thread for every journaled booking that reaches MySQL
+    public static BookingJournal openIfEnabled(Consumer<Appointment> onStored) {
+        if (!Boolean.getBoolean("booking.writeBehind")) {
+            return null;
+        }
+        if (DAOFactory.isInMemory()) {
+            System.err.println("Warning: write-behind booking needs MySQL storage, booking synchronously");
+            return null;
+        }
+        try {
+            List<Long> nextIds = new MySqlAppointmentDAO().getAutoIncrementByShard();
+            for (int shard = 0; shard < nextIds.size(); shard++) {
+                long ceiling = shard * SHARD_ID_SPAN + JOURNAL_ID_RANGE;
+                if (nextIds.get(shard) <= ceiling) {
+                    System.err.println("Warning: write-behind booking needs the AUTO_INCREMENT of appointments on shard "
+                            + shard + " above " + ceiling + " (it is " + nextIds.get(shard)
+                            + "), booking synchronously");
+                    return null;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Warning: could not check appointment id ranges, booking synchronously - "
+                    + e.getMessage());
+            return null;
+        }
+
+        Path path = Paths.get(System.getProperty("booking.journalPath", "booking.journal"));
+        Path conflictsPath = Paths.get(System.getProperty("booking.conflictsPath", "booking.conflicts"));
+        try {
+            return new BookingJournal(path, conflictsPath, onStored);
+        } catch (IOException e) {
+            System.err.println("Warning: booking journal " + path + " unavailable, booking synchronously - "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    // Claim a place on a doctor's day for a patient's booking about to be journaled; freePlaces is how many the
+    // day has left in the database. Refused when pending bookings already hold that many, or one of them is
+    // the patient's with the doctor that day
+    public Reservation reserve(int patientId, int doctorId, LocalDate date, int freePlaces) {
+        Reservation[] outcome = new Reservation[1];
+        reservedPlaces.compute(slotKey(doctorId, date), (key, held) -> {
+            int current = held == null ? 0 : held;
+            Set<Integer> patients = pendingPatients.get(key);
+            if (patients != null && patients.contains(patientId)) {
+                outcome[0] = Reservation.PATIENT_ALREADY_BOOKED;
+                return held;
+            }
+            if (current >= freePlaces) {
+                outcome[0] = Reservation.FULLY_BOOKED;
+                return held;
+            }
+            pendingPatients.computeIfAbsent(key, k -> new HashSet<>()).add(patientId);
+            outcome[0] = Reservation.RESERVED;
+            return current + 1;
+        });
+        return outcome[0];
+    }
+
+    // Give back a place whose booking was abandoned before it was appended, or has left the journal
+    public void release(int patientId, int doctorId, LocalDate date) {
+        reservedPlaces.computeIfPresent(slotKey(doctorId, date), (key, held) -> {
+            Set<Integer> patients = pendingPatients.get(key);
+            if (patients != null && patients.remove(patientId) && patients.isEmpty()) {
+                pendingPatients.remove(key);
+            }
+            return held > 1 ? held - 1 : null;
+        });
+    }
+
+    // Places on the doctor's day held by bookings not yet in MySQL
+    public int reservedCount(int doctorId, LocalDate date) {
+        return reservedPlaces.getOrDefault(slotKey(doctorId, date), 0);
+    }
+
+    // Append an appointment carrying an id from nextId; returns once it is durable on disk. The caller's place
+    // reservation passes to the journal: it is released if the booking fails before being queued. A booking
+    // whose wait times out is still written and flushed, like a database commit whose acknowledgement was lost
+    public void append(Appointment appointment, Deadline deadline) throws SQLException {
+        if (writeFailure != null || !running) {
+            release(appointment.getPatientId(), appointment.getDoctorId(), appointment.getAppointmentDate());
+            throw new SQLException("Booking journal is unavailable", writeFailure);
+        }
+
+        PendingAppend pending = new PendingAppend(appointment);
+        appendQueue.add(pending);
+        try {
+            if (deadline.isBounded()) {
+                pending.durable.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+            } else {
+                pending.durable.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while writing booking journal", e);
+        } catch (TimeoutException e) {
+            throw new SQLTimeoutException("Booking journal write deadline exceeded");
+        } catch (ExecutionException e) {
+            throw new SQLException("Booking journal write failed", e.getCause());
+        }
+    }
+
+    // Journaled bookings not yet in MySQL, so reads can include them
+    public List<Appointment> pendingForPatient(int patientId) {
+        return pendingById.values().stream()
+                .filter(a -> a.getPatientId() == patientId)
+                .collect(Collectors.toList());
+    }
+
+    public List<Appointment> pendingForDoctor(int doctorId) {
+        return pendingById.values().stream()
+                .filter(a -> a.getDoctorId() == doctorId)
+                .collect(Collectors.toList());
+    }
+
+    public List<Appointment> pendingOn(LocalDate date) {
+        return pendingById.values().stream()
+                .filter(a -> a.getAppointmentDate().equals(date))
+                .collect(Collectors.toList());
+    }
+
+    public boolean isPending(long appointmentId) {
+        return pendingById.containsKey(appointmentId);
+    }
+
+    // Wait until everything journaled so far is in MySQL
+    public void awaitFlushed(Deadline deadline) throws SQLException {
+        long target = appendedSeq;
+        flushLock.lock();
+        try {
+            while (flushedSeq < target) {
+                if (deadline.isExpired()) {
+                    throw new SQLTimeoutException("Timed out waiting for journaled bookings to reach the database");
+                }
+                if (deadline.isBounded()) {
+                    flushed.await(Math.max(1, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+                } else {
+                    flushed.await();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for journal flush", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Stop accepting bookings, give the flusher a bounded time to drain, and close the file; anything
+    // not flushed stays in the journal and is replayed on the next start
+    public void close() {
+        running = false;
+        try {
+            writer.join(SHUTDOWN_FLUSH_MS);
+            flusher.join(SHUTDOWN_FLUSH_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flusher.interrupt();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing booking journal: " + e.getMessage());
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingById.size();
+    }
+
+    public long getGroupCommitCount() {
+        return groupCommits.get();
+    }
+
+    public long getFlushedCount() {
+        return flushedCount.get();
+    }
+
+    // Journaled bookings that could not be stored, this run and earlier ones (the lines in the conflicts file)
+    public long getConflictCount() {
+        return conflicts.get();
+    }
+
+    public Path getConflictsPath() {
+        return conflictsPath;
+    }
+
+    // Re-queue every intact record; a torn record at the tail (crash mid-write) is cut off
+    private void recover() throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        long position = 0;
+        while (true) {
+            record.clear();
+            while (record.hasRemaining() && channel.read(record, position + record.position()) > 0) {
+                // keep reading until the record is complete or the file ends
+            }
+            if (record.hasRemaining()) {
+                break;
+            }
+            record.flip();
+            Record decoded = decode(record);
+            if (decoded == null) {
+                break;
+            }
+            Appointment appointment = decoded.appointment;
+            long key = slotKey(appointment.getDoctorId(), appointment.getAppointmentDate());
+            reservedPlaces.merge(key, 1, Integer::sum);
+            pendingPatients.computeIfAbsent(key, k -> new HashSet<>()).add(appointment.getPatientId());
+            pendingById.put(appointment.getId(), appointment);
+            flushQueue.add(decoded);
+            appendedSeq = decoded.seq;
+            position += RECORD_SIZE;
+        }
+        channel.truncate(position);
+        channel.position(position);
+        flushedSeq = 0;
+        if (appendedSeq > 0) {
+            System.out.println("Replaying " + pendingById.size() + " journaled bookings");
+        }
+    }
+
+    // Group commit: take everything queued, write it in one go and fsync once for the whole group
+    private void runWriter() {
+        List<PendingAppend> group = new ArrayList<>();
+        while (running || !appendQueue.isEmpty()) {
+            try {
+                PendingAppend first = appendQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    compactIfDrained();
+                    continue;
+                }
+                group.add(first);
+                appendQueue.drainTo(group, MAX_GROUP_SIZE - 1);
+                writeGroup(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                writeFailure = e;
+                System.err.println("Booking journal write failed: " + e.getMessage());
+                for (PendingAppend pending : group) {
+                    release(pending.appointment.getPatientId(), pending.appointment.getDoctorId(),
+                            pending.appointment.getAppointmentDate());
+                    pending.durable.completeExceptionally(e);
+                }
+                for (PendingAppend pending : appendQueue) {
+                    release(pending.appointment.getPatientId(), pending.appointment.getDoctorId(),
+                            pending.appointment.getAppointmentDate());
+                    pending.durable.completeExceptionally(e);
+                }
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void writeGroup(List<PendingAppend> group) throws IOException {
+        compactIfDrained();
+
+        long seq = appendedSeq;
+        writeBuffer.clear();
+        List<Record> records = new ArrayList<>(group.size());
+        for (PendingAppend pending : group) {
+            Record record = new Record(++seq, pending.appointment);
+            encode(writeBuffer, record);
+            records.add(record);
+        }
+        writeBuffer.flip();
+        long start = channel.position();
+        try {
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // The group is reported as failed, so it must not be replayed either
+            try {
+                channel.truncate(start);
+            } catch (IOException ignored) {
+                // Nothing more can be done; recovery cuts off any torn record
+            }
+            throw e;
+        }
+        groupCommits.incrementAndGet();
+
+        appendedSeq = seq;
+        for (int i = 0; i < group.size(); i++) {
+            Appointment appointment = group.get(i).appointment;
+            pendingById.put(appointment.getId(), appointment);
+            flushQueue.add(records.get(i));
+            group.get(i).durable.complete(null);
+        }
+    }
+
+    // Once every written record is in MySQL the journal can start over
+    private void compactIfDrained() {
+        try {
+            if (flushedSeq == appendedSeq && channel.size() >= COMPACT_BYTES) {
+                channel.truncate(0);
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            System.err.println("Booking journal compaction failed: " + e.getMessage());
+        }
+    }
+
+    // Move journaled bookings into MySQL in batches; on database errors keep the batch and retry
+    private void runFlusher() {
+        List<Record> batch = new ArrayList<>();
+        while (running || !flushQueue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    Record first = flushQueue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                flushQueue.drainTo(batch, FLUSH_BATCH_SIZE - batch.size());
+
+                markFlushed(batch, writeBatch(batch));
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (SQLException e) {
+                System.err.println("Booking journal flush failed, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(FLUSH_RETRY_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // One multi-row insert per shard; if a row clashes (replayed after a crash, or the day filled up
+    // directly in the database) fall back to row-by-row so the rest still lands. Returns the stored bookings
+    private List<Appointment> writeBatch(List<Record> batch) throws SQLException {
+        List<Appointment> appointments = batch.stream().map(r -> r.appointment).collect(Collectors.toList());
+        try {
+            appointmentDAO.insertAppointmentsWithIds(appointments);
+            return appointments;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            List<Appointment> stored = new ArrayList<>();
+            for (Appointment appointment : appointments) {
+                JournalInsert outcome = appointmentDAO.insertAppointmentWithIdIfAbsent(appointment);
+                if (outcome == JournalInsert.STORED || outcome == JournalInsert.ALREADY_STORED) {
+                    stored.add(appointment);
+                } else {
+                    recordConflict(appointment, conflictReason(outcome));
+                }
+            }
+            return stored;
+        }
+    }
+
+    private static String conflictReason(JournalInsert outcome) {
+        switch (outcome) {
+            case ID_TAKEN:
+                return "id taken by another appointment";
+            case PATIENT_ALREADY_BOOKED:
+                return "patient already booked with the doctor that day";
+            case MISSING_REFERENCE:
+                return "patient or doctor no longer exists";
+            default:
+                return "no place left on the doctor's day";
+        }
+    }
+
+    // The stored bookings are handed to onStored before their places are released, so a reader never
+    // sees a booking in neither place
+    private void markFlushed(List<Record> batch, List<Appointment> stored) {
+        stored.forEach(onStored);
+        for (Record record : batch) {
+            Appointment appointment = record.appointment;
+            pendingById.remove(appointment.getId());
+            release(appointment.getPatientId(), appointment.getDoctorId(), appointment.getAppointmentDate());
+        }
+        flushedCount.addAndGet(batch.size());
+        flushLock.lock();
+        try {
+            flushedSeq = batch.get(batch.size() - 1).seq;
+            flushed.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Keep a dropped booking where it survives restarts; the line is written before the booking leaves the
+    // journal, so a failed write is retried with the batch
+    private void recordConflict(Appointment appointment, String reason) throws SQLException {
+        String line = Instant.now() + "," + appointment.getId() + "," + appointment.getPatientId() + ","
+                + appointment.getDoctorId() + "," + appointment.getAppointmentDate() + "," + reason + "\n";
+        try {
+            Files.writeString(conflictsPath, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new SQLException("Could not record dropped booking " + appointment.getId() + " in "
+                    + conflictsPath, e);
+        }
+        conflicts.incrementAndGet();
+        System.err.println("Warning: journaled appointment " + appointment.getId() + " dropped (" + reason
+                + ") - recorded in " + conflictsPath);
+    }
+
+    // Id for a booking with the doctor, from the doctor's shard's block, reserving a new block in the database
+    // when it runs out; callers run it under DatabaseGuard, as the refill is a database call
+    public long nextId(int doctorId) throws SQLException {
+        int shard = shardOf(doctorId);
+        idLock.lock();
+        try {
+            IdBlock block = idBlocks.get(shard);
+            if (block == null || block.next == block.end) {
+                long floor = shard * SHARD_ID_SPAN + 1;
+                long first = appointmentDAO.reserveJournalIds(shard, floor, floor + JOURNAL_ID_RANGE - 1,
+                        ID_BLOCK_SIZE);
+                block = new IdBlock(first, first + ID_BLOCK_SIZE);
+                idBlocks.put(shard, block);
+            }
+            return block.next++;
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    private static int shardOf(int doctorId) {
+        return ShardRouter.isSharded() ? ShardRouter.getShardMap().shardFor(doctorId) : 0;
+    }
+
+    private static long slotKey(int doctorId, LocalDate date) {
+        return ((long) doctorId << 32) | (date.toEpochDay() & 0xffffffffL);
+    }
+
+    // Record layout: seq, id, patient id, doctor id, epoch day, CRC32 of the preceding 28 bytes
+    private static void encode(ByteBuffer buffer, Record record) {
+        int start = buffer.position();
+        buffer.putLong(record.seq);
+        buffer.putLong(record.appointment.getId());
+        buffer.putInt(record.appointment.getPatientId());
+        buffer.putInt(record.appointment.getDoctorId());
+        buffer.putInt((int) record.appointment.getAppointmentDate().toEpochDay());
+
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.position(start).limit(start + RECORD_SIZE - 4);
+        crc.update(body);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private static Record decode(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.limit(RECORD_SIZE - 4);
+        crc.update(body);
+
+        long seq = buffer.getLong();
+        long id = buffer.getLong();
+        int patientId = buffer.getInt();
+        int doctorId = buffer.getInt();
+        int epochDay = buffer.getInt();
+        if (buffer.getInt() != (int) crc.getValue() || seq <= 0) {
+            return null;
+        }
+        return new Record(seq, new Appointment(id, patientId, doctorId, LocalDate.ofEpochDay(epochDay)));
+    }
+
+    // Outcome of reserve
+    public enum Reservation {
+        RESERVED,
+        // Pending and stored bookings already hold every place on the doctor's day
+        FULLY_BOOKED,
+        // A pending booking of the patient's with the doctor that day holds a place already
+        PATIENT_ALREADY_BOOKED
+    }
+
+    private static class IdBlock {
+        private long next;
+        private final long end;
+
+        private IdBlock(long next, long end) {
+            this.next = next;
+            this.end = end;
+        }
+    }
+
+    private static class PendingAppend {
+        private final Appointment appointment;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private PendingAppend(Appointment appointment) {
+            this.appointment = appointment;
+        }
+    }
+
+    private static class Record {
+        private final long seq;
+        private final Appointment appointment;
+
+        private Record(long seq, Appointment appointment) {
+            this.seq = seq;
+            this.appointment = appointment;
+        }
+    }
+}
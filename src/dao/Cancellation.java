@@ -0,0 +1,25 @@
+package dao;
+
+import model.Appointment;
+
+// Outcome of AppointmentDAO.cancelAppointment: whether the appointment was deleted, and the appointment that
+// took over its place from the doctor-day's waitlist (null if nobody was promoted)
+public final class Cancellation {
+    static final Cancellation NOT_FOUND = new Cancellation(false, null);
+
+    private final boolean cancelled;
+    private final Appointment promoted;
+
+    Cancellation(boolean cancelled, Appointment promoted) {
+        this.cancelled = cancelled;
+        this.promoted = promoted;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public Appointment getPromoted() {
+        return promoted;
+    }
+}
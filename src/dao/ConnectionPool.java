@@ -0,0 +1,214 @@
+package dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Bounded pool of physical connections to one database endpoint
+class ConnectionPool {
+    // Cancels statements that outlive their caller's deadline
+    private static final ScheduledThreadPoolExecutor statementCanceller = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "statement-canceller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        statementCanceller.setRemoveOnCancelPolicy(true);
+    }
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final long timeoutMs;
+
+    // Idle physical connections and permits bounding how many are handed out at once
+    private final ConcurrentLinkedQueue<Connection> idleConnections = new ConcurrentLinkedQueue<>();
+    private final Semaphore permits;
+
+    ConnectionPool(String url, String username, String password, int size, long timeoutMs) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.timeoutMs = timeoutMs;
+        this.permits = new Semaphore(size, true);
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    // Borrow a pooled connection; close() on the returned connection hands it back to the pool
+    Connection getConnection() throws SQLException {
+        QueryContext.checkDeadline();
+        long waitMs = Math.min(timeoutMs, QueryContext.getDeadline().remainingMillis());
+        try {
+            if (!permits.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            return wrap(takeIdleOrOpen());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Close all idle connections
+    void close() {
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private Connection takeIdleOrOpen() throws SQLException {
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            if (!connection.isClosed()) {
+                return connection;
+            }
+        }
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    // Return a physical connection to the pool, resetting transaction state first
+    private void release(Connection connection) {
+        try {
+            if (!connection.isClosed()) {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                idleConnections.offer(connection);
+            }
+        } catch (SQLException e) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // Connection is already broken
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Proxy that turns close() into a return-to-pool and guards against double release
+    private Connection wrap(Connection physical) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean released;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        synchronized (this) {
+                            if (!released) {
+                                released = true;
+                                release(physical);
+                            }
+                        }
+                        return null;
+                    case "isClosed":
+                        return released || physical.isClosed();
+                    case "unwrap":
+                        if (((Class<?>) args[0]).isInstance(physical)) {
+                            return physical;
+                        }
+                        break;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        break;
+                }
+                if (released) {
+                    throw new SQLException("Connection has been returned to the pool");
+                }
+                Object result;
+                try {
+                    result = method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof Statement) {
+                    return wrapStatement((Statement) result, method.getReturnType());
+                }
+                return result;
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    // Proxy that applies the caller's deadline to every execute call: a query timeout rounded up to whole
+    // seconds (the JDBC granularity), plus an exact cancel() when the deadline passes mid-query
+    private static Object wrapStatement(Statement statement, Class<?> statementType) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute")) {
+                try {
+                    return method.invoke(statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            Deadline deadline = QueryContext.getDeadline();
+            if (!deadline.isBounded()) {
+                try {
+                    return method.invoke(statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            QueryContext.checkDeadline();
+            long remainingMs = deadline.remainingMillis();
+            statement.setQueryTimeout((int) Math.max(1, (remainingMs + 999) / 1000));
+
+            AtomicBoolean cancelled = new AtomicBoolean(false);
+            ScheduledFuture<?> canceller = statementCanceller.schedule(() -> {
+                cancelled.set(true);
+                try {
+                    statement.cancel();
+                } catch (SQLException ignored) {
+                    // Statement already finished or closed
+                }
+            }, remainingMs, TimeUnit.MILLISECONDS);
+
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                if (cancelled.get() && e.getCause() instanceof SQLException) {
+                    throw new SQLTimeoutException("Query deadline exceeded", e.getCause());
+                }
+                throw e.getCause();
+            } finally {
+                canceller.cancel(false);
+            }
+        };
+        return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{statementType}, handler);
+    }
+}
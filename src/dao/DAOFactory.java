@@ -0,0 +1,46 @@
+package dao;
+
+/**
+ * Picks the storage backend at startup: -Dstorage=mysql (default) or -Dstorage=memory.
+ * The in-memory backend needs no database and loses its data on exit; it is meant for load tests
+ * of the service layer and for small single-instance setups.
+ */
+public final class DAOFactory {
+    private static final boolean IN_MEMORY = "memory".equalsIgnoreCase(System.getProperty("storage", "mysql"));
+
+    private DAOFactory() {
+        throw new AssertionError("Utility class cannot be instantiated");
+    }
+
+    public static boolean isInMemory() {
+        return IN_MEMORY;
+    }
+
+    public static UserDAO createUserDAO() {
+        return IN_MEMORY ? new InMemoryUserDAO() : new MySqlUserDAO();
+    }
+
+    public static PatientDAO createPatientDAO() {
+        return IN_MEMORY ? new InMemoryPatientDAO() : new MySqlPatientDAO();
+    }
+
+    public static DoctorDAO createDoctorDAO() {
+        return IN_MEMORY ? new InMemoryDoctorDAO() : new MySqlDoctorDAO();
+    }
+
+    public static AppointmentDAO createAppointmentDAO() {
+        return IN_MEMORY ? new InMemoryAppointmentDAO() : new MySqlAppointmentDAO();
+    }
+
+    public static IdempotencyDAO createIdempotencyDAO() {
+        return IN_MEMORY ? new InMemoryIdempotencyDAO() : new MySqlIdempotencyDAO();
+    }
+
+    public static WaitlistDAO createWaitlistDAO() {
+        return IN_MEMORY ? new InMemoryWaitlistDAO() : new MySqlWaitlistDAO();
+    }
+
+    public static StatsDAO createStatsDAO() {
+        return IN_MEMORY ? new InMemoryStatsDAO() : new MySqlStatsDAO();
+    }
+}
@@ -1,45 +1,195 @@
 package dao;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DBConnection {
     private static final String URL = "jdbc:mysql://localhost:3306/hospital_management";
     private static final String USERNAME = "root";
     private static final String PASSWORD = "Yog@101619";
 
-    // volatile ensures visibility across threads
-    private static volatile Connection connection = null;
+    // Pool sizing (override with -Ddb.poolSize=N and -Ddb.poolTimeoutMs=N)
+    private static final int POOL_SIZE = Integer.getInteger("db.poolSize", 10);
+    private static final long POOL_TIMEOUT_MS = Long.getLong("db.poolTimeoutMs", 30000);
 
-    // Static block to load driver
+    // Read replicas (comma-separated JDBC URLs in -Ddb.replicaUrls, same credentials as the primary)
+    private static final long MAX_REPLICA_LAG_SECONDS = Long.getLong("db.maxReplicaLagSeconds", 5);
+    private static final long REPLICA_CHECK_INTERVAL_MS = Long.getLong("db.replicaCheckIntervalMs", 5000);
+    private static final long READ_YOUR_WRITES_MS = Long.getLong("db.readYourWritesMs", 10000);
+
+    private static final ConnectionPool primary;
+    private static final List<ConnectionPool> replicas = new ArrayList<>();
+
+    // Last measured lag per replica in seconds (Long.MAX_VALUE = unknown or replication stopped)
+    private static final Map<ConnectionPool, Long> replicaLagSeconds = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextReplica = new AtomicInteger();
+
+    // When each session last wrote, so its reads stay on the primary until replicas catch up
+    private static final Map<String, Long> lastWriteBySession = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService replicaMonitor;
+
+    // Static block to load driver and set up pools (the in-memory backend runs without the driver)
     static {
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException("MySQL JDBC Driver not found", e);
+        if (!DAOFactory.isInMemory()) {
+            try {
+                Class.forName("com.mysql.cj.jdbc.Driver");
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException("MySQL JDBC Driver not found", e);
+            }
+        }
+
+        primary = new ConnectionPool(URL, USERNAME, PASSWORD, POOL_SIZE, POOL_TIMEOUT_MS);
+
+        String replicaUrls = System.getProperty("db.replicaUrls", "").trim();
+        if (!replicaUrls.isEmpty()) {
+            for (String replicaUrl : replicaUrls.split(",")) {
+                ConnectionPool replica = new ConnectionPool(
+                        replicaUrl.trim(), USERNAME, PASSWORD, POOL_SIZE, POOL_TIMEOUT_MS);
+                replicas.add(replica);
+                replicaLagSeconds.put(replica, Long.MAX_VALUE);
+            }
+            startReplicaMonitor();
         }
     }
 
     // Private constructor to prevent instantiation
     private DBConnection() {}
 
-    // Thread-safe singleton connection (synchronized for multithreading)
-    public static synchronized Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+    // Connection to the primary, for writes and reads that must see the latest data
+    public static Connection getConnection() throws SQLException {
+        return primary.getConnection();
+    }
+
+    // Connection for a read-only query: a caught-up replica, chosen round-robin, unless the current session
+    // wrote recently or no replica is healthy, in which case the primary serves it
+    public static Connection getReadConnection() throws SQLException {
+        if (replicas.isEmpty() || mustReadFromPrimary()) {
+            return primary.getConnection();
+        }
+
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            ConnectionPool replica = replicas.get((start + i) % replicas.size());
+            if (replicaLagSeconds.getOrDefault(replica, Long.MAX_VALUE) <= MAX_REPLICA_LAG_SECONDS) {
+                try {
+                    Connection connection = replica.getConnection();
+                    QueryContext.markReplicaRead();
+                    return connection;
+                } catch (SQLException e) {
+                    // Mark unhealthy until the next lag check and try the next replica
+                    replicaLagSeconds.put(replica, Long.MAX_VALUE);
+                }
+            }
         }
-        return connection;
+        return primary.getConnection();
     }
 
-    // Close connection
+    // Record that the current session just wrote (booked, cancelled, registered...)
+    public static void markSessionWrite() {
+        String session = QueryContext.getSession();
+        if (session != null && !replicas.isEmpty()) {
+            lastWriteBySession.put(session, System.currentTimeMillis());
+        }
+    }
+
+    // Whether reads on this thread must go to the primary for read-your-writes consistency
+    public static boolean mustReadFromPrimary() {
+        if (QueryContext.isPrimaryReadRequired()) {
+            return true;
+        }
+        String session = QueryContext.getSession();
+        if (session == null) {
+            return false;
+        }
+        Long lastWrite = lastWriteBySession.get(session);
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - lastWrite < READ_YOUR_WRITES_MS) {
+            return true;
+        }
+        lastWriteBySession.remove(session, lastWrite);
+        return false;
+    }
+
+    // New pool for another database with the same credentials (shards, resharding targets)
+    static ConnectionPool newPool(String url) {
+        return new ConnectionPool(url, USERNAME, PASSWORD, POOL_SIZE, POOL_TIMEOUT_MS);
+    }
+
+    // The primary's pool, for tools that treat an unsharded database as shard 0
+    static ConnectionPool getPrimaryPool() {
+        return primary;
+    }
+
+    // Pool size, used to size executors that talk to the database
+    public static int getPoolSize() {
+        return POOL_SIZE;
+    }
+
+    // Replica URL to last measured lag in seconds (for monitoring)
+    public static Map<String, Long> getReplicaLag() {
+        Map<String, Long> lag = new ConcurrentHashMap<>();
+        replicaLagSeconds.forEach((replica, seconds) -> lag.put(replica.getUrl(), seconds));
+        return Collections.unmodifiableMap(lag);
+    }
+
+    // Close all idle connections
     public static synchronized void closeConnection() {
-        if (connection != null) {
+        if (replicaMonitor != null) {
+            replicaMonitor.shutdownNow();
+        }
+        primary.close();
+        replicas.forEach(ConnectionPool::close);
+    }
+
+    // Poll each replica's replication lag in the background
+    private static void startReplicaMonitor() {
+        replicaMonitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        replicaMonitor.scheduleWithFixedDelay(() -> replicas.forEach(replica ->
+                        replicaLagSeconds.put(replica, measureLag(replica))),
+                0, REPLICA_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Seconds behind the primary; MySQL 8.0.22+ reports SHOW REPLICA STATUS, MariaDB and older MySQL
+    // report SHOW SLAVE STATUS
+    private static long measureLag(ConnectionPool replica) {
+        try (Connection conn = replica.getConnection();
+             Statement stmt = conn.createStatement()) {
+            ResultSet rs;
+            String column;
             try {
-                connection.close();
+                rs = stmt.executeQuery("SHOW REPLICA STATUS");
+                column = "Seconds_Behind_Source";
             } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
+                rs = stmt.executeQuery("SHOW SLAVE STATUS");
+                column = "Seconds_Behind_Master";
+            }
+            try (ResultSet status = rs) {
+                if (status.next()) {
+                    long lag = status.getLong(column);
+                    return status.wasNull() ? Long.MAX_VALUE : lag;
+                }
             }
+        } catch (SQLException e) {
+            System.err.println("Replica check failed for " + replica.getUrl() + ": " + e.getMessage());
         }
+        return Long.MAX_VALUE;
     }
 }
@@ -0,0 +1,68 @@
+package dao;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Absolute point in time by which a call and every query it issues must finish
+public final class Deadline {
+    private static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    public static Deadline afterMillis(long timeoutMs) {
+        return timeoutMs <= 0 ? NONE : new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+    }
+
+    // No deadline: calls may run as long as they need
+    public static Deadline none() {
+        return NONE;
+    }
+
+    public boolean isBounded() {
+        return this != NONE;
+    }
+
+    public boolean isExpired() {
+        return isBounded() && System.nanoTime() - expiresAtNanos >= 0;
+    }
+
+    // Remaining time in milliseconds (Long.MAX_VALUE when unbounded, 0 when expired)
+    public long remainingMillis() {
+        if (!isBounded()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+    }
+
+    // Whichever of the two deadlines expires first
+    public Deadline earliest(Deadline other) {
+        if (!isBounded()) {
+            return other;
+        }
+        if (!other.isBounded()) {
+            return this;
+        }
+        return expiresAtNanos - other.expiresAtNanos <= 0 ? this : other;
+    }
+
+    // Whichever of the two deadlines expires last
+    public Deadline latest(Deadline other) {
+        if (!isBounded() || !other.isBounded()) {
+            return NONE;
+        }
+        return expiresAtNanos - other.expiresAtNanos >= 0 ? this : other;
+    }
+
+    @Override
+    public String toString() {
+        return isBounded() ? "Deadline{remainingMillis=" + remainingMillis() + '}' : "Deadline{none}";
+    }
+}
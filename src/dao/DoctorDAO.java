@@ -1,101 +1,38 @@
 package dao;
 
 import model.Doctor;
-import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
-
-public class DoctorDAO {
-
-    // Add new doctor
-    public boolean addDoctor(Doctor doctor) throws SQLException {
-        String sql = "INSERT INTO doctors (name, specialization, user_id) VALUES (?, ?, ?)";
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-            ps.setString(1, doctor.getName());
-            ps.setString(2, doctor.getSpecialization());
-            ps.setInt(3, doctor.getUserId());
-
-            int rowsAffected = ps.executeUpdate();
-
-            if (rowsAffected > 0) {
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next()) {
-                        doctor.setId(rs.getInt(1));
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
-    // Find doctor by user ID
-    public Doctor findDoctorByUserId(int userId) throws SQLException {
-        String sql = "SELECT * FROM doctors WHERE user_id = ?";
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+// Doctor profiles. Deleting a doctor removes their appointments
+public interface DoctorDAO {
+    // Appointments a doctor takes per day unless configured otherwise (-Dbooking.dailyCapacity, default 1)
+    int DEFAULT_DAILY_CAPACITY = Math.max(0, Integer.getInteger("booking.dailyCapacity", 1));
 
-            ps.setInt(1, userId);
+    // Insert a doctor and set its generated id
+    boolean addDoctor(Doctor doctor) throws SQLException;
 
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return new Doctor(
-                            rs.getInt("id"),
-                            rs.getString("name"),
-                            rs.getString("specialization"),
-                            rs.getInt("user_id")
-                    );
-                }
-            }
-        }
-        return null;
-    }
+    Doctor findDoctorByUserId(int userId) throws SQLException;
 
-    // Find doctor by ID
-    public Doctor findDoctorById(int doctorId) throws SQLException {
-        String sql = "SELECT * FROM doctors WHERE id = ?";
+    Doctor findDoctorById(int doctorId) throws SQLException;
 
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    // Several doctors at once, keyed by doctor id
+    Map<Integer, Doctor> findDoctorsByIds(Collection<Integer> doctorIds) throws SQLException;
 
-            ps.setInt(1, doctorId);
+    // Several doctors at once, keyed by user id
+    Map<Integer, Doctor> findDoctorsByUserIds(Collection<Integer> userIds) throws SQLException;
 
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return new Doctor(
-                            rs.getInt("id"),
-                            rs.getString("name"),
-                            rs.getString("specialization"),
-                            rs.getInt("user_id")
-                    );
-                }
-            }
-        }
-        return null;
-    }
+    List<Doctor> getAllDoctors() throws SQLException;
 
-    // Get all doctors
-    public List<Doctor> getAllDoctors() throws SQLException {
-        List<Doctor> doctors = new ArrayList<>();
-        String sql = "SELECT * FROM doctors ORDER BY id";
+    boolean deleteDoctor(int doctorId) throws SQLException;
 
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+    // Appointments the doctor takes per day (DEFAULT_DAILY_CAPACITY unless set)
+    int getDailyCapacity(int doctorId) throws SQLException;
 
-            while (rs.next()) {
-                doctors.add(new Doctor(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("specialization"),
-                        rs.getInt("user_id")
-                ));
-            }
-        }
-        return doctors;
-    }
+    // Change the doctor's daily capacity, including days that already have bookings from today on;
+    // lowering it below a day's bookings keeps them but takes no more
+    void setDailyCapacity(int doctorId, int capacity) throws SQLException;
 }
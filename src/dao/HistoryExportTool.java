@@ -0,0 +1,81 @@
+package dao;
+
+import model.Appointment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Writes a history segment for every complete month, from the month of the oldest appointment (live or
+ * archived) up to -Dhistory.settleMonths (default 1) months before the current one, into -Dhistory.dir.
+ * Months that already have a segment are skipped: segments are immutable, so the tool can run from cron
+ * and only ever adds the month that just settled.
+ *
+ * Usage: java -Dhistory.dir=/var/lib/hms/history -cp bin dao.HistoryExportTool
+ */
+public class HistoryExportTool {
+    private static final int SETTLE_MONTHS = Math.max(0, Integer.getInteger("history.settleMonths", 1));
+
+    public static void main(String[] args) {
+        YearMonth last = YearMonth.now().minusMonths(1 + SETTLE_MONTHS);
+
+        try {
+            LocalDate oldest = oldestAppointmentDate();
+            if (oldest == null) {
+                System.out.println("No appointments to export");
+                return;
+            }
+
+            AppointmentDAO appointmentDAO = new MySqlAppointmentDAO();
+            int written = 0;
+            for (YearMonth month = YearMonth.from(oldest); !month.isAfter(last); month = month.plusMonths(1)) {
+                Path file = HistoryStore.segmentFile(HistoryStore.DIRECTORY, month);
+                if (Files.exists(file)) {
+                    continue;
+                }
+                List<Appointment> appointments = appointmentDAO.getAppointmentsBetween(
+                        month.atDay(1), month.atEndOfMonth());
+                HistorySegmentWriter.write(file, month, appointments);
+                System.out.println("  " + month + ": " + appointments.size() + " appointments, "
+                        + Files.size(file) + " bytes");
+                written++;
+            }
+            System.out.println("✓ History export complete: " + written + " segments written to "
+                    + HistoryStore.DIRECTORY.toAbsolutePath());
+        } catch (SQLException | IOException e) {
+            System.err.println("History export failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            ShardRouter.closeConnections();
+            DBConnection.closeConnection();
+        }
+    }
+
+    // Oldest appointment date on any shard, live or archived (null when there are none)
+    private static LocalDate oldestAppointmentDate() throws SQLException {
+        String sql = "SELECT LEAST(COALESCE((SELECT MIN(appointment_date) FROM appointments), '9999-12-31'), " +
+                "COALESCE((SELECT MIN(appointment_date) FROM appointments_archive), '9999-12-31'))";
+
+        LocalDate oldest = null;
+        for (LocalDate date : ShardRouter.scatter(true, conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = ps.executeQuery()) {
+                Date min = rs.next() ? rs.getDate(1) : null;
+                return min == null || min.toLocalDate().getYear() == 9999 ? null : min.toLocalDate();
+            }
+        })) {
+            if (date != null && (oldest == null || date.isBefore(oldest))) {
+                oldest = date;
+            }
+        }
+        return oldest;
+    }
+}
@@ -0,0 +1,245 @@
+package dao;
+
+import model.Appointment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only view of one month's segment file, memory-mapped so lookups touch only the pages they need.
+ *
+ * Layout (big-endian): magic, version, year, month, row count, rows per block, doctor dictionary size,
+ * then the dictionary (sorted doctor ids), the patient index (patient count, then patient id, first row and
+ * row count per patient, sorted by patient id) and the block directory (block count, then offset, deflated
+ * length and inflated length per block), followed by the deflated blocks. A block holds its rows column by
+ * column: zig-zag varint id deltas, varint doctor codes, one byte of day offset from the month's first epoch
+ * day, varint start minute (+1, 0 = no time slot) and varint duration.
+ *
+ * Absolute reads only, so one instance is safe to share between threads.
+ */
+public final class HistorySegment {
+    static final int MAGIC = 0x48534547; // "HSEG"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 7 * 4;
+    static final int PATIENT_ENTRY_BYTES = 3 * 4;
+    static final int BLOCK_ENTRY_BYTES = 8 + 2 * 4;
+
+    private final Path file;
+    private final MappedByteBuffer data;
+    private final YearMonth month;
+    private final long firstDay;
+    private final int rowCount;
+    private final int blockRows;
+    private final int[] dictionary;
+    private final int patientCount;
+    private final int patientIndexStart;
+    private final int blockCount;
+    private final int blockDirectoryStart;
+
+    private HistorySegment(Path file, MappedByteBuffer data) throws IOException {
+        this.file = file;
+        this.data = data;
+        if (data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a history segment");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException(file + " has unsupported segment version " + data.getInt(4));
+        }
+        this.month = YearMonth.of(data.getInt(8), data.getInt(12));
+        this.firstDay = month.atDay(1).toEpochDay();
+        this.rowCount = data.getInt(16);
+        this.blockRows = data.getInt(20);
+
+        int position = HEADER_BYTES;
+        this.dictionary = new int[data.getInt(24)];
+        for (int i = 0; i < dictionary.length; i++, position += 4) {
+            dictionary[i] = data.getInt(position);
+        }
+        this.patientCount = data.getInt(position);
+        this.patientIndexStart = position + 4;
+        position = patientIndexStart + patientCount * PATIENT_ENTRY_BYTES;
+        this.blockCount = data.getInt(position);
+        this.blockDirectoryStart = position + 4;
+    }
+
+    // Map the file; it must not change while mapped (segments are never rewritten in place)
+    public static HistorySegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new HistorySegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    // The patient's appointments in this month, by date; ids, patient, doctor, date and time slot only
+    public List<Appointment> findByPatient(int patientId) throws IOException {
+        List<Appointment> result = new ArrayList<>();
+        int entry = findPatient(patientId);
+        if (entry < 0) {
+            return result;
+        }
+        int firstRow = data.getInt(entry + 4);
+        int endRow = firstRow + data.getInt(entry + 8);
+        for (int blockIndex = firstRow / blockRows; blockIndex * blockRows < endRow; blockIndex++) {
+            Block block = readBlock(blockIndex);
+            int blockStart = blockIndex * blockRows;
+            for (int row = Math.max(firstRow, blockStart); row < Math.min(endRow, blockStart + block.size); row++) {
+                result.add(block.toAppointment(row - blockStart, patientId));
+            }
+        }
+        return result;
+    }
+
+    // Visit every row in file order (by patient, date and id)
+    public void scan(RowVisitor visitor) throws IOException {
+        int entry = patientIndexStart;
+        int patientId = 0;
+        int patientEnd = 0;
+        for (int blockIndex = 0; blockIndex < blockCount; blockIndex++) {
+            Block block = readBlock(blockIndex);
+            int blockStart = blockIndex * blockRows;
+            for (int i = 0; i < block.size; i++) {
+                if (blockStart + i >= patientEnd) {
+                    patientId = data.getInt(entry);
+                    patientEnd = data.getInt(entry + 4) + data.getInt(entry + 8);
+                    entry += PATIENT_ENTRY_BYTES;
+                }
+                visitor.visit(block.ids[i], patientId, dictionary[block.doctorCodes[i]], firstDay + block.dayOffsets[i],
+                        block.startMinutes[i] - 1, block.durations[i]);
+            }
+        }
+    }
+
+    // Position of the patient's index entry, or -1; binary search straight on the mapped bytes
+    private int findPatient(int patientId) {
+        int low = 0;
+        int high = patientCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = patientIndexStart + mid * PATIENT_ENTRY_BYTES;
+            int id = data.getInt(entry);
+            if (id < patientId) {
+                low = mid + 1;
+            } else if (id > patientId) {
+                high = mid - 1;
+            } else {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    // Inflate one block straight from the mapping and split it into columns
+    private Block readBlock(int blockIndex) throws IOException {
+        int entry = blockDirectoryStart + blockIndex * BLOCK_ENTRY_BYTES;
+        int offset = (int) data.getLong(entry);
+        int compressedLength = data.getInt(entry + 8);
+        ByteBuffer raw = ByteBuffer.allocate(data.getInt(entry + 12));
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.slice(offset, compressedLength));
+            while (raw.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(raw) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(file + ": corrupt block " + blockIndex, e);
+        } finally {
+            inflater.end();
+        }
+        if (raw.hasRemaining()) {
+            throw new IOException(file + ": truncated block " + blockIndex);
+        }
+        raw.flip();
+
+        int size = Math.min(blockRows, rowCount - blockIndex * blockRows);
+        Block block = new Block(size);
+        long id = 0;
+        for (int i = 0; i < size; i++) {
+            long delta = readVarLong(raw);
+            id += (delta >>> 1) ^ -(delta & 1);
+            block.ids[i] = id;
+        }
+        for (int i = 0; i < size; i++) {
+            block.doctorCodes[i] = (int) readVarLong(raw);
+        }
+        for (int i = 0; i < size; i++) {
+            block.dayOffsets[i] = raw.get() & 0xFF;
+        }
+        for (int i = 0; i < size; i++) {
+            block.startMinutes[i] = (int) readVarLong(raw);
+        }
+        for (int i = 0; i < size; i++) {
+            block.durations[i] = (int) readVarLong(raw);
+        }
+        return block;
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    @FunctionalInterface
+    public interface RowVisitor {
+        // startMinute is the minute of the day, or -1 for an appointment without a time slot
+        void visit(long id, int patientId, int doctorId, long epochDay, int startMinute, int durationMinutes);
+    }
+
+    private final class Block {
+        private final int size;
+        private final long[] ids;
+        private final int[] doctorCodes;
+        private final int[] dayOffsets;
+        private final int[] startMinutes;
+        private final int[] durations;
+
+        private Block(int size) {
+            this.size = size;
+            this.ids = new long[size];
+            this.doctorCodes = new int[size];
+            this.dayOffsets = new int[size];
+            this.startMinutes = new int[size];
+            this.durations = new int[size];
+        }
+
+        private Appointment toAppointment(int i, int patientId) {
+            Appointment appointment = new Appointment(ids[i], patientId, dictionary[doctorCodes[i]],
+                    LocalDate.ofEpochDay(firstDay + dayOffsets[i]));
+            if (startMinutes[i] > 0) {
+                appointment.setTimeSlot(LocalTime.ofSecondOfDay((startMinutes[i] - 1) * 60L), durations[i]);
+            }
+            return appointment;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package dao;
+
+import model.Appointment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes one month of appointments as an immutable columnar segment file (layout in HistorySegment).
+ * Rows are sorted by patient, date and id, so a patient's history is one contiguous run and ids within it
+ * delta-encode to a byte or two; doctor ids are replaced by codes into a per-file dictionary and dates by
+ * their offset from the first epoch day of the month. Each block of rows is deflated on its own, so a reader
+ * inflates only the blocks it needs.
+ */
+public final class HistorySegmentWriter {
+    private static final int BLOCK_ROWS = Math.max(1, Integer.getInteger("history.blockRows", 4096));
+
+    private HistorySegmentWriter() {
+        throw new AssertionError("Utility class cannot be instantiated");
+    }
+
+    // Write the month's appointments to file; the file appears atomically once complete
+    public static void write(Path file, YearMonth month, List<Appointment> appointments) throws IOException {
+        List<Appointment> rows = new ArrayList<>(appointments);
+        rows.sort(Comparator.comparingInt(Appointment::getPatientId)
+                .thenComparing(Appointment::getAppointmentDate)
+                .thenComparingLong(Appointment::getId));
+
+        int[] dictionary = rows.stream().mapToInt(Appointment::getDoctorId).distinct().sorted().toArray();
+
+        // (patient id, first row, row count) per patient
+        List<int[]> patients = new ArrayList<>();
+        for (int row = 0; row < rows.size(); row++) {
+            int patientId = rows.get(row).getPatientId();
+            if (patients.isEmpty() || patients.get(patients.size() - 1)[0] != patientId) {
+                patients.add(new int[]{patientId, row, 0});
+            }
+            patients.get(patients.size() - 1)[2]++;
+        }
+
+        long firstDay = month.atDay(1).toEpochDay();
+        List<byte[]> blocks = new ArrayList<>();
+        List<Integer> rawLengths = new ArrayList<>();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            for (int start = 0; start < rows.size(); start += BLOCK_ROWS) {
+                byte[] raw = encodeBlock(rows.subList(start, Math.min(rows.size(), start + BLOCK_ROWS)),
+                        dictionary, firstDay);
+                rawLengths.add(raw.length);
+                blocks.add(deflate(deflater, raw));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        int headerSize = HistorySegment.HEADER_BYTES + 4 * dictionary.length
+                + 4 + HistorySegment.PATIENT_ENTRY_BYTES * patients.size()
+                + 4 + HistorySegment.BLOCK_ENTRY_BYTES * blocks.size();
+        ByteBuffer header = ByteBuffer.allocate(headerSize);
+        header.putInt(HistorySegment.MAGIC).putInt(HistorySegment.VERSION)
+                .putInt(month.getYear()).putInt(month.getMonthValue())
+                .putInt(rows.size()).putInt(BLOCK_ROWS)
+                .putInt(dictionary.length);
+        for (int doctorId : dictionary) {
+            header.putInt(doctorId);
+        }
+        header.putInt(patients.size());
+        for (int[] patient : patients) {
+            header.putInt(patient[0]).putInt(patient[1]).putInt(patient[2]);
+        }
+        header.putInt(blocks.size());
+        long offset = headerSize;
+        for (int i = 0; i < blocks.size(); i++) {
+            header.putLong(offset).putInt(blocks.get(i).length).putInt(rawLengths.get(i));
+            offset += blocks.get(i).length;
+        }
+        header.flip();
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            for (byte[] block : blocks) {
+                writeFully(channel, ByteBuffer.wrap(block));
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Columns one after another: id deltas, doctor codes, day offsets, start minutes (+1, 0 = none), durations
+    private static byte[] encodeBlock(List<Appointment> rows, int[] dictionary, long firstDay) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rows.size() * 8);
+        long previousId = 0;
+        for (Appointment row : rows) {
+            writeVarLong(out, zigZag(row.getId() - previousId));
+            previousId = row.getId();
+        }
+        for (Appointment row : rows) {
+            writeVarLong(out, Arrays.binarySearch(dictionary, row.getDoctorId()));
+        }
+        for (Appointment row : rows) {
+            out.write((int) (row.getAppointmentDate().toEpochDay() - firstDay));
+        }
+        for (Appointment row : rows) {
+            writeVarLong(out, row.hasTimeSlot() ? row.getStartTime().toSecondOfDay() / 60 + 1 : 0);
+        }
+        for (Appointment row : rows) {
+            writeVarLong(out, row.getDurationMinutes());
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return out.toByteArray();
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
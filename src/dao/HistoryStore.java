@@ -0,0 +1,125 @@
+package dao;
+
+import model.Appointment;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The month segments written by HistoryExportTool, opened once at first use from -Dhistory.dir
+ * (default "history"). Only an unbroken run of months counts as covered, starting at the oldest segment;
+ * queries answer those months from the files and everything else from the database. Segments exported
+ * while the application runs are picked up at the next start.
+ */
+public final class HistoryStore {
+    static final Path DIRECTORY = Paths.get(System.getProperty("history.dir", "history"));
+    static final String SUFFIX = ".seg";
+
+    private static volatile HistoryStore instance;
+
+    private final NavigableMap<YearMonth, HistorySegment> segments;
+
+    private HistoryStore(NavigableMap<YearMonth, HistorySegment> segments) {
+        this.segments = segments;
+    }
+
+    public static HistoryStore getInstance() {
+        HistoryStore store = instance;
+        if (store == null) {
+            synchronized (HistoryStore.class) {
+                store = instance;
+                if (store == null) {
+                    try {
+                        store = open(DIRECTORY);
+                    } catch (IOException e) {
+                        System.err.println("History segments unavailable, reading history from the database: "
+                                + e.getMessage());
+                        store = new HistoryStore(new TreeMap<>());
+                    }
+                    instance = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    // Open every segment in the directory, keeping the unbroken run of months from the oldest one
+    static HistoryStore open(Path directory) throws IOException {
+        NavigableMap<YearMonth, HistorySegment> all = new TreeMap<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                for (Path file : files) {
+                    HistorySegment segment = HistorySegment.open(file);
+                    all.put(segment.getMonth(), segment);
+                }
+            }
+        }
+
+        NavigableMap<YearMonth, HistorySegment> covered = new TreeMap<>();
+        for (Map.Entry<YearMonth, HistorySegment> entry : all.entrySet()) {
+            if (!covered.isEmpty() && !covered.lastKey().plusMonths(1).equals(entry.getKey())) {
+                System.err.println("History segments stop at " + covered.lastKey() + ": " +
+                        covered.lastKey().plusMonths(1) + " is missing");
+                break;
+            }
+            covered.put(entry.getKey(), entry.getValue());
+        }
+        return new HistoryStore(covered);
+    }
+
+    static Path segmentFile(Path directory, YearMonth month) {
+        return directory.resolve(month + SUFFIX);
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    // First day answered from the files (null when there are none)
+    public LocalDate getCoveredFrom() {
+        return segments.isEmpty() ? null : segments.firstKey().atDay(1);
+    }
+
+    // First day after the files (null when there are none)
+    public LocalDate getCoveredUntil() {
+        return segments.isEmpty() ? null : segments.lastKey().plusMonths(1).atDay(1);
+    }
+
+    // The patient's appointments in the covered months, by date
+    public List<Appointment> findByPatient(int patientId) throws IOException {
+        List<Appointment> result = new ArrayList<>();
+        for (HistorySegment segment : segments.values()) {
+            result.addAll(segment.findByPatient(patientId));
+        }
+        return result;
+    }
+
+    // Appointments per doctor between two dates (inclusive), counting only covered days
+    public Map<Integer, Integer> countByDoctor(LocalDate from, LocalDate to) throws IOException {
+        Map<Integer, Integer> counts = new HashMap<>();
+        if (segments.isEmpty() || to.isBefore(from)) {
+            return counts;
+        }
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        for (HistorySegment segment : segments.subMap(YearMonth.from(from), true, YearMonth.from(to), true).values()) {
+            segment.scan((id, patientId, doctorId, epochDay, startMinute, durationMinutes) -> {
+                if (epochDay >= fromDay && epochDay <= toDay) {
+                    counts.merge(doctorId, 1, Integer::sum);
+                }
+            });
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,13 @@
+package dao;
+
+import java.sql.SQLException;
+import java.time.Instant;
+
+// Booking idempotency keys (16-byte hashes), written together with the appointment they booked
+public interface IdempotencyDAO {
+    // Appointment recorded for a key hash, ignoring keys created before the cutoff; null if none
+    Long findAppointmentId(byte[] keyHash, Instant notBefore) throws SQLException;
+
+    // Delete keys created before the cutoff; returns how many were deleted
+    int purgeExpired(Instant cutoff) throws SQLException;
+}
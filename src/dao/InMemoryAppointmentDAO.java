@@ -0,0 +1,138 @@
+package dao;
+
+import model.Appointment;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// AppointmentDAO over the in-memory store
+public class InMemoryAppointmentDAO implements AppointmentDAO {
+    private final InMemoryStore store = InMemoryStore.get();
+
+    @Override
+    public boolean bookAppointment(Appointment appointment) throws SQLException {
+        appointment.setId(0);
+        store.insertAppointment(appointment, null);
+        return true;
+    }
+
+    @Override
+    public boolean bookAppointment(Appointment appointment, byte[] idempotencyKeyHash) throws SQLException {
+        appointment.setId(0);
+        store.insertAppointment(appointment, InMemoryStore.keyOf(idempotencyKeyHash));
+        return true;
+    }
+
+    @Override
+    public boolean isDoctorAvailable(int doctorId, LocalDate date) {
+        return store.bookedCount(doctorId, date) < store.getDailyCapacity(doctorId);
+    }
+
+    @Override
+    public int getBookedCount(int doctorId, LocalDate date) {
+        return store.bookedCount(doctorId, date);
+    }
+
+    @Override
+    public List<Appointment> getAppointmentsByPatientId(int patientId) {
+        return store.appointmentsForPatient(patientId);
+    }
+
+    @Override
+    public Map<Integer, List<Appointment>> getAppointmentsByPatientIds(Collection<Integer> patientIds) {
+        Map<Integer, List<Appointment>> appointments = new HashMap<>();
+        for (Integer patientId : patientIds) {
+            List<Appointment> list = store.appointmentsForPatient(patientId);
+            if (!list.isEmpty()) {
+                appointments.put(patientId, list);
+            }
+        }
+        return appointments;
+    }
+
+    @Override
+    public List<Appointment> getAppointmentsByDoctorId(int doctorId) {
+        return store.appointmentsForDoctor(doctorId, null, null);
+    }
+
+    @Override
+    public Appointment getAppointmentById(long appointmentId) {
+        return store.findAppointment(appointmentId);
+    }
+
+    @Override
+    public Cancellation cancelAppointment(long appointmentId) {
+        return store.cancelAppointment(appointmentId);
+    }
+
+    @Override
+    public List<Appointment> getPastAppointmentsByPatientId(int patientId) {
+        LocalDate today = LocalDate.now();
+        List<Appointment> past = new ArrayList<>();
+        for (Appointment appointment : store.appointmentsForPatient(patientId)) {
+            if (appointment.getAppointmentDate().isBefore(today)) {
+                past.add(appointment);
+            }
+        }
+        past.sort(Comparator.comparing(Appointment::getAppointmentDate).reversed()
+                .thenComparingLong(Appointment::getId));
+        return past;
+    }
+
+    @Override
+    public List<Appointment> getAllAppointments() {
+        return store.allAppointments();
+    }
+
+    @Override
+    public List<Appointment> getAppointmentsByDoctorIdBetween(int doctorId, LocalDate from, LocalDate to) {
+        return store.appointmentsForDoctor(doctorId, from, to);
+    }
+
+    @Override
+    public List<Appointment> getAppointmentsOn(LocalDate date) {
+        return store.appointmentsOn(date);
+    }
+
+    @Override
+    public List<Appointment> getAppointmentsFrom(LocalDate from) {
+        List<Appointment> result = new ArrayList<>();
+        for (Appointment appointment : store.allAppointments()) {
+            if (!appointment.getAppointmentDate().isBefore(from)) {
+                result.add(appointment);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Appointment> getAppointmentsBetween(LocalDate from, LocalDate to) {
+        List<Appointment> result = new ArrayList<>();
+        for (Appointment appointment : store.allAppointments()) {
+            LocalDate date = appointment.getAppointmentDate();
+            if (!date.isBefore(from) && !date.isAfter(to)) {
+                result.add(appointment);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Integer> getDoctorIdsWithAppointmentsBetween(LocalDate from, LocalDate to) {
+        return store.doctorsWithAppointmentsBetween(from, to);
+    }
+
+    @Override
+    public List<Integer> getActivePatientIdsBetween(LocalDate from, LocalDate to, int limit) {
+        Map<Integer, LocalDate> lastDates = store.lastAppointmentDates(from, to);
+        List<Integer> patientIds = new ArrayList<>(lastDates.keySet());
+        patientIds.sort(Comparator.comparing(lastDates::get, Comparator.reverseOrder()));
+        return patientIds.size() > limit ? new ArrayList<>(patientIds.subList(0, limit)) : patientIds;
+    }
+}
@@ -0,0 +1,73 @@
+package dao;
+
+import model.Doctor;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// DoctorDAO over the in-memory store
+public class InMemoryDoctorDAO implements DoctorDAO {
+    private final InMemoryStore store = InMemoryStore.get();
+
+    @Override
+    public boolean addDoctor(Doctor doctor) throws SQLException {
+        return store.insertDoctor(doctor);
+    }
+
+    @Override
+    public Doctor findDoctorByUserId(int userId) {
+        return store.findDoctorByUserId(userId);
+    }
+
+    @Override
+    public Doctor findDoctorById(int doctorId) {
+        return store.findDoctor(doctorId);
+    }
+
+    @Override
+    public Map<Integer, Doctor> findDoctorsByIds(Collection<Integer> doctorIds) {
+        Map<Integer, Doctor> doctors = new HashMap<>();
+        for (Integer id : doctorIds) {
+            Doctor doctor = store.findDoctor(id);
+            if (doctor != null) {
+                doctors.put(id, doctor);
+            }
+        }
+        return doctors;
+    }
+
+    @Override
+    public Map<Integer, Doctor> findDoctorsByUserIds(Collection<Integer> userIds) {
+        Map<Integer, Doctor> doctors = new HashMap<>();
+        for (Integer userId : userIds) {
+            Doctor doctor = store.findDoctorByUserId(userId);
+            if (doctor != null) {
+                doctors.put(userId, doctor);
+            }
+        }
+        return doctors;
+    }
+
+    @Override
+    public List<Doctor> getAllDoctors() {
+        return store.allDoctors();
+    }
+
+    @Override
+    public boolean deleteDoctor(int doctorId) {
+        return store.deleteDoctor(doctorId);
+    }
+
+    @Override
+    public int getDailyCapacity(int doctorId) {
+        return store.getDailyCapacity(doctorId);
+    }
+
+    @Override
+    public void setDailyCapacity(int doctorId, int capacity) {
+        store.setDailyCapacity(doctorId, capacity);
+    }
+}
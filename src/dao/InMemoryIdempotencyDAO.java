@@ -0,0 +1,18 @@
+package dao;
+
+import java.time.Instant;
+
+// IdempotencyDAO over the in-memory store; keys are written by InMemoryAppointmentDAO.bookAppointment
+public class InMemoryIdempotencyDAO implements IdempotencyDAO {
+    private final InMemoryStore store = InMemoryStore.get();
+
+    @Override
+    public Long findAppointmentId(byte[] keyHash, Instant notBefore) {
+        return store.findIdempotentAppointment(InMemoryStore.keyOf(keyHash), notBefore);
+    }
+
+    @Override
+    public int purgeExpired(Instant cutoff) {
+        return store.purgeIdempotencyKeys(cutoff);
+    }
+}
@@ -0,0 +1,63 @@
+package dao;
+
+import model.Patient;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// PatientDAO over the in-memory store
+public class InMemoryPatientDAO implements PatientDAO {
+    private final InMemoryStore store = InMemoryStore.get();
+
+    @Override
+    public boolean addPatient(Patient patient) throws SQLException {
+        return store.insertPatient(patient);
+    }
+
+    @Override
+    public Patient findPatientByUserId(int userId) {
+        return store.findPatientByUserId(userId);
+    }
+
+    @Override
+    public Patient findPatientById(int patientId) {
+        return store.findPatient(patientId);
+    }
+
+    @Override
+    public Map<Integer, Patient> findPatientsByIds(Collection<Integer> patientIds) {
+        Map<Integer, Patient> patients = new HashMap<>();
+        for (Integer id : patientIds) {
+            Patient patient = store.findPatient(id);
+            if (patient != null) {
+                patients.put(id, patient);
+            }
+        }
+        return patients;
+    }
+
+    @Override
+    public Map<Integer, Patient> findPatientsByUserIds(Collection<Integer> userIds) {
+        Map<Integer, Patient> patients = new HashMap<>();
+        for (Integer userId : userIds) {
+            Patient patient = store.findPatientByUserId(userId);
+            if (patient != null) {
+                patients.put(userId, patient);
+            }
+        }
+        return patients;
+    }
+
+    @Override
+    public List<Patient> getAllPatients() {
+        return store.allPatients();
+    }
+
+    @Override
+    public boolean deletePatient(int patientId) {
+        return store.deletePatient(patientId);
+    }
+}
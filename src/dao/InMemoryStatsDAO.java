@@ -0,0 +1,21 @@
+package dao;
+
+import model.DoctorDayStats;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// StatsDAO over the in-memory store
+public class InMemoryStatsDAO implements StatsDAO {
+    private final InMemoryStore store = InMemoryStore.get();
+
+    @Override
+    public List<DoctorDayStats> getStatsFrom(LocalDate from) {
+        return store.statsFrom(from);
+    }
+
+    @Override
+    public void addStats(List<DoctorDayStats> deltas) {
+        store.addStats(deltas);
+    }
+}
@@ -0,0 +1,707 @@
+package dao;
+
+import model.Appointment;
+import model.Doctor;
+import model.DoctorDayStats;
+import model.Patient;
+import model.User;
+import model.WaitlistEntry;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tables of the in-memory backend (-Dstorage=memory), with the constraints of the MySQL schema:
+ * unique usernames, one place per patient per doctor-day, per doctor-day counters of date-only bookings capped
+ * at the doctor's daily capacity, foreign keys from profiles to users and from appointments and waitlist entries to
+ * patients and doctors, and cascading deletes along those keys.
+ * Reads are lock-free over concurrent maps. Inserts share a read lock and rely on atomic putIfAbsent for
+ * uniqueness; deletes that cascade take the write lock so no insert can reference a row being removed.
+ * Rows are stored as private copies and handed out as fresh copies, like rows read from a database.
+ */
+final class InMemoryStore {
+    private static final InMemoryStore INSTANCE = new InMemoryStore();
+
+    private static final Comparator<Appointment> BY_DATE =
+            Comparator.comparing(Appointment::getAppointmentDate).thenComparingLong(Appointment::getId);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicInteger userIds = new AtomicInteger();
+    private final AtomicInteger patientIds = new AtomicInteger();
+    private final AtomicInteger doctorIds = new AtomicInteger();
+    private final AtomicLong appointmentIds = new AtomicLong();
+
+    private final Map<Integer, User> users = new ConcurrentHashMap<>();
+    private final Map<String, Integer> userIdsByUsername = new ConcurrentHashMap<>();
+
+    private final Map<Integer, Patient> patients = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> patientIdsByUserId = new ConcurrentHashMap<>();
+    private final Map<Integer, Doctor> doctors = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> doctorIdsByUserId = new ConcurrentHashMap<>();
+
+    // Appointments by id, plus sorted indexes per doctor and per patient by (date, id)
+    private final Map<Long, Appointment> appointments = new ConcurrentHashMap<>();
+    private final Map<Integer, ConcurrentSkipListSet<Appointment>> appointmentsByDoctor = new ConcurrentHashMap<>();
+    private final Map<Integer, ConcurrentSkipListSet<Appointment>> appointmentsByPatient = new ConcurrentHashMap<>();
+
+    // Places taken per doctor-day, the (doctor, date, patient) unique key, and configured daily capacities
+    private final Map<Integer, ConcurrentHashMap<LocalDate, AtomicInteger>> bookedPerDay = new ConcurrentHashMap<>();
+    private final Set<String> doctorDayPatients = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Integer> dailyCapacities = new ConcurrentHashMap<>();
+
+    // FIFO waitlist per doctor-day, each guarded by the day's booking counter like the day's time slots
+    private final Map<Integer, ConcurrentHashMap<LocalDate, Deque<WaitlistEntry>>> waitlists = new ConcurrentHashMap<>();
+    private final AtomicLong waitlistIds = new AtomicLong();
+
+    // appointment_stats: flushed booking and cancellation counts per doctor-day
+    private final Map<Integer, ConcurrentHashMap<LocalDate, DoctorDayStats>> dayStats = new ConcurrentHashMap<>();
+
+    // Idempotency key (base64 of the hash) to appointment id and creation time
+    private final Map<String, IdempotencyEntry> idempotencyKeys = new ConcurrentHashMap<>();
+
+    private InMemoryStore() {}
+
+    static InMemoryStore get() {
+        return INSTANCE;
+    }
+
+    // ---- users ----
+
+    boolean insertUser(User user) throws SQLException {
+        lock.readLock().lock();
+        try {
+            int id = userIds.incrementAndGet();
+            if (userIdsByUsername.putIfAbsent(user.getUsername(), id) != null) {
+                throw duplicate("'" + user.getUsername() + "' for key 'users.username'");
+            }
+            user.setId(id);
+            users.put(id, copy(user));
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    User findUser(int userId) {
+        User user = users.get(userId);
+        return user == null ? null : copy(user);
+    }
+
+    User findUserByUsername(String username) {
+        Integer id = userIdsByUsername.get(username);
+        return id == null ? null : findUser(id);
+    }
+
+    boolean updatePassword(int userId, String password) {
+        User updated = users.computeIfPresent(userId, (id, user) -> {
+            User copy = copy(user);
+            copy.setPassword(password);
+            return copy;
+        });
+        return updated != null;
+    }
+
+    boolean deleteUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            User user = users.remove(userId);
+            if (user == null) {
+                return false;
+            }
+            userIdsByUsername.remove(user.getUsername());
+            Integer patientId = patientIdsByUserId.get(userId);
+            if (patientId != null) {
+                deletePatientLocked(patientId);
+            }
+            Integer doctorId = doctorIdsByUserId.get(userId);
+            if (doctorId != null) {
+                deleteDoctorLocked(doctorId);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---- patients and doctors ----
+
+    boolean insertPatient(Patient patient) throws SQLException {
+        lock.readLock().lock();
+        try {
+            checkUserReference(patient.getUserId(), "patients");
+            int id = patientIds.incrementAndGet();
+            patient.setId(id);
+            patients.put(id, copy(patient));
+            if (patient.getUserId() > 0) {
+                patientIdsByUserId.put(patient.getUserId(), id);
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Patient findPatient(int patientId) {
+        Patient patient = patients.get(patientId);
+        return patient == null ? null : copy(patient);
+    }
+
+    Patient findPatientByUserId(int userId) {
+        Integer id = patientIdsByUserId.get(userId);
+        return id == null ? null : findPatient(id);
+    }
+
+    List<Patient> allPatients() {
+        List<Patient> result = new ArrayList<>();
+        patients.values().forEach(patient -> result.add(copy(patient)));
+        result.sort(Comparator.comparingInt(Patient::getId));
+        return result;
+    }
+
+    boolean deletePatient(int patientId) {
+        lock.writeLock().lock();
+        try {
+            return deletePatientLocked(patientId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean insertDoctor(Doctor doctor) throws SQLException {
+        lock.readLock().lock();
+        try {
+            checkUserReference(doctor.getUserId(), "doctors");
+            int id = doctorIds.incrementAndGet();
+            doctor.setId(id);
+            doctors.put(id, copy(doctor));
+            if (doctor.getUserId() > 0) {
+                doctorIdsByUserId.put(doctor.getUserId(), id);
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Doctor findDoctor(int doctorId) {
+        Doctor doctor = doctors.get(doctorId);
+        return doctor == null ? null : copy(doctor);
+    }
+
+    Doctor findDoctorByUserId(int userId) {
+        Integer id = doctorIdsByUserId.get(userId);
+        return id == null ? null : findDoctor(id);
+    }
+
+    List<Doctor> allDoctors() {
+        List<Doctor> result = new ArrayList<>();
+        doctors.values().forEach(doctor -> result.add(copy(doctor)));
+        result.sort(Comparator.comparingInt(Doctor::getId));
+        return result;
+    }
+
+    boolean deleteDoctor(int doctorId) {
+        lock.writeLock().lock();
+        try {
+            return deleteDoctorLocked(doctorId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int getDailyCapacity(int doctorId) {
+        return dailyCapacities.getOrDefault(doctorId, DoctorDAO.DEFAULT_DAILY_CAPACITY);
+    }
+
+    void setDailyCapacity(int doctorId, int capacity) {
+        dailyCapacities.put(doctorId, capacity);
+    }
+
+    // ---- appointments ----
+
+    // Insert with a generated id (id = 0) or the id it carries; enforces the id, the patient's single place
+    // per doctor-day, the doctor's daily capacity (date-only rows), non-overlapping time slots and the foreign keys
+    void insertAppointment(Appointment appointment, String idempotencyKey) throws SQLException {
+        lock.readLock().lock();
+        try {
+            if (!patients.containsKey(appointment.getPatientId())) {
+                throw foreignKey("fk_appointments_patient");
+            }
+            if (!doctors.containsKey(appointment.getDoctorId())) {
+                throw foreignKey("fk_appointments_doctor");
+            }
+
+            long id = appointment.getId() > 0 ? appointment.getId() : appointmentIds.incrementAndGet();
+            if (appointment.getId() > 0) {
+                appointmentIds.accumulateAndGet(id, Math::max);
+            }
+            Appointment row = new Appointment(id, appointment.getPatientId(), appointment.getDoctorId(),
+                    appointment.getAppointmentDate());
+            row.setTimeSlot(appointment.getStartTime(), appointment.getDurationMinutes());
+            if (appointments.putIfAbsent(id, row) != null) {
+                throw duplicate("'" + id + "' for key 'appointments.PRIMARY'");
+            }
+
+            String placeKey = placeKey(row);
+            if (!doctorDayPatients.add(placeKey)) {
+                appointments.remove(id);
+                throw duplicate("'" + placeKey + "' for key 'appointments.uq_doctor_date_patient'");
+            }
+
+            if (!takePlace(row)) {
+                doctorDayPatients.remove(placeKey);
+                appointments.remove(id);
+                throw new SQLIntegrityConstraintViolationException(
+                        "Doctor " + row.getDoctorId() + " is fully booked on " + row.getAppointmentDate(), "23000");
+            }
+
+            if (idempotencyKey != null
+                    && idempotencyKeys.putIfAbsent(idempotencyKey, new IdempotencyEntry(id, Instant.now())) != null) {
+                releasePlace(row);
+                doctorDayPatients.remove(placeKey);
+                appointments.remove(id);
+                throw duplicate("for key 'booking_idempotency.PRIMARY'");
+            }
+
+            // The day's counter doubles as its lock, so overlap check and insert are atomic per doctor-day
+            ConcurrentSkipListSet<Appointment> doctorIndex =
+                    appointmentsByDoctor.computeIfAbsent(row.getDoctorId(), d -> new ConcurrentSkipListSet<>(BY_DATE));
+            synchronized (dayCounter(row.getDoctorId(), row.getAppointmentDate())) {
+                if (overlapsTimeSlot(doctorIndex, row)) {
+                    if (idempotencyKey != null) {
+                        idempotencyKeys.remove(idempotencyKey);
+                    }
+                    releasePlace(row);
+                    doctorDayPatients.remove(placeKey);
+                    appointments.remove(id);
+                    throw new SQLIntegrityConstraintViolationException("Doctor " + row.getDoctorId() +
+                            " already has an appointment overlapping " + row.getStartTime() + "-" +
+                            row.getEndTime() + " on " + row.getAppointmentDate(), "23000");
+                }
+                doctorIndex.add(row);
+            }
+            appointmentsByPatient.computeIfAbsent(row.getPatientId(), p -> new ConcurrentSkipListSet<>(BY_DATE))
+                    .add(row);
+            appointment.setId(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Places taken on the doctor's day (date-only appointments)
+    int bookedCount(int doctorId, LocalDate date) {
+        Map<LocalDate, AtomicInteger> days = bookedPerDay.get(doctorId);
+        AtomicInteger booked = days == null ? null : days.get(date);
+        return booked == null ? 0 : booked.get();
+    }
+
+    Appointment findAppointment(long appointmentId) {
+        Appointment row = appointments.get(appointmentId);
+        return row == null ? null : withNames(row);
+    }
+
+    // Delete an appointment and, under the day's lock, book its place for the first waiting patient
+    Cancellation cancelAppointment(long appointmentId) {
+        lock.readLock().lock();
+        try {
+            Appointment row = appointments.get(appointmentId);
+            if (row == null) {
+                return Cancellation.NOT_FOUND;
+            }
+            synchronized (dayCounter(row.getDoctorId(), row.getAppointmentDate())) {
+                if (!appointments.remove(appointmentId, row)) {
+                    return Cancellation.NOT_FOUND;
+                }
+                unindex(row);
+                return new Cancellation(true, promoteFromWaitlist(row));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean deleteAppointment(long appointmentId) {
+        Appointment row = appointments.remove(appointmentId);
+        if (row == null) {
+            return false;
+        }
+        unindex(row);
+        return true;
+    }
+
+    List<Appointment> appointmentsForPatient(int patientId) {
+        ConcurrentSkipListSet<Appointment> index = appointmentsByPatient.get(patientId);
+        List<Appointment> result = new ArrayList<>();
+        if (index != null) {
+            index.forEach(row -> result.add(withNames(row)));
+        }
+        return result;
+    }
+
+    // Inclusive date range of one doctor's schedule
+    List<Appointment> appointmentsForDoctor(int doctorId, LocalDate from, LocalDate to) {
+        ConcurrentSkipListSet<Appointment> index = appointmentsByDoctor.get(doctorId);
+        List<Appointment> result = new ArrayList<>();
+        if (index == null) {
+            return result;
+        }
+        NavigableSet<Appointment> range = from == null && to == null ? index
+                : between(index, from == null ? LocalDate.MIN : from, to == null ? LocalDate.MAX : to);
+        range.forEach(row -> result.add(withNames(row)));
+        return result;
+    }
+
+    List<Appointment> allAppointments() {
+        List<Appointment> result = new ArrayList<>();
+        appointments.values().forEach(row -> result.add(withNames(row)));
+        result.sort(BY_DATE);
+        return result;
+    }
+
+    // One date across every doctor's index
+    List<Appointment> appointmentsOn(LocalDate date) {
+        List<Appointment> result = new ArrayList<>();
+        for (ConcurrentSkipListSet<Appointment> index : appointmentsByDoctor.values()) {
+            between(index, date, date).forEach(row -> result.add(withNames(row)));
+        }
+        result.sort(BY_DATE);
+        return result;
+    }
+
+    List<Integer> doctorsWithAppointmentsBetween(LocalDate from, LocalDate to) {
+        List<Integer> result = new ArrayList<>();
+        appointmentsByDoctor.forEach((doctorId, index) -> {
+            if (!between(index, from, to).isEmpty()) {
+                result.add(doctorId);
+            }
+        });
+        result.sort(null);
+        return result;
+    }
+
+    // Each patient's latest appointment date within the range
+    Map<Integer, LocalDate> lastAppointmentDates(LocalDate from, LocalDate to) {
+        Map<Integer, LocalDate> result = new HashMap<>();
+        for (Appointment row : appointments.values()) {
+            LocalDate date = row.getAppointmentDate();
+            if (!date.isBefore(from) && !date.isAfter(to)) {
+                result.merge(row.getPatientId(), date, (a, b) -> a.isAfter(b) ? a : b);
+            }
+        }
+        return result;
+    }
+
+    // ---- waitlist ----
+
+    int joinWaitlist(int doctorId, LocalDate date, int patientId, int pendingPlaces) throws SQLException {
+        lock.readLock().lock();
+        try {
+            if (!patients.containsKey(patientId)) {
+                throw foreignKey("fk_waitlist_patient");
+            }
+            if (!doctors.containsKey(doctorId)) {
+                throw foreignKey("fk_waitlist_doctor");
+            }
+            synchronized (dayCounter(doctorId, date)) {
+                if (bookedCount(doctorId, date) + pendingPlaces < getDailyCapacity(doctorId)) {
+                    return 0;
+                }
+                Deque<WaitlistEntry> queue = waitlists.computeIfAbsent(doctorId, d -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(date, d -> new ArrayDeque<>());
+                for (WaitlistEntry entry : queue) {
+                    if (entry.getPatientId() == patientId) {
+                        throw duplicate("'" + doctorId + "-" + date + "-" + patientId +
+                                "' for key 'waitlist.uq_waitlist_doctor_day_patient'");
+                    }
+                }
+                queue.addLast(new WaitlistEntry(waitlistIds.incrementAndGet(), patientId, doctorId, date, 0));
+                return queue.size();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean leaveWaitlist(int doctorId, LocalDate date, int patientId) {
+        Deque<WaitlistEntry> queue = waitlistFor(doctorId, date);
+        if (queue == null) {
+            return false;
+        }
+        synchronized (dayCounter(doctorId, date)) {
+            return queue.removeIf(entry -> entry.getPatientId() == patientId);
+        }
+    }
+
+    List<WaitlistEntry> waitlistForPatient(int patientId, LocalDate from) {
+        List<WaitlistEntry> result = new ArrayList<>();
+        waitlists.forEach((doctorId, days) -> days.forEach((date, queue) -> {
+            if (date.isBefore(from)) {
+                return;
+            }
+            synchronized (dayCounter(doctorId, date)) {
+                int position = 0;
+                for (WaitlistEntry entry : queue) {
+                    position++;
+                    if (entry.getPatientId() == patientId) {
+                        WaitlistEntry copy = new WaitlistEntry(entry.getId(), patientId, doctorId, date, position);
+                        Doctor doctor = doctors.get(doctorId);
+                        copy.setDoctorName(doctor == null ? null : doctor.getName());
+                        result.add(copy);
+                    }
+                }
+            }
+        }));
+        result.sort(Comparator.comparing(WaitlistEntry::getDate).thenComparingLong(WaitlistEntry::getId));
+        return result;
+    }
+
+    int waitlistLength(int doctorId, LocalDate date) {
+        Deque<WaitlistEntry> queue = waitlistFor(doctorId, date);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (dayCounter(doctorId, date)) {
+            return queue.size();
+        }
+    }
+
+    // ---- doctor-day stats ----
+
+    List<DoctorDayStats> statsFrom(LocalDate from) {
+        List<DoctorDayStats> result = new ArrayList<>();
+        dayStats.values().forEach(days -> days.forEach((day, stats) -> {
+            if (!day.isBefore(from)) {
+                result.add(stats);
+            }
+        }));
+        return result;
+    }
+
+    void addStats(List<DoctorDayStats> deltas) {
+        for (DoctorDayStats delta : deltas) {
+            dayStats.computeIfAbsent(delta.getDoctorId(), id -> new ConcurrentHashMap<>())
+                    .merge(delta.getDay(), delta, (a, b) -> new DoctorDayStats(a.getDoctorId(), a.getDay(),
+                            a.getBooked() + b.getBooked(), a.getCancelled() + b.getCancelled()));
+        }
+    }
+
+    // ---- idempotency keys ----
+
+    Long findIdempotentAppointment(String key, Instant notBefore) {
+        IdempotencyEntry entry = idempotencyKeys.get(key);
+        return entry == null || entry.createdAt.isBefore(notBefore) ? null : entry.appointmentId;
+    }
+
+    int purgeIdempotencyKeys(Instant cutoff) {
+        int before = idempotencyKeys.size();
+        idempotencyKeys.values().removeIf(entry -> entry.createdAt.isBefore(cutoff));
+        return Math.max(0, before - idempotencyKeys.size());
+    }
+
+    static String keyOf(byte[] keyHash) {
+        return Base64.getEncoder().encodeToString(keyHash);
+    }
+
+    // ---- helpers ----
+
+    private boolean deletePatientLocked(int patientId) {
+        Patient patient = patients.remove(patientId);
+        if (patient == null) {
+            return false;
+        }
+        patientIdsByUserId.remove(patient.getUserId(), patientId);
+        ConcurrentSkipListSet<Appointment> index = appointmentsByPatient.remove(patientId);
+        if (index != null) {
+            index.forEach(row -> deleteAppointment(row.getId()));
+        }
+        waitlists.forEach((doctorId, days) -> days.forEach((date, queue) -> {
+            synchronized (dayCounter(doctorId, date)) {
+                queue.removeIf(entry -> entry.getPatientId() == patientId);
+            }
+        }));
+        return true;
+    }
+
+    private boolean deleteDoctorLocked(int doctorId) {
+        Doctor doctor = doctors.remove(doctorId);
+        if (doctor == null) {
+            return false;
+        }
+        doctorIdsByUserId.remove(doctor.getUserId(), doctorId);
+        ConcurrentSkipListSet<Appointment> index = appointmentsByDoctor.remove(doctorId);
+        if (index != null) {
+            index.forEach(row -> deleteAppointment(row.getId()));
+        }
+        bookedPerDay.remove(doctorId);
+        dailyCapacities.remove(doctorId);
+        waitlists.remove(doctorId);
+        dayStats.remove(doctorId);
+        return true;
+    }
+
+    // Book a freed place (or time slot, which takes no place) for the first waiting patient without a place
+    // that day; call with the day's counter locked
+    private Appointment promoteFromWaitlist(Appointment freed) {
+        Deque<WaitlistEntry> queue = waitlistFor(freed.getDoctorId(), freed.getAppointmentDate());
+        while (queue != null && !queue.isEmpty() && (freed.hasTimeSlot()
+                || bookedCount(freed.getDoctorId(), freed.getAppointmentDate()) < getDailyCapacity(freed.getDoctorId()))) {
+            WaitlistEntry next = queue.pollFirst();
+            Appointment promoted = new Appointment(next.getPatientId(), freed.getDoctorId(),
+                    freed.getAppointmentDate(), freed.getStartTime(), freed.getDurationMinutes());
+            try {
+                insertAppointment(promoted, null);
+                return findAppointment(promoted.getId());
+            } catch (SQLException e) {
+                // The patient already has a place that day; drop them and try the next
+            }
+        }
+        return null;
+    }
+
+    private Deque<WaitlistEntry> waitlistFor(int doctorId, LocalDate date) {
+        Map<LocalDate, Deque<WaitlistEntry>> days = waitlists.get(doctorId);
+        return days == null ? null : days.get(date);
+    }
+
+    private void unindex(Appointment row) {
+        releasePlace(row);
+        doctorDayPatients.remove(placeKey(row));
+        ConcurrentSkipListSet<Appointment> doctorIndex = appointmentsByDoctor.get(row.getDoctorId());
+        if (doctorIndex != null) {
+            doctorIndex.remove(row);
+        }
+        ConcurrentSkipListSet<Appointment> patientIndex = appointmentsByPatient.get(row.getPatientId());
+        if (patientIndex != null) {
+            patientIndex.remove(row);
+        }
+    }
+
+    // Take one of the doctor's places for a date-only row unless the day is at capacity; timed rows are
+    // limited by overlap alone and take none
+    private boolean takePlace(Appointment row) {
+        if (row.hasTimeSlot()) {
+            return true;
+        }
+        int capacity = getDailyCapacity(row.getDoctorId());
+        AtomicInteger booked = dayCounter(row.getDoctorId(), row.getAppointmentDate());
+        while (true) {
+            int current = booked.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (booked.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private AtomicInteger dayCounter(int doctorId, LocalDate date) {
+        return bookedPerDay.computeIfAbsent(doctorId, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(date, d -> new AtomicInteger());
+    }
+
+    // Whether a timed row overlaps another timed appointment of the doctor on its day
+    private static boolean overlapsTimeSlot(ConcurrentSkipListSet<Appointment> doctorIndex, Appointment row) {
+        if (!row.hasTimeSlot()) {
+            return false;
+        }
+        for (Appointment other : between(doctorIndex, row.getAppointmentDate(), row.getAppointmentDate())) {
+            if (other.hasTimeSlot() && other.getStartTime().isBefore(row.getEndTime())
+                    && other.getEndTime().isAfter(row.getStartTime())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void releasePlace(Appointment row) {
+        if (row.hasTimeSlot()) {
+            return;
+        }
+        Map<LocalDate, AtomicInteger> days = bookedPerDay.get(row.getDoctorId());
+        AtomicInteger booked = days == null ? null : days.get(row.getAppointmentDate());
+        if (booked != null) {
+            booked.updateAndGet(n -> Math.max(0, n - 1));
+        }
+    }
+
+    private static String placeKey(Appointment row) {
+        return row.getDoctorId() + "-" + row.getAppointmentDate() + "-" + row.getPatientId();
+    }
+
+    // Appointments of a (date, id)-sorted index whose dates fall in an inclusive range
+    private static NavigableSet<Appointment> between(ConcurrentSkipListSet<Appointment> index,
+                                                     LocalDate from, LocalDate to) {
+        return index.subSet(new Appointment(Long.MIN_VALUE, 0, 0, from), true,
+                new Appointment(Long.MAX_VALUE, 0, 0, to), true);
+    }
+
+    private void checkUserReference(int userId, String table) throws SQLException {
+        if (userId > 0 && !users.containsKey(userId)) {
+            throw foreignKey("fk_" + table + "_user");
+        }
+    }
+
+    // Display columns joined in, as the MySQL queries do
+    private Appointment withNames(Appointment row) {
+        Patient patient = patients.get(row.getPatientId());
+        Doctor doctor = doctors.get(row.getDoctorId());
+        Appointment appointment = new Appointment(row.getId(), row.getPatientId(), row.getDoctorId(),
+                row.getAppointmentDate(),
+                patient == null ? null : patient.getName(),
+                doctor == null ? null : doctor.getName(),
+                doctor == null ? null : doctor.getSpecialization());
+        appointment.setTimeSlot(row.getStartTime(), row.getDurationMinutes());
+        return appointment;
+    }
+
+    private static User copy(User user) {
+        return new User(user.getId(), user.getUsername(), user.getPassword(), user.getRole());
+    }
+
+    private static Patient copy(Patient patient) {
+        return new Patient(patient.getId(), patient.getName(), patient.getAge(), patient.getGender(),
+                patient.getUserId());
+    }
+
+    private static Doctor copy(Doctor doctor) {
+        return new Doctor(doctor.getId(), doctor.getName(), doctor.getSpecialization(), doctor.getUserId());
+    }
+
+    private static SQLIntegrityConstraintViolationException duplicate(String detail) {
+        return new SQLIntegrityConstraintViolationException("Duplicate entry " + detail, "23000", 1062);
+    }
+
+    private static SQLIntegrityConstraintViolationException foreignKey(String constraint) {
+        return new SQLIntegrityConstraintViolationException(
+                "Cannot add or update a child row: a foreign key constraint fails (" + constraint + ")", "23000", 1452);
+    }
+
+    private static class IdempotencyEntry {
+        private final long appointmentId;
+        private final Instant createdAt;
+
+        private IdempotencyEntry(long appointmentId, Instant createdAt) {
+            this.appointmentId = appointmentId;
+            this.createdAt = createdAt;
+        }
+    }
+}
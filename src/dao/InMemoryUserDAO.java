@@ -0,0 +1,41 @@
+package dao;
+
+import model.User;
+
+import java.sql.SQLException;
+
+// UserDAO over the in-memory store
+public class InMemoryUserDAO implements UserDAO {
+    private final InMemoryStore store = InMemoryStore.get();
+
+    @Override
+    public boolean registerUser(User user) throws SQLException {
+        return store.insertUser(user);
+    }
+
+    @Override
+    public User findUserByCredentials(String username, String password) {
+        User user = store.findUserByUsername(username);
+        return user != null && user.getPassword().equals(password) ? user : null;
+    }
+
+    @Override
+    public boolean usernameExists(String username) {
+        return store.findUserByUsername(username) != null;
+    }
+
+    @Override
+    public User findUserById(int userId) {
+        return store.findUser(userId);
+    }
+
+    @Override
+    public boolean updatePassword(int userId, String newPassword) {
+        return store.updatePassword(userId, newPassword);
+    }
+
+    @Override
+    public boolean deleteUser(int userId) {
+        return store.deleteUser(userId);
+    }
+}
@@ -0,0 +1,32 @@
+package dao;
+
+import model.WaitlistEntry;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+// WaitlistDAO over the in-memory store; promotion happens in InMemoryAppointmentDAO.cancelAppointment
+public class InMemoryWaitlistDAO implements WaitlistDAO {
+    private final InMemoryStore store = InMemoryStore.get();
+
+    @Override
+    public int joinWaitlist(int doctorId, LocalDate date, int patientId, int pendingPlaces) throws SQLException {
+        return store.joinWaitlist(doctorId, date, patientId, pendingPlaces);
+    }
+
+    @Override
+    public boolean leaveWaitlist(int doctorId, LocalDate date, int patientId) {
+        return store.leaveWaitlist(doctorId, date, patientId);
+    }
+
+    @Override
+    public List<WaitlistEntry> getWaitlistByPatientId(int patientId) {
+        return store.waitlistForPatient(patientId, LocalDate.now());
+    }
+
+    @Override
+    public int getWaitlistLength(int doctorId, LocalDate date) {
+        return store.waitlistLength(doctorId, date);
+    }
+}
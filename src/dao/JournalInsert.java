@@ -0,0 +1,17 @@
+package dao;
+
+// Outcome of storing one journaled booking under the id the journal gave it
+public enum JournalInsert {
+    // Inserted now
+    STORED,
+    // A row with this id and the same patient, doctor and date is already there (replayed after a crash)
+    ALREADY_STORED,
+    // The doctor's day is full or the time slot is taken
+    NO_PLACE,
+    // The patient already has an appointment with the doctor that day
+    PATIENT_ALREADY_BOOKED,
+    // The patient or the doctor no longer exists
+    MISSING_REFERENCE,
+    // The id belongs to a different appointment
+    ID_TAKEN
+}
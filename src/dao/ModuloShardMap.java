@@ -0,0 +1,23 @@
+package dao;
+
+// Default shard map: doctor id modulo the number of shards
+public class ModuloShardMap implements ShardMap {
+    private final int shardCount;
+
+    public ModuloShardMap(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1");
+        }
+        this.shardCount = shardCount;
+    }
+
+    @Override
+    public int shardFor(int doctorId) {
+        return Math.floorMod(doctorId, shardCount);
+    }
+
+    @Override
+    public int shardCount() {
+        return shardCount;
+    }
+}
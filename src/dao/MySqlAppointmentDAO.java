@@ -0,0 +1,1153 @@
+package dao;
+
+import model.Appointment;
+import model.Doctor;
+import model.Patient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Appointments live on the shard chosen by doctor id (see ShardRouter); doctor-keyed queries go to one shard,
+// everything else is scattered to all shards and merged on appointment_date. Appointments before the archive
+// cutoff live in appointments_archive on the same shard; queries that can reach the past read both tables.
+// Streaming, counting, archiving and the write-behind journal's id-carrying inserts are MySQL only and are used
+// through this class rather than AppointmentDAO
+public class MySqlAppointmentDAO implements AppointmentDAO {
+    // Appointments moved per archive transaction
+    private static final int ARCHIVE_BATCH_SIZE = Math.max(1, Integer.getInteger("archive.batchSize", 1000));
+
+    // MySQL error for a duplicate unique key
+    private static final int MYSQL_DUPLICATE_ENTRY = 1062;
+
+    private static final Comparator<Appointment> BY_DATE_ASC =
+            Comparator.comparing(Appointment::getAppointmentDate).thenComparingLong(Appointment::getId);
+    private static final Comparator<Appointment> BY_DATE_DESC =
+            Comparator.comparing(Appointment::getAppointmentDate).reversed().thenComparingLong(Appointment::getId);
+    private static final Comparator<Appointment> BY_PATIENT_THEN_DATE =
+            Comparator.comparingInt(Appointment::getPatientId).thenComparing(BY_DATE_ASC);
+
+    // Receives rows one at a time from streamAppointments
+    @FunctionalInterface
+    public interface RowHandler {
+        void handle(Appointment appointment) throws IOException;
+    }
+
+    // Names for appointments read from history segments, which store ids only
+    private final PatientDAO patientDAO = new MySqlPatientDAO();
+    private final DoctorDAO doctorDAO = new MySqlDoctorDAO();
+
+    // Book appointment with prepared statement, taking one of the doctor's places for the day in the same
+    // transaction; a full day fails with SQLIntegrityConstraintViolationException
+    @Override
+    public boolean bookAppointment(Appointment appointment) throws SQLException {
+        return bookAppointment(appointment, null);
+    }
+
+    // Book appointment and record its idempotency key (if given) in one transaction; a date-only booking on a
+    // full day, a time slot overlapping another of the doctor's, a duplicate key or a second place for the
+    // patient fails the whole transaction with SQLIntegrityConstraintViolationException. The day counter's row
+    // lock, taken first, serializes bookings for the doctor's day, so the overlap check cannot race
+    @Override
+    public boolean bookAppointment(Appointment appointment, byte[] idempotencyKeyHash)
+            throws SQLException {
+        String insertAppointment = "INSERT INTO appointments (patient_id, doctor_id, appointment_date, start_time, " +
+                "duration_minutes) VALUES (?, ?, ?, ?, ?)";
+        String insertKey = "INSERT INTO booking_idempotency (key_hash, appointment_id) VALUES (?, ?)";
+
+        try (Connection conn = ShardRouter.getConnectionForDoctor(appointment.getDoctorId())) {
+            createDayCounter(conn, appointment.getDoctorId(), appointment.getAppointmentDate());
+            conn.setAutoCommit(false);
+
+            if (!holdDay(conn, appointment)) {
+                conn.rollback();
+                throw fullyBooked(appointment.getDoctorId(), appointment.getAppointmentDate());
+            }
+            if (isSlotTaken(conn, appointment)) {
+                conn.rollback();
+                throw slotTaken(appointment);
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(insertAppointment, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, appointment.getPatientId());
+                ps.setInt(2, appointment.getDoctorId());
+                ps.setDate(3, Date.valueOf(appointment.getAppointmentDate()));
+                setTimeSlot(ps, 4, appointment);
+
+                if (ps.executeUpdate() == 0) {
+                    conn.rollback();
+                    return false;
+                }
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        return false;
+                    }
+                    appointment.setId(rs.getLong(1));
+                }
+            }
+
+            if (idempotencyKeyHash != null) {
+                try (PreparedStatement ps = conn.prepareStatement(insertKey)) {
+                    ps.setBytes(1, idempotencyKeyHash);
+                    ps.setLong(2, appointment.getId());
+                    ps.executeUpdate();
+                }
+            }
+
+            conn.commit();
+            return true;
+        }
+    }
+
+    // Whether the doctor has a place left for a date-only appointment, from the day's counter (a day without
+    // one has the doctor's full capacity)
+    @Override
+    public boolean isDoctorAvailable(int doctorId, LocalDate date) throws SQLException {
+        String sql = "SELECT COALESCE(" +
+                "(SELECT booked < capacity FROM doctor_day_bookings WHERE doctor_id = ? AND day = ?), " +
+                "(SELECT COALESCE(MAX(daily_capacity), ?) > 0 FROM doctor_capacity WHERE doctor_id = ?))";
+
+        try (Connection conn = ShardRouter.getConnectionForDoctor(doctorId);
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, doctorId);
+            ps.setDate(2, Date.valueOf(date));
+            ps.setInt(3, DoctorDAO.DEFAULT_DAILY_CAPACITY);
+            ps.setInt(4, doctorId);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getBoolean(1);
+                }
+            }
+        }
+        return false;
+    }
+
+    // Date-only appointments the doctor has on a date, read from the day's counter
+    @Override
+    public int getBookedCount(int doctorId, LocalDate date) throws SQLException {
+        String sql = "SELECT booked FROM doctor_day_bookings WHERE doctor_id = ? AND day = ?";
+
+        try (Connection conn = ShardRouter.getConnectionForDoctor(doctorId);
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, doctorId);
+            ps.setDate(2, Date.valueOf(date));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    // Get appointments for a specific patient, archived ones included (all shards, merged by date)
+    @Override
+    public List<Appointment> getAppointmentsByPatientId(int patientId) throws SQLException {
+        String sql = "SELECT a.id, a.patient_id, a.doctor_id, a.appointment_date, a.start_time, a.duration_minutes, " +
+                "p.name AS patient_name, d.name AS doctor_name, d.specialization " +
+                "FROM appointments a " +
+                "JOIN patients p ON a.patient_id = p.id " +
+                "JOIN doctors d ON a.doctor_id = d.id " +
+                "WHERE a.patient_id = ? " +
+                "ORDER BY a.appointment_date ASC, a.id ASC";
+
+        return ShardRouter.scatterSorted(conn -> queryAppointments(conn, sql, true,
+                ps -> ps.setInt(1, patientId), BY_DATE_ASC), BY_DATE_ASC);
+    }
+
+    // Get appointments for several patients (archived ones included) in one query per shard and table,
+    // grouped by patient id
+    @Override
+    public Map<Integer, List<Appointment>> getAppointmentsByPatientIds(Collection<Integer> patientIds)
+            throws SQLException {
+        Map<Integer, List<Appointment>> appointments = new HashMap<>();
+        if (patientIds.isEmpty()) {
+            return appointments;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(patientIds.size(), "?"));
+        String sql = "SELECT a.id, a.patient_id, a.doctor_id, a.appointment_date, a.start_time, a.duration_minutes, " +
+                "p.name AS patient_name, d.name AS doctor_name, d.specialization " +
+                "FROM appointments a " +
+                "JOIN patients p ON a.patient_id = p.id " +
+                "JOIN doctors d ON a.doctor_id = d.id " +
+                "WHERE a.patient_id IN (" + placeholders + ") " +
+                "ORDER BY a.patient_id, a.appointment_date ASC, a.id ASC";
+
+        List<Map<Integer, List<Appointment>>> perShard = ShardRouter.scatter(true, conn -> {
+            Map<Integer, List<Appointment>> byPatient = new HashMap<>();
+            List<Appointment> rows = queryAppointments(conn, sql, true, ps -> {
+                int index = 1;
+                for (Integer patientId : patientIds) {
+                    ps.setInt(index++, patientId);
+                }
+            }, BY_PATIENT_THEN_DATE);
+            for (Appointment appointment : rows) {
+                byPatient.computeIfAbsent(appointment.getPatientId(), id -> new ArrayList<>()).add(appointment);
+            }
+            return byPatient;
+        });
+
+        if (perShard.size() == 1) {
+            return perShard.get(0);
+        }
+        Map<Integer, List<List<Appointment>>> shardListsByPatient = new HashMap<>();
+        for (Map<Integer, List<Appointment>> shardResult : perShard) {
+            shardResult.forEach((patientId, list) ->
+                    shardListsByPatient.computeIfAbsent(patientId, id -> new ArrayList<>()).add(list));
+        }
+        shardListsByPatient.forEach((patientId, lists) ->
+                appointments.put(patientId, ShardRouter.mergeSorted(lists, BY_DATE_ASC)));
+        return appointments;
+    }
+
+    // Get appointments for a specific doctor, archived ones included (single shard)
+    @Override
+    public List<Appointment> getAppointmentsByDoctorId(int doctorId) throws SQLException {
+        String sql = "SELECT a.id, a.patient_id, a.doctor_id, a.appointment_date, a.start_time, a.duration_minutes, " +
+                "p.name AS patient_name, d.name AS doctor_name, d.specialization " +
+                "FROM appointments a " +
+                "JOIN patients p ON a.patient_id = p.id " +
+                "JOIN doctors d ON a.doctor_id = d.id " +
+                "WHERE a.doctor_id = ? " +
+                "ORDER BY a.appointment_date ASC, a.id ASC";
+
+        try (Connection conn = ShardRouter.getReadConnectionForDoctor(doctorId)) {
+            return queryAppointments(conn, sql, true, ps -> ps.setInt(1, doctorId), BY_DATE_ASC);
+        }
+    }
+
+    // Get appointment by ID (the owning shard is unknown, so every shard is asked; the archive only on a miss)
+    @Override
+    public Appointment getAppointmentById(long appointmentId) throws SQLException {
+        String sql = "SELECT a.*, p.name AS patient_name, d.name AS doctor_name, " +
+                "d.specialization AS doctor_specialization " +
+                "FROM appointments a " +
+                "JOIN patients p ON a.patient_id = p.id " +
+                "JOIN doctors d ON a.doctor_id = d.id " +
+                "WHERE a.id = ?";
+
+        List<Appointment> perShard = ShardRouter.scatter(false, conn -> {
+            for (String query : new String[]{sql, inArchive(sql)}) {
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    stmt.setLong(1, appointmentId);
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            Appointment appointment = new Appointment(
+                                    rs.getLong("id"),
+                                    rs.getInt("patient_id"),
+                                    rs.getInt("doctor_id"),
+                                    rs.getDate("appointment_date").toLocalDate()
+                            );
+                            readTimeSlot(rs, appointment);
+                            appointment.setPatientName(rs.getString("patient_name"));
+                            appointment.setDoctorName(rs.getString("doctor_name"));
+                            appointment.setDoctorSpecialization(rs.getString("doctor_specialization"));
+                            return appointment;
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+
+        for (Appointment appointment : perShard) {
+            if (appointment != null) {
+                return appointment;
+            }
+        }
+        return null;
+    }
+
+    // Cancel appointment, giving its place back to the doctor's day and promoting the first waiting patient
+    // into it, all in one transaction. Releasing the place locks the day counter, which joining the waitlist
+    // also locks, so a patient can never queue for a place that was just freed
+    @Override
+    public Cancellation cancelAppointment(long appointmentId) throws SQLException {
+        String select = "SELECT doctor_id, appointment_date, start_time, duration_minutes FROM appointments " +
+                "WHERE id = ? FOR UPDATE";
+        String delete = "DELETE FROM appointments WHERE id = ?";
+
+        List<Cancellation> perShard = ShardRouter.scatter(false, conn -> {
+            conn.setAutoCommit(false);
+            Appointment freed;
+            try (PreparedStatement stmt = conn.prepareStatement(select)) {
+                stmt.setLong(1, appointmentId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        return Cancellation.NOT_FOUND;
+                    }
+                    freed = new Appointment(appointmentId, 0, rs.getInt("doctor_id"),
+                            rs.getDate("appointment_date").toLocalDate());
+                    readTimeSlot(rs, freed);
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(delete)) {
+                stmt.setLong(1, appointmentId);
+                stmt.executeUpdate();
+            }
+            if (!freed.hasTimeSlot()) {
+                releasePlaces(conn, freed.getDoctorId(), freed.getAppointmentDate(), 1);
+            }
+            Appointment promoted = promoteFromWaitlist(conn, freed);
+            conn.commit();
+            return new Cancellation(true, promoted);
+        });
+
+        for (Cancellation cancellation : perShard) {
+            if (cancellation.isCancelled()) {
+                return cancellation;
+            }
+        }
+        return Cancellation.NOT_FOUND;
+    }
+
+    // Book the freed place (or time slot) for the first waiting patient who has no place that day yet,
+    // dropping any who already have one; null if nobody is waiting or the day has no place left. A freed
+    // time slot is handed on as it is and takes no place
+    private static Appointment promoteFromWaitlist(Connection conn, Appointment freed) throws SQLException {
+        String next = "SELECT id, patient_id FROM waitlist WHERE doctor_id = ? AND day = ? " +
+                "ORDER BY id LIMIT 1 FOR UPDATE";
+        String hasPlace = "SELECT 1 FROM appointments WHERE doctor_id = ? AND appointment_date = ? AND patient_id = ?";
+        String dequeue = "DELETE FROM waitlist WHERE id = ?";
+        String insert = "INSERT INTO appointments (patient_id, doctor_id, appointment_date, start_time, " +
+                "duration_minutes) VALUES (?, ?, ?, ?, ?)";
+
+        int doctorId = freed.getDoctorId();
+        LocalDate date = freed.getAppointmentDate();
+        while (true) {
+            long waitlistId;
+            int patientId;
+            try (PreparedStatement ps = conn.prepareStatement(next)) {
+                ps.setInt(1, doctorId);
+                ps.setDate(2, Date.valueOf(date));
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    waitlistId = rs.getLong("id");
+                    patientId = rs.getInt("patient_id");
+                }
+            }
+
+            boolean alreadyBooked;
+            try (PreparedStatement ps = conn.prepareStatement(hasPlace)) {
+                ps.setInt(1, doctorId);
+                ps.setDate(2, Date.valueOf(date));
+                ps.setInt(3, patientId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    alreadyBooked = rs.next();
+                }
+            }
+            if (!alreadyBooked && !freed.hasTimeSlot() && !takePlaces(conn, doctorId, date, 1)) {
+                return null;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(dequeue)) {
+                ps.setLong(1, waitlistId);
+                ps.executeUpdate();
+            }
+            if (alreadyBooked) {
+                continue;
+            }
+
+            Appointment promoted = new Appointment(patientId, doctorId, date, freed.getStartTime(),
+                    freed.getDurationMinutes());
+            try (PreparedStatement ps = conn.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, patientId);
+                ps.setInt(2, doctorId);
+                ps.setDate(3, Date.valueOf(date));
+                setTimeSlot(ps, 4, promoted);
+                ps.executeUpdate();
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        promoted.setId(rs.getLong(1));
+                    }
+                }
+            }
+            return promoted;
+        }
+    }
+
+    // Get past appointments for patient, archived ones included (all shards, merged newest first). Months
+    // covered by history segments are read from the files instead of the database
+    @Override
+    public List<Appointment> getPastAppointmentsByPatientId(int patientId) throws SQLException {
+        HistoryStore history = HistoryStore.getInstance();
+        String sql = "SELECT a.id, a.patient_id, a.doctor_id, a.appointment_date, a.start_time, a.duration_minutes, " +
+                "p.name AS patient_name, d.name AS doctor_name, d.specialization " +
+                "FROM appointments a " +
+                "JOIN patients p ON a.patient_id = p.id " +
+                "JOIN doctors d ON a.doctor_id = d.id " +
+                "WHERE a.patient_id = ? AND a.appointment_date < CURDATE() " +
+                (history.isEmpty() ? "" : "AND (a.appointment_date < ? OR a.appointment_date >= ?) ") +
+                "ORDER BY a.appointment_date DESC, a.id ASC";
+
+        List<Appointment> fromDatabase = ShardRouter.scatterSorted(conn -> queryAppointments(conn, sql, true, ps -> {
+            ps.setInt(1, patientId);
+            if (!history.isEmpty()) {
+                ps.setDate(2, Date.valueOf(history.getCoveredFrom()));
+                ps.setDate(3, Date.valueOf(history.getCoveredUntil()));
+            }
+        }, BY_DATE_DESC), BY_DATE_DESC);
+        if (history.isEmpty()) {
+            return fromDatabase;
+        }
+
+        List<Appointment> fromHistory = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        try {
+            for (Appointment appointment : history.findByPatient(patientId)) {
+                if (appointment.getAppointmentDate().isBefore(today)) {
+                    fromHistory.add(appointment);
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Reading history segments failed: " + e.getMessage(), e);
+        }
+        if (fromHistory.isEmpty()) {
+            return fromDatabase;
+        }
+        fillNames(fromHistory);
+        fromHistory.sort(BY_DATE_DESC);
+        return ShardRouter.mergeSorted(List.of(fromDatabase, fromHistory), BY_DATE_DESC);
+    }
+
+    // Get all appointments, archived ones included (all shards, merged by date)
+    @Override
+    public List<Appointment> getAllAppointments() throws SQLException {
+        String sql = "SELECT a.id, a.patient_id, a.doctor_id, a.appointment_date, a.start_time, a.duration_minutes, " +
+                "p.name AS patient_name, d.name AS doctor_name, d.specialization " +
+                "FROM appointments a " +
+                "JOIN patients p ON a.patient_id = p.id " +
+                "JOIN doctors d ON a.doctor_id = d.id " +
+                "ORDER BY a.appointment_date ASC, a.id ASC";
+
+        return ShardRouter.scatterSorted(conn -> queryAppointments(conn, sql, true, ps -> { }, BY_DATE_ASC),
+                BY_DATE_ASC);
+    }
+
+    // Get a doctor's appointments within a date range (inclusive), from the archive too if it reaches the past
+    @Override
+    public List<Appointment> getAppointmentsByDoctorIdBetween(int doctorId, LocalDate from, LocalDate to)
+            throws SQLException {
+        String sql = "SELECT a.id, a.patient_id, a.doctor_id, a.appointment_date, a.start_time, a.duration_minutes, " +
+                "p.name AS patient_name, d.name AS doctor_name, d.specialization " +
+                "FROM appointments a " +
+                "JOIN patients p ON a.patient_id = p.id " +
+                "JOIN doctors d ON a.doctor_id = d.id " +
+                "WHERE a.doctor_id = ? AND a.appointment_date BETWEEN ? AND ? " +
+                "ORDER BY a.appointment_date ASC, a.id ASC";
+
+        try (Connection conn = ShardRouter.getReadConnectionForDoctor(doctorId)) {
+            return queryAppointments(conn, sql, reachesPast(from), ps -> {
+                ps.setInt(1, doctorId);
+                ps.setDate(2, Date.valueOf(from));
+                ps.setDate(3, Date.valueOf(to));
+            }, BY_DATE_ASC);
+        }
+    }
+
+    // Get one day's appointments across all doctors, archived ones included for a past day (all shards, each
+    // an index range scan on idx_appointments_date)
+    @Override
+    public List<Appointment> getAppointmentsOn(LocalDate date) throws SQLException {
+        String sql = "SELECT a.id, a.patient_id, a.doctor_id, a.appointment_date, a.start_time, a.duration_minutes, " +
+                "p.name AS patient_name, d.name AS doctor_name, d.specialization " +
+                "FROM appointments a " +
+                "JOIN patients p ON a.patient_id = p.id " +
+                "JOIN doctors d ON a.doctor_id = d.id " +
+                "WHERE a.appointment_date = ? " +
+                "ORDER BY a.id ASC";
+
+        return ShardRouter.scatterSorted(conn -> queryAppointments(conn, sql, reachesPast(date),
+                ps -> ps.setDate(1, Date.valueOf(date)), BY_DATE_ASC), BY_DATE_ASC);
+    }
+
+    // Get bare appointment rows (with time slots) from a date onwards, without joining names (used to build the
+    // schedule index)
+    @Override
+    public List<Appointment> getAppointmentsFrom(LocalDate from) throws SQLException {
+        String sql = "SELECT id, patient_id, doctor_id, appointment_date, start_time, duration_minutes " +
+                "FROM appointments WHERE appointment_date >= ? ORDER BY appointment_date ASC, id ASC";
+
+        return ShardRouter.scatterSorted(conn -> {
+            List<List<Appointment>> parts = new ArrayList<>();
+            for (String query : reachesPast(from) ? new String[]{sql, inArchive(sql)} : new String[]{sql}) {
+                List<Appointment> appointments = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement(query)) {
+                    ps.setDate(1, Date.valueOf(from));
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Appointment appointment = new Appointment(
+                                    rs.getLong("id"),
+                                    rs.getInt("patient_id"),
+                                    rs.getInt("doctor_id"),
+                                    rs.getDate("appointment_date").toLocalDate());
+                            readTimeSlot(rs, appointment);
+                            appointments.add(appointment);
+                        }
+                    }
+                }
+                parts.add(appointments);
+            }
+            return ShardRouter.mergeSorted(parts, BY_DATE_ASC);
+        }, BY_DATE_ASC);
+    }
+
+    // Every appointment between two dates (inclusive), archived ones included; ids, patient, doctor, date and
+    // time slot only
+    @Override
+    public List<Appointment> getAppointmentsBetween(LocalDate from, LocalDate to) throws SQLException {
+        String sql = "SELECT id, patient_id, doctor_id, appointment_date, start_time, duration_minutes " +
+                "FROM appointments WHERE appointment_date BETWEEN ? AND ? ORDER BY appointment_date ASC, id ASC";
+
+        return ShardRouter.scatterSorted(conn -> {
+            List<List<Appointment>> parts = new ArrayList<>();
+            for (String query : reachesPast(from) ? new String[]{sql, inArchive(sql)} : new String[]{sql}) {
+                List<Appointment> appointments = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement(query)) {
+                    ps.setDate(1, Date.valueOf(from));
+                    ps.setDate(2, Date.valueOf(to));
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Appointment appointment = new Appointment(
+                                    rs.getLong("id"),
+                                    rs.getInt("patient_id"),
+                                    rs.getInt("doctor_id"),
+                                    rs.getDate("appointment_date").toLocalDate());
+                            readTimeSlot(rs, appointment);
+                            appointments.add(appointment);
+                        }
+                    }
+                }
+                parts.add(appointments);
+            }
+            return ShardRouter.mergeSorted(parts, BY_DATE_ASC);
+        }, BY_DATE_ASC);
+    }
+
+    // Stream every appointment between two dates (inclusive; null for no bound), archived ones included, to the
+    // handler with names, shard by shard (archive first, then live rows, each by id); returns the number of
+    // rows. Each query is forward-only with Connector/J's row-at-a-time streaming (fetch size
+    // Integer.MIN_VALUE), so memory stays flat however many rows are exported
+    public long streamAppointments(LocalDate from, LocalDate to, RowHandler handler)
+            throws SQLException, IOException {
+        StringBuilder sql = new StringBuilder("SELECT a.id, a.patient_id, a.doctor_id, a.appointment_date, " +
+                "a.start_time, a.duration_minutes, p.name AS patient_name, d.name AS doctor_name, d.specialization " +
+                "FROM appointments a " +
+                "JOIN patients p ON a.patient_id = p.id " +
+                "JOIN doctors d ON a.doctor_id = d.id WHERE 1 = 1");
+        if (from != null) {
+            sql.append(" AND a.appointment_date >= ?");
+        }
+        if (to != null) {
+            sql.append(" AND a.appointment_date <= ?");
+        }
+        sql.append(" ORDER BY a.id ASC");
+        String live = sql.toString();
+        String[] queries = from == null || reachesPast(from) ? new String[]{inArchive(live), live} : new String[]{live};
+
+        try {
+            long rows = 0;
+            for (long shardRows : ShardRouter.eachShard(true, conn -> {
+                long count = 0;
+                for (String query : queries) {
+                    try (PreparedStatement ps = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY)) {
+                        ps.setFetchSize(Integer.MIN_VALUE);
+                        int index = 1;
+                        if (from != null) {
+                            ps.setDate(index++, Date.valueOf(from));
+                        }
+                        if (to != null) {
+                            ps.setDate(index, Date.valueOf(to));
+                        }
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                handler.handle(mapAppointment(rs));
+                                count++;
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return count;
+            })) {
+                rows += shardRows;
+            }
+            return rows;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Appointments per doctor between two dates (inclusive), doctors without any left out: months covered by
+    // history segments are counted from the files, the rest with one GROUP BY per shard and table
+    public Map<Integer, Integer> countAppointmentsByDoctor(LocalDate from, LocalDate to) throws SQLException {
+        HistoryStore history = HistoryStore.getInstance();
+        String sql = "SELECT doctor_id, COUNT(*) FROM appointments WHERE appointment_date BETWEEN ? AND ? " +
+                (history.isEmpty() ? "" : "AND (appointment_date < ? OR appointment_date >= ?) ") +
+                "GROUP BY doctor_id";
+
+        List<Map<Integer, Integer>> perShard = ShardRouter.scatter(true, conn -> {
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (String query : reachesPast(from) ? new String[]{sql, inArchive(sql)} : new String[]{sql}) {
+                try (PreparedStatement ps = conn.prepareStatement(query)) {
+                    ps.setDate(1, Date.valueOf(from));
+                    ps.setDate(2, Date.valueOf(to));
+                    if (!history.isEmpty()) {
+                        ps.setDate(3, Date.valueOf(history.getCoveredFrom()));
+                        ps.setDate(4, Date.valueOf(history.getCoveredUntil()));
+                    }
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            counts.merge(rs.getInt(1), rs.getInt(2), Integer::sum);
+                        }
+                    }
+                }
+            }
+            return counts;
+        });
+
+        Map<Integer, Integer> counts;
+        try {
+            counts = history.countByDoctor(from, to);
+        } catch (IOException e) {
+            throw new SQLException("Reading history segments failed: " + e.getMessage(), e);
+        }
+        perShard.forEach(shardCounts -> shardCounts.forEach((doctorId, count) ->
+                counts.merge(doctorId, count, Integer::sum)));
+        return counts;
+    }
+
+    // Get ids of doctors that have appointments within a date range (inclusive)
+    @Override
+    public List<Integer> getDoctorIdsWithAppointmentsBetween(LocalDate from, LocalDate to) throws SQLException {
+        String sql = "SELECT DISTINCT doctor_id FROM appointments " +
+                "WHERE appointment_date BETWEEN ? AND ? ORDER BY doctor_id";
+
+        List<List<Integer>> perShard = ShardRouter.scatter(true, conn -> {
+            List<Integer> doctorIds = new ArrayList<>();
+            for (String query : reachesPast(from) ? new String[]{sql, inArchive(sql)} : new String[]{sql}) {
+                try (PreparedStatement ps = conn.prepareStatement(query)) {
+                    ps.setDate(1, Date.valueOf(from));
+                    ps.setDate(2, Date.valueOf(to));
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            doctorIds.add(rs.getInt(1));
+                        }
+                    }
+                }
+            }
+            return doctorIds;
+        });
+
+        TreeSet<Integer> doctorIds = new TreeSet<>();
+        perShard.forEach(doctorIds::addAll);
+        return new ArrayList<>(doctorIds);
+    }
+
+    // Get ids of patients with appointments within a date range, most recent first
+    @Override
+    public List<Integer> getActivePatientIdsBetween(LocalDate from, LocalDate to, int limit) throws SQLException {
+        String sql = "SELECT patient_id, MAX(appointment_date) AS last_date FROM appointments " +
+                "WHERE appointment_date BETWEEN ? AND ? " +
+                "GROUP BY patient_id ORDER BY last_date DESC LIMIT ?";
+
+        List<Map<Integer, LocalDate>> perShard = ShardRouter.scatter(true, conn -> {
+            Map<Integer, LocalDate> lastDates = new HashMap<>();
+            for (String query : reachesPast(from) ? new String[]{sql, inArchive(sql)} : new String[]{sql}) {
+                try (PreparedStatement ps = conn.prepareStatement(query)) {
+                    ps.setDate(1, Date.valueOf(from));
+                    ps.setDate(2, Date.valueOf(to));
+                    ps.setInt(3, limit);
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            lastDates.merge(rs.getInt("patient_id"), rs.getDate("last_date").toLocalDate(),
+                                    (a, b) -> a.isAfter(b) ? a : b);
+                        }
+                    }
+                }
+            }
+            return lastDates;
+        });
+
+        Map<Integer, LocalDate> lastDates = new HashMap<>();
+        perShard.forEach(shardResult -> shardResult.forEach((patientId, date) ->
+                lastDates.merge(patientId, date, (a, b) -> a.isAfter(b) ? a : b)));
+
+        List<Integer> patientIds = new ArrayList<>(lastDates.keySet());
+        patientIds.sort(Comparator.comparing(lastDates::get, Comparator.reverseOrder()));
+        return patientIds.size() > limit ? new ArrayList<>(patientIds.subList(0, limit)) : patientIds;
+    }
+
+    // Reserve count consecutive ids for journaled bookings on the shard, from the ids between floor and ceiling
+    // (inclusive) that no appointment uses yet, and return the first; reservations are durable and never handed
+    // out twice. The block is handed out under a row lock on the shard's journal_id_sequence, seeded on first
+    // use above the highest id already in the range
+    public long reserveJournalIds(int shard, long floor, long ceiling, int count) throws SQLException {
+        String seed = "INSERT IGNORE INTO journal_id_sequence (id, next_id) SELECT 1, GREATEST(?, " +
+                "(SELECT COALESCE(MAX(id), 0) + 1 FROM appointments WHERE id BETWEEN ? AND ?), " +
+                "(SELECT COALESCE(MAX(id), 0) + 1 FROM appointments_archive WHERE id BETWEEN ? AND ?))";
+        String select = "SELECT next_id FROM journal_id_sequence WHERE id = 1 FOR UPDATE";
+        String update = "UPDATE journal_id_sequence SET next_id = ? WHERE id = 1";
+
+        try (Connection conn = ShardRouter.getConnectionForShard(shard)) {
+            try (PreparedStatement ps = conn.prepareStatement(seed)) {
+                ps.setLong(1, floor);
+                ps.setLong(2, floor);
+                ps.setLong(3, ceiling);
+                ps.setLong(4, floor);
+                ps.setLong(5, ceiling);
+                ps.executeUpdate();
+            }
+
+            conn.setAutoCommit(false);
+            long first;
+            try (PreparedStatement ps = conn.prepareStatement(select);
+                 ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    conn.rollback();
+                    throw new SQLException("journal_id_sequence has no row on shard " + shard);
+                }
+                first = rs.getLong(1);
+            }
+            if (first + count - 1 > ceiling) {
+                conn.rollback();
+                throw new SQLException("Journal id range of shard " + shard + " is used up (" + ceiling + ")");
+            }
+            try (PreparedStatement ps = conn.prepareStatement(update)) {
+                ps.setLong(1, first + count);
+                ps.executeUpdate();
+            }
+            conn.commit();
+            return first;
+        }
+    }
+
+    // Next AUTO_INCREMENT value of appointments on each shard, in shard order (the primary's when unsharded)
+    public List<Long> getAutoIncrementByShard() throws SQLException {
+        String sql = "SELECT AUTO_INCREMENT FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'appointments'";
+
+        return ShardRouter.eachShard(false, conn -> {
+            try (Statement statement = conn.createStatement()) {
+                // MySQL 8 otherwise answers from cached table statistics; older servers have no such cache
+                statement.execute("SET SESSION information_schema_stats_expiry = 0");
+            } catch (SQLException e) {
+                // Not supported on this server, so the value is read live anyway
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getObject(1) == null) {
+                    throw new SQLException("No AUTO_INCREMENT found for appointments");
+                }
+                return rs.getLong(1);
+            }
+        });
+    }
+
+    // Insert appointments that already carry their ids with one multi-row INSERT per shard, each in its own
+    // transaction together with the places they take; a duplicate id, a second place for a patient, a day
+    // without enough places or a time slot overlapping a stored one fails that shard's whole transaction
+    public void insertAppointmentsWithIds(List<Appointment> appointments) throws SQLException {
+        Map<Integer, List<Appointment>> byShard = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            int shard = ShardRouter.isSharded() ? ShardRouter.getShardMap().shardFor(appointment.getDoctorId()) : 0;
+            byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(appointment);
+        }
+
+        for (List<Appointment> shardAppointments : byShard.values()) {
+            String sql = "INSERT INTO appointments (id, patient_id, doctor_id, appointment_date, start_time, " +
+                    "duration_minutes) VALUES " +
+                    String.join(", ", Collections.nCopies(shardAppointments.size(), "(?, ?, ?, ?, ?, ?)"));
+
+            Map<Integer, Map<LocalDate, Integer>> placesByDoctorDay = new HashMap<>();
+            for (Appointment appointment : shardAppointments) {
+                placesByDoctorDay.computeIfAbsent(appointment.getDoctorId(), d -> new HashMap<>())
+                        .merge(appointment.getAppointmentDate(), appointment.hasTimeSlot() ? 0 : 1, Integer::sum);
+            }
+
+            try (Connection conn = ShardRouter.getConnectionForDoctor(shardAppointments.get(0).getDoctorId())) {
+                for (Map.Entry<Integer, Map<LocalDate, Integer>> doctor : placesByDoctorDay.entrySet()) {
+                    for (LocalDate date : doctor.getValue().keySet()) {
+                        createDayCounter(conn, doctor.getKey(), date);
+                    }
+                }
+                conn.setAutoCommit(false);
+                for (Map.Entry<Integer, Map<LocalDate, Integer>> doctor : placesByDoctorDay.entrySet()) {
+                    for (Map.Entry<LocalDate, Integer> day : doctor.getValue().entrySet()) {
+                        if (day.getValue() == 0) {
+                            lockDayCounter(conn, doctor.getKey(), day.getKey());
+                        } else if (!takePlaces(conn, doctor.getKey(), day.getKey(), day.getValue())) {
+                            conn.rollback();
+                            throw fullyBooked(doctor.getKey(), day.getKey());
+                        }
+                    }
+                }
+                for (Appointment appointment : shardAppointments) {
+                    if (isSlotTaken(conn, appointment)) {
+                        conn.rollback();
+                        throw slotTaken(appointment);
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int index = 1;
+                    for (Appointment appointment : shardAppointments) {
+                        ps.setLong(index++, appointment.getId());
+                        ps.setInt(index++, appointment.getPatientId());
+                        ps.setInt(index++, appointment.getDoctorId());
+                        ps.setDate(index++, Date.valueOf(appointment.getAppointmentDate()));
+                        setTimeSlot(ps, index, appointment);
+                        index += 2;
+                    }
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            }
+        }
+    }
+
+    // Insert one appointment that already carries its id. A row already under that id counts as this booking
+    // (stored by an earlier attempt) only when patient, doctor and date match; otherwise the id is taken
+    public JournalInsert insertAppointmentWithIdIfAbsent(Appointment appointment) throws SQLException {
+        String insert = "INSERT INTO appointments (id, patient_id, doctor_id, appointment_date, start_time, " +
+                "duration_minutes) VALUES (?, ?, ?, ?, ?, ?)";
+
+        try (Connection conn = ShardRouter.getConnectionForDoctor(appointment.getDoctorId())) {
+            JournalInsert existing = compareStored(conn, appointment);
+            if (existing != null) {
+                return existing;
+            }
+
+            createDayCounter(conn, appointment.getDoctorId(), appointment.getAppointmentDate());
+            conn.setAutoCommit(false);
+            if (!holdDay(conn, appointment) || isSlotTaken(conn, appointment)) {
+                conn.rollback();
+                return JournalInsert.NO_PLACE;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(insert)) {
+                ps.setLong(1, appointment.getId());
+                ps.setInt(2, appointment.getPatientId());
+                ps.setInt(3, appointment.getDoctorId());
+                ps.setDate(4, Date.valueOf(appointment.getAppointmentDate()));
+                setTimeSlot(ps, 5, appointment);
+                ps.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+                existing = compareStored(conn, appointment);
+                if (existing != null) {
+                    return existing;
+                }
+                // Not the id, so the patient's one place with the doctor that day, or a foreign key
+                return e.getErrorCode() == MYSQL_DUPLICATE_ENTRY
+                        ? JournalInsert.PATIENT_ALREADY_BOOKED : JournalInsert.MISSING_REFERENCE;
+            }
+            conn.commit();
+            return JournalInsert.STORED;
+        }
+    }
+
+    // How the row stored under the appointment's id compares with it, or null if there is none
+    private static JournalInsert compareStored(Connection conn, Appointment appointment) throws SQLException {
+        String sql = "SELECT patient_id, doctor_id, appointment_date FROM appointments WHERE id = ?";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, appointment.getId());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return rs.getInt("patient_id") == appointment.getPatientId()
+                        && rs.getInt("doctor_id") == appointment.getDoctorId()
+                        && rs.getDate("appointment_date").toLocalDate().equals(appointment.getAppointmentDate())
+                        ? JournalInsert.ALREADY_STORED : JournalInsert.ID_TAKEN;
+            }
+        }
+    }
+
+    // Move appointments dated before the cutoff into appointments_archive, one batch per transaction on each
+    // shard, then drop the day counters and waitlists of those days; returns the number moved. Reads still
+    // return archived rows
+    public int archiveAppointmentsBefore(LocalDate cutoff) throws SQLException {
+        List<Integer> perShard = ShardRouter.scatter(false, conn -> {
+            int moved = 0;
+            int batch;
+            do {
+                batch = archiveBatch(conn, cutoff);
+                moved += batch;
+            } while (batch == ARCHIVE_BATCH_SIZE);
+
+            conn.setAutoCommit(true);
+            for (String sql : new String[]{"DELETE FROM waitlist WHERE day < ?",
+                    "DELETE FROM doctor_day_bookings WHERE day < ?"}) {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setDate(1, Date.valueOf(cutoff));
+                    ps.executeUpdate();
+                }
+            }
+            return moved;
+        });
+
+        int moved = 0;
+        for (int shardMoved : perShard) {
+            moved += shardMoved;
+        }
+        return moved;
+    }
+
+    // Copy the oldest batch of rows before the cutoff into the archive and delete them, in one transaction
+    private static int archiveBatch(Connection conn, LocalDate cutoff) throws SQLException {
+        String select = "SELECT id FROM appointments WHERE appointment_date < ? ORDER BY id LIMIT ? FOR UPDATE";
+
+        conn.setAutoCommit(false);
+        List<Long> ids = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(select)) {
+            ps.setDate(1, Date.valueOf(cutoff));
+            ps.setInt(2, ARCHIVE_BATCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            conn.rollback();
+            return 0;
+        }
+
+        String in = " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        String copy = "INSERT IGNORE INTO appointments_archive (id, patient_id, doctor_id, appointment_date, " +
+                "start_time, duration_minutes) SELECT id, patient_id, doctor_id, appointment_date, start_time, " +
+                "duration_minutes FROM appointments" + in;
+        for (String sql : new String[]{copy, "DELETE FROM appointments" + in}) {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    ps.setLong(i + 1, ids.get(i));
+                }
+                ps.executeUpdate();
+            }
+        }
+        conn.commit();
+        return ids.size();
+    }
+
+    // Cascading deletes skip the day counters, so before deleting patients give back the places their
+    // date-only appointments hold; appointmentFilter selects those appointments with one int parameter
+    static void releasePlacesHeldBy(Connection conn, String appointmentFilter, int id) throws SQLException {
+        String sql = "UPDATE doctor_day_bookings c " +
+                "JOIN (SELECT doctor_id, appointment_date, COUNT(*) AS n FROM appointments " +
+                "WHERE start_time IS NULL AND (" + appointmentFilter + ") GROUP BY doctor_id, appointment_date) a " +
+                "ON c.doctor_id = a.doctor_id AND c.day = a.appointment_date " +
+                "SET c.booked = c.booked - LEAST(c.booked, a.n)";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            ps.executeUpdate();
+        }
+    }
+
+    // Make sure the doctor's day has a counter, created at the doctor's capacity. Runs before the booking
+    // transaction starts, so concurrent bookings only ever take the row's exclusive lock
+    static void createDayCounter(Connection conn, int doctorId, LocalDate date) throws SQLException {
+        String sql = "INSERT IGNORE INTO doctor_day_bookings (doctor_id, day, booked, capacity) " +
+                "SELECT ?, ?, 0, COALESCE(MAX(daily_capacity), ?) FROM doctor_capacity WHERE doctor_id = ?";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, doctorId);
+            ps.setDate(2, Date.valueOf(date));
+            ps.setInt(3, DoctorDAO.DEFAULT_DAILY_CAPACITY);
+            ps.setInt(4, doctorId);
+            ps.executeUpdate();
+        }
+    }
+
+    // Take the day's counter for a booking: a date-only appointment takes one of the places (false if none is
+    // left), a timed one only locks the row, since time slots are limited by overlap rather than capacity
+    private static boolean holdDay(Connection conn, Appointment appointment) throws SQLException {
+        if (appointment.hasTimeSlot()) {
+            lockDayCounter(conn, appointment.getDoctorId(), appointment.getAppointmentDate());
+            return true;
+        }
+        return takePlaces(conn, appointment.getDoctorId(), appointment.getAppointmentDate(), 1);
+    }
+
+    private static void lockDayCounter(Connection conn, int doctorId, LocalDate date) throws SQLException {
+        String sql = "SELECT booked FROM doctor_day_bookings WHERE doctor_id = ? AND day = ? FOR UPDATE";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, doctorId);
+            ps.setDate(2, Date.valueOf(date));
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+            }
+        }
+    }
+
+    // Atomically take places on the doctor's day; false (nothing taken) if fewer than that are left
+    private static boolean takePlaces(Connection conn, int doctorId, LocalDate date, int places) throws SQLException {
+        String sql = "UPDATE doctor_day_bookings SET booked = booked + ? " +
+                "WHERE doctor_id = ? AND day = ? AND booked + ? <= capacity";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, places);
+            ps.setInt(2, doctorId);
+            ps.setDate(3, Date.valueOf(date));
+            ps.setInt(4, places);
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    private static void releasePlaces(Connection conn, int doctorId, LocalDate date, int places) throws SQLException {
+        String sql = "UPDATE doctor_day_bookings SET booked = booked - LEAST(booked, ?) " +
+                "WHERE doctor_id = ? AND day = ?";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, places);
+            ps.setInt(2, doctorId);
+            ps.setDate(3, Date.valueOf(date));
+            ps.executeUpdate();
+        }
+    }
+
+    // Whether a timed appointment overlaps one of the doctor's stored time slots that day (never for a
+    // date-only appointment); call with the day counter locked
+    private static boolean isSlotTaken(Connection conn, Appointment appointment) throws SQLException {
+        if (!appointment.hasTimeSlot()) {
+            return false;
+        }
+        String sql = "SELECT 1 FROM appointments WHERE doctor_id = ? AND appointment_date = ? " +
+                "AND start_time IS NOT NULL AND TIME_TO_SEC(start_time) < ? " +
+                "AND TIME_TO_SEC(start_time) + duration_minutes * 60 > ? LIMIT 1";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, appointment.getDoctorId());
+            ps.setDate(2, Date.valueOf(appointment.getAppointmentDate()));
+            ps.setInt(3, appointment.getStartTime().toSecondOfDay() + appointment.getDurationMinutes() * 60);
+            ps.setInt(4, appointment.getStartTime().toSecondOfDay());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Bind start_time and duration_minutes at index and index + 1
+    private static void setTimeSlot(PreparedStatement ps, int index, Appointment appointment) throws SQLException {
+        if (appointment.hasTimeSlot()) {
+            ps.setTime(index, Time.valueOf(appointment.getStartTime()));
+        } else {
+            ps.setNull(index, Types.TIME);
+        }
+        ps.setInt(index + 1, appointment.getDurationMinutes());
+    }
+
+    private static void readTimeSlot(ResultSet rs, Appointment appointment) throws SQLException {
+        Time start = rs.getTime("start_time");
+        appointment.setTimeSlot(start == null ? null : start.toLocalTime(), rs.getInt("duration_minutes"));
+    }
+
+    private static SQLIntegrityConstraintViolationException slotTaken(Appointment appointment) {
+        return new SQLIntegrityConstraintViolationException("Doctor " + appointment.getDoctorId() +
+                " already has an appointment overlapping " + appointment.getStartTime() + "-" +
+                appointment.getEndTime() + " on " + appointment.getAppointmentDate(), "23000");
+    }
+
+    private static SQLIntegrityConstraintViolationException fullyBooked(int doctorId, LocalDate date) {
+        return new SQLIntegrityConstraintViolationException(
+                "Doctor " + doctorId + " is fully booked on " + date, "23000");
+    }
+
+    // Patient and doctor names for appointments that carry ids only
+    private void fillNames(List<Appointment> appointments) throws SQLException {
+        List<Integer> patientIds = new ArrayList<>();
+        List<Integer> doctorIds = new ArrayList<>();
+        for (Appointment appointment : appointments) {
+            patientIds.add(appointment.getPatientId());
+            doctorIds.add(appointment.getDoctorId());
+        }
+        Map<Integer, Patient> patients = patientDAO.findPatientsByIds(new TreeSet<>(patientIds));
+        Map<Integer, Doctor> doctors = doctorDAO.findDoctorsByIds(new TreeSet<>(doctorIds));
+        for (Appointment appointment : appointments) {
+            Patient patient = patients.get(appointment.getPatientId());
+            Doctor doctor = doctors.get(appointment.getDoctorId());
+            if (patient != null) {
+                appointment.setPatientName(patient.getName());
+            }
+            if (doctor != null) {
+                appointment.setDoctorName(doctor.getName());
+                appointment.setDoctorSpecialization(doctor.getSpecialization());
+            }
+        }
+    }
+
+    // Run a list query (binder sets its parameters), and when withArchive the same query against
+    // appointments_archive, merging the two sorted results
+    private static List<Appointment> queryAppointments(Connection conn, String sql, boolean withArchive,
+                                                       Binder binder, Comparator<Appointment> order)
+            throws SQLException {
+        List<List<Appointment>> parts = new ArrayList<>();
+        for (String query : withArchive ? new String[]{sql, inArchive(sql)} : new String[]{sql}) {
+            List<Appointment> appointments = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(query)) {
+                binder.bind(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        appointments.add(mapAppointment(rs));
+                    }
+                }
+            }
+            parts.add(appointments);
+        }
+        return parts.size() == 1 ? parts.get(0) : ShardRouter.mergeSorted(parts, order);
+    }
+
+    // The same query against appointments_archive
+    private static String inArchive(String sql) {
+        return sql.replace("FROM appointments ", "FROM appointments_archive ");
+    }
+
+    // Whether a range starting at from can include archived appointments (everything archived is in the past)
+    private static boolean reachesPast(LocalDate from) {
+        return from.isBefore(LocalDate.now());
+    }
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    // Map a row of the appointment/patient/doctor join used by the list queries
+    private static Appointment mapAppointment(ResultSet rs) throws SQLException {
+        Appointment appointment = new Appointment(
+                rs.getLong("id"),
+                rs.getInt("patient_id"),
+                rs.getInt("doctor_id"),
+                rs.getDate("appointment_date").toLocalDate(),
+                rs.getString("patient_name"),
+                rs.getString("doctor_name"),
+                rs.getString("specialization")
+        );
+        readTimeSlot(rs, appointment);
+        return appointment;
+    }
+}
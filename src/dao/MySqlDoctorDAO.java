@@ -0,0 +1,234 @@
+package dao;
+
+import model.Doctor;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MySqlDoctorDAO implements DoctorDAO {
+
+    // Coalesce concurrent single-row lookups into IN (...) queries
+    private static final BatchLoader<Integer, Doctor> byIdLoader =
+            new BatchLoader<>(ids -> new MySqlDoctorDAO().findDoctorsByIds(ids));
+    private static final BatchLoader<Integer, Doctor> byUserIdLoader =
+            new BatchLoader<>(userIds -> new MySqlDoctorDAO().findDoctorsByUserIds(userIds));
+
+    // Add new doctor: the primary assigns the id and every shard gets the row under that same id (an upsert,
+    // so it can be re-applied), which the shard's appointments and doctor_capacity rows reference
+    @Override
+    public boolean addDoctor(Doctor doctor) throws SQLException {
+        String sql = "INSERT INTO doctors (name, specialization, user_id) VALUES (?, ?, ?)";
+        String withId = "INSERT INTO doctors (id, name, specialization, user_id) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE name = VALUES(name), specialization = VALUES(specialization), " +
+                "user_id = VALUES(user_id)";
+
+        return ShardRouter.writeEverywhere(conn -> {
+            if (doctor.getId() > 0) {
+                try (PreparedStatement ps = conn.prepareStatement(withId)) {
+                    ps.setInt(1, doctor.getId());
+                    ps.setString(2, doctor.getName());
+                    ps.setString(3, doctor.getSpecialization());
+                    ps.setInt(4, doctor.getUserId());
+                    return ps.executeUpdate() > 0;
+                }
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, doctor.getName());
+                ps.setString(2, doctor.getSpecialization());
+                ps.setInt(3, doctor.getUserId());
+
+                int rowsAffected = ps.executeUpdate();
+
+                if (rowsAffected > 0) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            doctor.setId(rs.getInt(1));
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        });
+    }
+
+    // Find doctor by user ID
+    @Override
+    public Doctor findDoctorByUserId(int userId) throws SQLException {
+        if (BatchLoader.isEnabled()) {
+            return byUserIdLoader.get(userId);
+        }
+
+        String sql = "SELECT * FROM doctors WHERE user_id = ?";
+
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, userId);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new Doctor(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getString("specialization"),
+                            rs.getInt("user_id")
+                    );
+                }
+            }
+        }
+        return null;
+    }
+
+    // Find doctor by ID
+    @Override
+    public Doctor findDoctorById(int doctorId) throws SQLException {
+        if (BatchLoader.isEnabled()) {
+            return byIdLoader.get(doctorId);
+        }
+
+        String sql = "SELECT * FROM doctors WHERE id = ?";
+
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, doctorId);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new Doctor(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getString("specialization"),
+                            rs.getInt("user_id")
+                    );
+                }
+            }
+        }
+        return null;
+    }
+
+    // Find several doctors by ID in one query, keyed by doctor ID
+    @Override
+    public Map<Integer, Doctor> findDoctorsByIds(Collection<Integer> doctorIds) throws SQLException {
+        return findDoctorsIn("id", doctorIds);
+    }
+
+    // Find several doctors by user ID in one query, keyed by user ID
+    @Override
+    public Map<Integer, Doctor> findDoctorsByUserIds(Collection<Integer> userIds) throws SQLException {
+        return findDoctorsIn("user_id", userIds);
+    }
+
+    private Map<Integer, Doctor> findDoctorsIn(String keyColumn, Collection<Integer> keys) throws SQLException {
+        Map<Integer, Doctor> doctors = new HashMap<>();
+        if (keys.isEmpty()) {
+            return doctors;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(keys.size(), "?"));
+        String sql = "SELECT * FROM doctors WHERE " + keyColumn + " IN (" + placeholders + ")";
+
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            for (Integer key : keys) {
+                ps.setInt(index++, key);
+            }
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    doctors.put(rs.getInt(keyColumn), new Doctor(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getString("specialization"),
+                            rs.getInt("user_id")
+                    ));
+                }
+            }
+        }
+        return doctors;
+    }
+
+    // Get all doctors
+    @Override
+    public List<Doctor> getAllDoctors() throws SQLException {
+        List<Doctor> doctors = new ArrayList<>();
+        String sql = "SELECT * FROM doctors ORDER BY id";
+
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                doctors.add(new Doctor(
+                        rs.getInt("id"),
+                        rs.getString("name"),
+                        rs.getString("specialization"),
+                        rs.getInt("user_id")
+                ));
+            }
+        }
+        return doctors;
+    }
+
+    // Daily capacity, from the primary's doctor_capacity table
+    @Override
+    public int getDailyCapacity(int doctorId) throws SQLException {
+        String sql = "SELECT daily_capacity FROM doctor_capacity WHERE doctor_id = ?";
+
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, doctorId);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : DEFAULT_DAILY_CAPACITY;
+            }
+        }
+    }
+
+    // Set the capacity on the primary and every shard (each shard creates its own day counters from it),
+    // and apply it to the day counters that already exist from today on
+    @Override
+    public void setDailyCapacity(int doctorId, int capacity) throws SQLException {
+        String upsert = "INSERT INTO doctor_capacity (doctor_id, daily_capacity) VALUES (?, ?) " +
+                "ON DUPLICATE KEY UPDATE daily_capacity = VALUES(daily_capacity)";
+        String updateDays = "UPDATE doctor_day_bookings SET capacity = ? WHERE doctor_id = ? AND day >= CURDATE()";
+
+        ShardRouter.writeEverywhere(conn -> {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(upsert)) {
+                ps.setInt(1, doctorId);
+                ps.setInt(2, capacity);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(updateDays)) {
+                ps.setInt(1, capacity);
+                ps.setInt(2, doctorId);
+                ps.executeUpdate();
+            }
+            conn.commit();
+            return null;
+        });
+    }
+
+    // Delete a doctor; the schema cascades to their appointments
+    @Override
+    public boolean deleteDoctor(int doctorId) throws SQLException {
+        String sql = "DELETE FROM doctors WHERE id = ?";
+
+        return ShardRouter.writeEverywhere(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, doctorId);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+}
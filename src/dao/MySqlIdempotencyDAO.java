@@ -0,0 +1,57 @@
+package dao;
+
+import java.sql.*;
+import java.time.Instant;
+import java.util.List;
+
+// Keys are stored on the same shard as the appointment they record, so lookups and purges visit every shard
+public class MySqlIdempotencyDAO implements IdempotencyDAO {
+
+    // Find the appointment recorded for a key hash, ignoring keys created before the cutoff
+    @Override
+    public Long findAppointmentId(byte[] keyHash, Instant notBefore) throws SQLException {
+        String sql = "SELECT appointment_id FROM booking_idempotency WHERE key_hash = ? AND created_at >= ?";
+
+        List<Long> perShard = ShardRouter.scatter(false, conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setBytes(1, keyHash);
+                ps.setTimestamp(2, Timestamp.from(notBefore));
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getLong(1);
+                    }
+                }
+            }
+            return null;
+        });
+
+        for (Long appointmentId : perShard) {
+            if (appointmentId != null) {
+                return appointmentId;
+            }
+        }
+        return null;
+    }
+
+    // Delete keys created before the cutoff in small batches, so the purge never holds long locks
+    @Override
+    public int purgeExpired(Instant cutoff) throws SQLException {
+        String sql = "DELETE FROM booking_idempotency WHERE created_at < ? LIMIT 1000";
+
+        List<Integer> perShard = ShardRouter.scatter(false, conn -> {
+            int total = 0;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setTimestamp(1, Timestamp.from(cutoff));
+
+                int deleted;
+                do {
+                    deleted = ps.executeUpdate();
+                    total += deleted;
+                } while (deleted > 0);
+            }
+            return total;
+        });
+        return perShard.stream().mapToInt(Integer::intValue).sum();
+    }
+}
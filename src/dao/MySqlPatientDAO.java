@@ -0,0 +1,203 @@
+package dao;
+
+import model.Patient;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MySqlPatientDAO implements PatientDAO {
+
+    // Coalesce concurrent single-row lookups into IN (...) queries
+    private static final BatchLoader<Integer, Patient> byIdLoader =
+            new BatchLoader<>(ids -> new MySqlPatientDAO().findPatientsByIds(ids));
+    private static final BatchLoader<Integer, Patient> byUserIdLoader =
+            new BatchLoader<>(userIds -> new MySqlPatientDAO().findPatientsByUserIds(userIds));
+
+    // Add new patient with prepared statement; the primary assigns the id and every shard gets the row under
+    // that same id (an upsert, so it can be re-applied), which the shard's appointments reference
+    @Override
+    public boolean addPatient(Patient patient) throws SQLException {
+        String sql = "INSERT INTO patients (name, age, gender, user_id) VALUES (?, ?, ?, ?)";
+        String withId = "INSERT INTO patients (id, name, age, gender, user_id) VALUES (?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE name = VALUES(name), age = VALUES(age), gender = VALUES(gender), " +
+                "user_id = VALUES(user_id)";
+
+        return ShardRouter.writeEverywhere(conn -> {
+            if (patient.getId() > 0) {
+                try (PreparedStatement ps = conn.prepareStatement(withId)) {
+                    ps.setInt(1, patient.getId());
+                    ps.setString(2, patient.getName());
+                    ps.setInt(3, patient.getAge());
+                    ps.setString(4, patient.getGender());
+                    ps.setInt(5, patient.getUserId());
+                    return ps.executeUpdate() > 0;
+                }
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, patient.getName());
+                ps.setInt(2, patient.getAge());
+                ps.setString(3, patient.getGender());
+                ps.setInt(4, patient.getUserId());
+
+                int rowsAffected = ps.executeUpdate();
+
+                if (rowsAffected > 0) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            patient.setId(rs.getInt(1));
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        });
+    }
+
+    // Find patient by user ID
+    @Override
+    public Patient findPatientByUserId(int userId) throws SQLException {
+        if (BatchLoader.isEnabled()) {
+            return byUserIdLoader.get(userId);
+        }
+
+        String sql = "SELECT * FROM patients WHERE user_id = ?";
+
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, userId);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new Patient(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getInt("age"),
+                            rs.getString("gender"),
+                            rs.getInt("user_id")
+                    );
+                }
+            }
+        }
+        return null;
+    }
+
+    // Find patient by ID
+    @Override
+    public Patient findPatientById(int patientId) throws SQLException {
+        if (BatchLoader.isEnabled()) {
+            return byIdLoader.get(patientId);
+        }
+
+        String sql = "SELECT * FROM patients WHERE id = ?";
+
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, patientId);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new Patient(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getInt("age"),
+                            rs.getString("gender"),
+                            rs.getInt("user_id")
+                    );
+                }
+            }
+        }
+        return null;
+    }
+
+    // Find several patients by ID in one query, keyed by patient ID
+    @Override
+    public Map<Integer, Patient> findPatientsByIds(Collection<Integer> patientIds) throws SQLException {
+        return findPatientsIn("id", patientIds);
+    }
+
+    // Find several patients by user ID in one query, keyed by user ID
+    @Override
+    public Map<Integer, Patient> findPatientsByUserIds(Collection<Integer> userIds) throws SQLException {
+        return findPatientsIn("user_id", userIds);
+    }
+
+    private Map<Integer, Patient> findPatientsIn(String keyColumn, Collection<Integer> keys) throws SQLException {
+        Map<Integer, Patient> patients = new HashMap<>();
+        if (keys.isEmpty()) {
+            return patients;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(keys.size(), "?"));
+        String sql = "SELECT * FROM patients WHERE " + keyColumn + " IN (" + placeholders + ")";
+
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            for (Integer key : keys) {
+                ps.setInt(index++, key);
+            }
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    patients.put(rs.getInt(keyColumn), new Patient(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getInt("age"),
+                            rs.getString("gender"),
+                            rs.getInt("user_id")
+                    ));
+                }
+            }
+        }
+        return patients;
+    }
+
+    // Get all patients (for admin/doctor view)
+    @Override
+    public List<Patient> getAllPatients() throws SQLException {
+        List<Patient> patients = new ArrayList<>();
+        String sql = "SELECT * FROM patients ORDER BY id";
+
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                patients.add(new Patient(
+                        rs.getInt("id"),
+                        rs.getString("name"),
+                        rs.getInt("age"),
+                        rs.getString("gender"),
+                        rs.getInt("user_id")
+                ));
+            }
+        }
+        return patients;
+    }
+
+    // Delete a patient; the schema cascades to their appointments, whose places are given back first
+    @Override
+    public boolean deletePatient(int patientId) throws SQLException {
+        String sql = "DELETE FROM patients WHERE id = ?";
+
+        return ShardRouter.writeEverywhere(conn -> {
+            conn.setAutoCommit(false);
+            MySqlAppointmentDAO.releasePlacesHeldBy(conn, "patient_id = ?", patientId);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, patientId);
+                boolean deleted = ps.executeUpdate() > 0;
+                conn.commit();
+                return deleted;
+            }
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package dao;
+
+import model.DoctorDayStats;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// The summary table lives on the primary next to doctors; it is only written by the periodic flush
+public class MySqlStatsDAO implements StatsDAO {
+
+    @Override
+    public List<DoctorDayStats> getStatsFrom(LocalDate from) throws SQLException {
+        String sql = "SELECT doctor_id, day, booked, cancelled FROM appointment_stats WHERE day >= ?";
+        List<DoctorDayStats> stats = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setDate(1, Date.valueOf(from));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    stats.add(new DoctorDayStats(rs.getInt("doctor_id"), rs.getDate("day").toLocalDate(),
+                            rs.getLong("booked"), rs.getLong("cancelled")));
+                }
+            }
+        }
+        return stats;
+    }
+
+    // One batched upsert in a single transaction
+    @Override
+    public void addStats(List<DoctorDayStats> deltas) throws SQLException {
+        String sql = "INSERT INTO appointment_stats (doctor_id, day, booked, cancelled) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE booked = booked + VALUES(booked), cancelled = cancelled + VALUES(cancelled)";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            for (DoctorDayStats delta : deltas) {
+                ps.setInt(1, delta.getDoctorId());
+                ps.setDate(2, Date.valueOf(delta.getDay()));
+                ps.setLong(3, delta.getBooked());
+                ps.setLong(4, delta.getCancelled());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+        }
+    }
+}
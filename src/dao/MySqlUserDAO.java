@@ -0,0 +1,157 @@
+package dao;
+
+import model.User;
+import java.sql.*;
+
+public class MySqlUserDAO implements UserDAO {
+
+    // Register new user with prepared statement (prevents SQL injection). The primary assigns the id; every
+    // shard's copy of users gets the row under that same id, so shard-local joins and foreign keys line up.
+    // A shard copy left by a registration that failed on another shard (same username, another id) is
+    // replaced, since the primary no longer has it
+    @Override
+    public boolean registerUser(User user) throws SQLException {
+        String sql = "INSERT INTO users (username, password, role) VALUES (?, ?, ?)";
+        String dropStale = "DELETE FROM users WHERE username = ? AND id <> ?";
+        String withId = "INSERT INTO users (id, username, password, role) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE username = VALUES(username), password = VALUES(password), " +
+                "role = VALUES(role)";
+
+        return ShardRouter.writeEverywhere(conn -> {
+            if (user.getId() > 0) {
+                try (PreparedStatement ps = conn.prepareStatement(dropStale)) {
+                    ps.setString(1, user.getUsername());
+                    ps.setInt(2, user.getId());
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(withId)) {
+                    ps.setInt(1, user.getId());
+                    ps.setString(2, user.getUsername());
+                    ps.setString(3, user.getPassword());
+                    ps.setString(4, user.getRole());
+                    return ps.executeUpdate() > 0;
+                }
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, user.getUsername());
+                ps.setString(2, user.getPassword());
+                ps.setString(3, user.getRole());
+
+                int rowsAffected = ps.executeUpdate();
+
+                if (rowsAffected > 0) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            user.setId(rs.getInt(1));
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        });
+    }
+
+    // Find user by username and password (login)
+    @Override
+    public User findUserByCredentials(String username, String password) throws SQLException {
+        String sql = "SELECT * FROM users WHERE username = ? AND password = ?";
+
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, username);
+            ps.setString(2, password);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new User(
+                            rs.getInt("id"),
+                            rs.getString("username"),
+                            rs.getString("password"),
+                            rs.getString("role")
+                    );
+                }
+            }
+        }
+        return null;
+    }
+
+    // Check if username exists
+    @Override
+    public boolean usernameExists(String username) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM users WHERE username = ?";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, username);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1) > 0;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Find user by ID
+    @Override
+    public User findUserById(int userId) throws SQLException {
+        String sql = "SELECT * FROM users WHERE id = ?";
+
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, userId);
+            ResultSet rs = stmt.executeQuery();
+
+            if (rs.next()) {
+                return new User(
+                        rs.getInt("id"),
+                        rs.getString("username"),
+                        rs.getString("password"),
+                        rs.getString("role")
+                );
+            }
+        }
+
+        return null;
+    }
+
+    // Update password, on the primary and every shard's copy of users
+    @Override
+    public boolean updatePassword(int userId, String newPassword) throws SQLException {
+        String sql = "UPDATE users SET password = ? WHERE id = ?";
+
+        return ShardRouter.writeEverywhere(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, newPassword);
+                stmt.setInt(2, userId);
+
+                return stmt.executeUpdate() > 0;
+            }
+        });
+    }
+
+    // Delete a user; the schema cascades to their profile and appointments (a patient's places are given
+    // back first; a doctor's day counters go with the doctor)
+    @Override
+    public boolean deleteUser(int userId) throws SQLException {
+        String sql = "DELETE FROM users WHERE id = ?";
+
+        return ShardRouter.writeEverywhere(conn -> {
+            conn.setAutoCommit(false);
+            MySqlAppointmentDAO.releasePlacesHeldBy(conn,
+                    "patient_id IN (SELECT id FROM patients WHERE user_id = ?)", userId);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, userId);
+                boolean deleted = ps.executeUpdate() > 0;
+                conn.commit();
+                return deleted;
+            }
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package dao;
+
+import model.WaitlistEntry;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Waitlist rows live on the doctor's shard next to the day counter they wait on, so a cancellation can
+// promote a waiting patient in its own transaction
+public class MySqlWaitlistDAO implements WaitlistDAO {
+    private static final Comparator<WaitlistEntry> BY_DATE =
+            Comparator.comparing(WaitlistEntry::getDate).thenComparingLong(WaitlistEntry::getId);
+
+    // Queue the patient under the day counter's lock, so no cancellation can free a place in between the
+    // full-day check and the insert; a duplicate entry fails with SQLIntegrityConstraintViolationException
+    @Override
+    public int joinWaitlist(int doctorId, LocalDate date, int patientId, int pendingPlaces) throws SQLException {
+        String lockDay = "SELECT booked + ? < capacity FROM doctor_day_bookings WHERE doctor_id = ? AND day = ? " +
+                "FOR UPDATE";
+        String insert = "INSERT INTO waitlist (doctor_id, day, patient_id) VALUES (?, ?, ?)";
+        String position = "SELECT COUNT(*) FROM waitlist WHERE doctor_id = ? AND day = ? AND id <= ?";
+
+        try (Connection conn = ShardRouter.getConnectionForDoctor(doctorId)) {
+            MySqlAppointmentDAO.createDayCounter(conn, doctorId, date);
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement ps = conn.prepareStatement(lockDay)) {
+                ps.setInt(1, pendingPlaces);
+                ps.setInt(2, doctorId);
+                ps.setDate(3, Date.valueOf(date));
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next() && rs.getBoolean(1)) {
+                        conn.rollback();
+                        return 0;
+                    }
+                }
+            }
+
+            long id;
+            try (PreparedStatement ps = conn.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, doctorId);
+                ps.setDate(2, Date.valueOf(date));
+                ps.setInt(3, patientId);
+                ps.executeUpdate();
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    rs.next();
+                    id = rs.getLong(1);
+                }
+            }
+
+            int place;
+            try (PreparedStatement ps = conn.prepareStatement(position)) {
+                ps.setInt(1, doctorId);
+                ps.setDate(2, Date.valueOf(date));
+                ps.setLong(3, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    place = rs.next() ? rs.getInt(1) : 1;
+                }
+            }
+            conn.commit();
+            return place;
+        }
+    }
+
+    @Override
+    public boolean leaveWaitlist(int doctorId, LocalDate date, int patientId) throws SQLException {
+        String sql = "DELETE FROM waitlist WHERE doctor_id = ? AND day = ? AND patient_id = ?";
+
+        try (Connection conn = ShardRouter.getConnectionForDoctor(doctorId);
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, doctorId);
+            ps.setDate(2, Date.valueOf(date));
+            ps.setInt(3, patientId);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    // Get a patient's waitlist entries from today onwards (all shards, merged by date)
+    @Override
+    public List<WaitlistEntry> getWaitlistByPatientId(int patientId) throws SQLException {
+        String sql = "SELECT w.id, w.doctor_id, w.day, d.name AS doctor_name, " +
+                "(SELECT COUNT(*) FROM waitlist ahead WHERE ahead.doctor_id = w.doctor_id " +
+                "AND ahead.day = w.day AND ahead.id <= w.id) AS position " +
+                "FROM waitlist w " +
+                "JOIN doctors d ON w.doctor_id = d.id " +
+                "WHERE w.patient_id = ? AND w.day >= CURDATE() " +
+                "ORDER BY w.day ASC, w.id ASC";
+
+        return ShardRouter.scatterSorted(conn -> {
+            List<WaitlistEntry> entries = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, patientId);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        WaitlistEntry entry = new WaitlistEntry(
+                                rs.getLong("id"),
+                                patientId,
+                                rs.getInt("doctor_id"),
+                                rs.getDate("day").toLocalDate(),
+                                rs.getInt("position"));
+                        entry.setDoctorName(rs.getString("doctor_name"));
+                        entries.add(entry);
+                    }
+                }
+            }
+            return entries;
+        }, BY_DATE);
+    }
+
+    @Override
+    public int getWaitlistLength(int doctorId, LocalDate date) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM waitlist WHERE doctor_id = ? AND day = ?";
+
+        try (Connection conn = ShardRouter.getReadConnectionForDoctor(doctorId);
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, doctorId);
+            ps.setDate(2, Date.valueOf(date));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+}
@@ -1,105 +1,28 @@
 package dao;
 
 import model.Patient;
-import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
-
-public class PatientDAO {
-
-    // Add new patient with prepared statement
-    public boolean addPatient(Patient patient) throws SQLException {
-        String sql = "INSERT INTO patients (name, age, gender, user_id) VALUES (?, ?, ?, ?)";
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
-            ps.setString(1, patient.getName());
-            ps.setInt(2, patient.getAge());
-            ps.setString(3, patient.getGender());
-            ps.setInt(4, patient.getUserId());
-
-            int rowsAffected = ps.executeUpdate();
 
-            if (rowsAffected > 0) {
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next()) {
-                        patient.setId(rs.getInt(1));
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
-    // Find patient by user ID
-    public Patient findPatientByUserId(int userId) throws SQLException {
-        String sql = "SELECT * FROM patients WHERE user_id = ?";
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, userId);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return new Patient(
-                            rs.getInt("id"),
-                            rs.getString("name"),
-                            rs.getInt("age"),
-                            rs.getString("gender"),
-                            rs.getInt("user_id")
-                    );
-                }
-            }
-        }
-        return null;
-    }
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
-    // Find patient by ID
-    public Patient findPatientById(int patientId) throws SQLException {
-        String sql = "SELECT * FROM patients WHERE id = ?";
+// Patient profiles. Deleting a patient removes their appointments
+public interface PatientDAO {
+    // Insert a patient and set its generated id
+    boolean addPatient(Patient patient) throws SQLException;
 
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    Patient findPatientByUserId(int userId) throws SQLException;
 
-            ps.setInt(1, patientId);
+    Patient findPatientById(int patientId) throws SQLException;
 
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return new Patient(
-                            rs.getInt("id"),
-                            rs.getString("name"),
-                            rs.getInt("age"),
-                            rs.getString("gender"),
-                            rs.getInt("user_id")
-                    );
-                }
-            }
-        }
-        return null;
-    }
+    // Several patients at once, keyed by patient id
+    Map<Integer, Patient> findPatientsByIds(Collection<Integer> patientIds) throws SQLException;
 
-    // Get all patients (for admin/doctor view)
-    public List<Patient> getAllPatients() throws SQLException {
-        List<Patient> patients = new ArrayList<>();
-        String sql = "SELECT * FROM patients ORDER BY id";
+    // Several patients at once, keyed by user id
+    Map<Integer, Patient> findPatientsByUserIds(Collection<Integer> userIds) throws SQLException;
 
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+    List<Patient> getAllPatients() throws SQLException;
 
-            while (rs.next()) {
-                patients.add(new Patient(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getInt("age"),
-                        rs.getString("gender"),
-                        rs.getInt("user_id")
-                ));
-            }
-        }
-        return patients;
-    }
+    boolean deletePatient(int patientId) throws SQLException;
 }
@@ -0,0 +1,97 @@
+package dao;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+// Per-thread state that DAO connections read when issuing statements
+public final class QueryContext {
+    private static final ThreadLocal<Deadline> currentDeadline = ThreadLocal.withInitial(Deadline::none);
+    private static final ThreadLocal<String> currentSession = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> primaryReadRequired = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<Boolean> replicaRead = ThreadLocal.withInitial(() -> false);
+
+    private QueryContext() {
+        throw new AssertionError("Utility class cannot be instantiated");
+    }
+
+    public static Deadline getDeadline() {
+        return currentDeadline.get();
+    }
+
+    // Run a DAO call with the given deadline applied to every statement it executes
+    public static <T> T withDeadline(Deadline deadline, Work<T> work) throws SQLException {
+        Deadline previous = currentDeadline.get();
+        currentDeadline.set(previous.earliest(deadline));
+        try {
+            return work.run();
+        } finally {
+            currentDeadline.set(previous);
+        }
+    }
+
+    // Bind a session (e.g. the logged-in username) to this thread for read-your-writes routing
+    public static void bindSession(String session) {
+        currentSession.set(session);
+    }
+
+    public static void unbindSession() {
+        currentSession.remove();
+    }
+
+    public static String getSession() {
+        return currentSession.get();
+    }
+
+    // Run work on another thread under the session captured from the submitting thread
+    public static <T> T withSession(String session, Work<T> work) throws SQLException {
+        String previous = currentSession.get();
+        currentSession.set(session);
+        try {
+            return work.run();
+        } finally {
+            currentSession.set(previous);
+        }
+    }
+
+    public static boolean isPrimaryReadRequired() {
+        return primaryReadRequired.get();
+    }
+
+    // Run work whose reads must all be served by the primary
+    public static <T> T withPrimaryReads(Work<T> work) throws SQLException {
+        boolean previous = primaryReadRequired.get();
+        primaryReadRequired.set(true);
+        try {
+            return work.run();
+        } finally {
+            primaryReadRequired.set(previous);
+        }
+    }
+
+    // Forget earlier replica reads on this thread, before a read whose source matters
+    public static void resetReplicaRead() {
+        replicaRead.set(false);
+    }
+
+    // Whether a replica served a read on this thread since resetReplicaRead(); such rows may lag the primary
+    // and must not refill caches shared by every session
+    public static boolean wasReplicaRead() {
+        return replicaRead.get();
+    }
+
+    static void markReplicaRead() {
+        replicaRead.set(true);
+    }
+
+    // Fail before issuing a statement if the current deadline has already passed
+    static void checkDeadline() throws SQLTimeoutException {
+        if (currentDeadline.get().isExpired()) {
+            throw new SQLTimeoutException("Query deadline exceeded");
+        }
+    }
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T run() throws SQLException;
+    }
+}
@@ -0,0 +1,346 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves appointments to the shards a new layout assigns them to.
+ * The current layout comes from -Ddb.shardUrls / -Ddb.shardMap (unsharded = the primary alone);
+ * the new one from -Dreshard.targetUrls and optionally -Dreshard.targetMap.
+ * Rows are copied in batches of -Dreshard.batchSize (default 500) with INSERT IGNORE and then deleted
+ * from the source, so an interrupted run can simply be started again.
+ * With -Dreshard.syncReference=true the users, patients, doctors and doctor_capacity tables are first
+ * copied from the primary to every target shard. Archived appointments move the same way within
+ * appointments_archive. Waitlist entries follow their doctor, keeping queue order.
+ * Afterwards every shard's doctor-day booking counters are recounted from the appointments it now holds.
+ *
+ * Usage: java -Dreshard.targetUrls=jdbc:mysql://a/hm,jdbc:mysql://b/hm -cp bin dao.ReshardTool
+ */
+public class ReshardTool {
+    private static final int BATCH_SIZE = Math.max(1, Integer.getInteger("reshard.batchSize", 500));
+    private static final List<String> REFERENCE_TABLES = List.of("users", "patients", "doctors", "doctor_capacity");
+    private static final List<String> APPOINTMENT_TABLES = List.of("appointments", "appointments_archive");
+
+    private final List<ConnectionPool> sources;
+    private final List<ConnectionPool> targets;
+    private final ShardMap targetMap;
+
+    ReshardTool(List<ConnectionPool> sources, List<ConnectionPool> targets, ShardMap targetMap) {
+        this.sources = sources;
+        this.targets = targets;
+        this.targetMap = targetMap;
+    }
+
+    public static void main(String[] args) {
+        String targetUrls = System.getProperty("reshard.targetUrls", "").trim();
+        if (targetUrls.isEmpty()) {
+            System.err.println("Set -Dreshard.targetUrls to the comma-separated JDBC URLs of the new shards");
+            System.exit(1);
+        }
+
+        List<ConnectionPool> sources = ShardRouter.isSharded()
+                ? ShardRouter.getShards()
+                : Collections.singletonList(DBConnection.getPrimaryPool());
+
+        // Reuse the source pool when a database keeps its place in the new layout
+        Map<String, ConnectionPool> poolsByUrl = new HashMap<>();
+        sources.forEach(pool -> poolsByUrl.put(pool.getUrl(), pool));
+        List<ConnectionPool> targets = new ArrayList<>();
+        for (String url : targetUrls.split(",")) {
+            targets.add(poolsByUrl.computeIfAbsent(url.trim(), DBConnection::newPool));
+        }
+
+        ShardMap targetMap = ShardRouter.createShardMap(
+                System.getProperty("reshard.targetMap", ModuloShardMap.class.getName()), targets.size());
+        ReshardTool tool = new ReshardTool(sources, targets, targetMap);
+
+        try {
+            if (Boolean.getBoolean("reshard.syncReference")) {
+                tool.syncReferenceTables();
+            }
+            long moved = tool.moveAppointments();
+            tool.moveWaitlists();
+            tool.recountDayCounters();
+            System.out.println("✓ Resharding complete: " + moved + " appointments moved");
+        } catch (SQLException e) {
+            System.err.println("Resharding failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            poolsByUrl.values().forEach(ConnectionPool::close);
+            DBConnection.closeConnection();
+        }
+    }
+
+    // Copy users, patients and doctors from the primary to every target (parents first, for the foreign keys)
+    void syncReferenceTables() throws SQLException {
+        String primaryUrl = DBConnection.getPrimaryPool().getUrl();
+        for (ConnectionPool target : targets) {
+            if (target.getUrl().equals(primaryUrl)) {
+                continue;
+            }
+            for (String table : REFERENCE_TABLES) {
+                int copied = copyTable(table, target);
+                System.out.println("  " + table + " -> " + target.getUrl() + ": " + copied + " rows");
+            }
+        }
+    }
+
+    // Move every appointment, live or archived, whose new shard differs from the one it is on; returns rows moved
+    long moveAppointments() throws SQLException {
+        long moved = 0;
+        for (String table : APPOINTMENT_TABLES) {
+            for (ConnectionPool source : sources) {
+                moved += moveAppointments(source, table);
+                System.out.println("  " + source.getUrl() + " " + table + " scanned");
+            }
+        }
+        return moved;
+    }
+
+    private long moveAppointments(ConnectionPool source, String table) throws SQLException {
+        long moved = 0;
+        long lastId = 0;
+        List<long[]> batch;
+        while (!(batch = readBatch(source, table, lastId)).isEmpty()) {
+            lastId = batch.get(batch.size() - 1)[0];
+
+            Map<ConnectionPool, List<Long>> idsByTarget = new HashMap<>();
+            for (long[] row : batch) {
+                ConnectionPool target = targets.get(targetMap.shardFor((int) row[1]));
+                if (!target.getUrl().equals(source.getUrl())) {
+                    idsByTarget.computeIfAbsent(target, t -> new ArrayList<>()).add(row[0]);
+                }
+            }
+            for (Map.Entry<ConnectionPool, List<Long>> entry : idsByTarget.entrySet()) {
+                moveRows(source, entry.getKey(), table, entry.getValue());
+                moved += entry.getValue().size();
+            }
+        }
+        return moved;
+    }
+
+    // Move waitlist entries to their doctor's new shard. Each doctor's queue moves whole and is re-inserted in
+    // queue order, so the target's new ids keep it; a rerun skips entries already copied (unique key)
+    void moveWaitlists() throws SQLException {
+        String select = "SELECT id, doctor_id, day, patient_id FROM waitlist ORDER BY id";
+        String insert = "INSERT IGNORE INTO waitlist (doctor_id, day, patient_id) VALUES (?, ?, ?)";
+
+        for (ConnectionPool source : sources) {
+            // (id, doctor_id, day as epoch day, patient_id) per target
+            Map<ConnectionPool, List<long[]>> rowsByTarget = new HashMap<>();
+            try (Connection conn = source.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(select);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ConnectionPool target = targets.get(targetMap.shardFor(rs.getInt("doctor_id")));
+                    if (!target.getUrl().equals(source.getUrl())) {
+                        rowsByTarget.computeIfAbsent(target, t -> new ArrayList<>()).add(new long[]{
+                                rs.getLong("id"), rs.getInt("doctor_id"),
+                                rs.getDate("day").toLocalDate().toEpochDay(), rs.getInt("patient_id")});
+                    }
+                }
+            }
+
+            for (Map.Entry<ConnectionPool, List<long[]>> entry : rowsByTarget.entrySet()) {
+                List<Long> ids = new ArrayList<>();
+                try (Connection to = entry.getKey().getConnection();
+                     PreparedStatement ps = to.prepareStatement(insert)) {
+                    to.setAutoCommit(false);
+                    for (long[] row : entry.getValue()) {
+                        ids.add(row[0]);
+                        ps.setInt(1, (int) row[1]);
+                        ps.setDate(2, Date.valueOf(LocalDate.ofEpochDay(row[2])));
+                        ps.setInt(3, (int) row[3]);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    to.commit();
+                }
+                for (int i = 0; i < ids.size(); i += BATCH_SIZE) {
+                    List<Long> batch = ids.subList(i, Math.min(ids.size(), i + BATCH_SIZE));
+                    try (Connection from = source.getConnection();
+                         PreparedStatement ps = from.prepareStatement("DELETE FROM waitlist WHERE id IN (" +
+                                 String.join(", ", Collections.nCopies(batch.size(), "?")) + ")")) {
+                        bindIds(ps, batch);
+                        ps.executeUpdate();
+                    }
+                }
+                System.out.println("  " + source.getUrl() + " -> " + entry.getKey().getUrl() + ": "
+                        + ids.size() + " waitlist entries");
+            }
+        }
+    }
+
+    // Moved appointments leave their day counters behind, so rebuild every target's counters from its rows
+    // (only date-only appointments take places)
+    void recountDayCounters() throws SQLException {
+        String reset = "UPDATE doctor_day_bookings c SET c.booked = (SELECT COUNT(*) FROM appointments a " +
+                "WHERE a.doctor_id = c.doctor_id AND a.appointment_date = c.day AND a.start_time IS NULL)";
+        String insertMissing = "INSERT INTO doctor_day_bookings (doctor_id, day, booked, capacity) " +
+                "SELECT a.doctor_id, a.appointment_date, SUM(a.start_time IS NULL), " +
+                "COALESCE(MAX(dc.daily_capacity), ?) " +
+                "FROM appointments a LEFT JOIN doctor_capacity dc ON dc.doctor_id = a.doctor_id " +
+                "GROUP BY a.doctor_id, a.appointment_date " +
+                "ON DUPLICATE KEY UPDATE booked = VALUES(booked)";
+
+        for (ConnectionPool target : targets) {
+            try (Connection conn = target.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement ps = conn.prepareStatement(reset)) {
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(insertMissing)) {
+                    ps.setInt(1, DoctorDAO.DEFAULT_DAILY_CAPACITY);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            }
+            System.out.println("  " + target.getUrl() + " day counters recounted");
+        }
+    }
+
+    // Next page of (id, doctor_id) pairs after lastId
+    private List<long[]> readBatch(ConnectionPool source, String table, long lastId) throws SQLException {
+        String sql = "SELECT id, doctor_id FROM " + table + " WHERE id > ? ORDER BY id LIMIT ?";
+        List<long[]> rows = new ArrayList<>();
+
+        try (Connection conn = source.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setLong(1, lastId);
+            ps.setInt(2, BATCH_SIZE);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new long[]{rs.getLong(1), rs.getLong(2)});
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Copy appointments (and, for live ones, their idempotency keys) to the target, commit, then delete them
+    // from the source
+    private void moveRows(ConnectionPool source, ConnectionPool target, String table, List<Long> ids)
+            throws SQLException {
+        boolean live = table.equals("appointments");
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        String selectAppointments = "SELECT id, patient_id, doctor_id, appointment_date, start_time, " +
+                "duration_minutes FROM " + table + " WHERE id IN (" + placeholders + ")";
+        String selectKeys = "SELECT key_hash, appointment_id, created_at FROM booking_idempotency " +
+                "WHERE appointment_id IN (" + placeholders + ")";
+        String insertAppointment = "INSERT IGNORE INTO " + table + " (id, patient_id, doctor_id, appointment_date, " +
+                "start_time, duration_minutes) VALUES (?, ?, ?, ?, ?, ?)";
+        String insertKey = "INSERT IGNORE INTO booking_idempotency (key_hash, appointment_id, created_at) " +
+                "VALUES (?, ?, ?)";
+
+        try (Connection from = source.getConnection();
+             Connection to = target.getConnection()) {
+
+            to.setAutoCommit(false);
+            try (PreparedStatement select = from.prepareStatement(selectAppointments);
+                 PreparedStatement insert = to.prepareStatement(insertAppointment)) {
+                bindIds(select, ids);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        insert.setLong(1, rs.getLong("id"));
+                        insert.setInt(2, rs.getInt("patient_id"));
+                        insert.setInt(3, rs.getInt("doctor_id"));
+                        insert.setDate(4, rs.getDate("appointment_date"));
+                        insert.setTime(5, rs.getTime("start_time"));
+                        insert.setInt(6, rs.getInt("duration_minutes"));
+                        insert.addBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            if (live) {
+                try (PreparedStatement select = from.prepareStatement(selectKeys);
+                     PreparedStatement insert = to.prepareStatement(insertKey)) {
+                    bindIds(select, ids);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            insert.setBytes(1, rs.getBytes("key_hash"));
+                            insert.setLong(2, rs.getLong("appointment_id"));
+                            insert.setTimestamp(3, rs.getTimestamp("created_at"));
+                            insert.addBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+            }
+            to.commit();
+
+            from.setAutoCommit(false);
+            if (live) {
+                try (PreparedStatement deleteKeys = from.prepareStatement(
+                        "DELETE FROM booking_idempotency WHERE appointment_id IN (" + placeholders + ")")) {
+                    bindIds(deleteKeys, ids);
+                    deleteKeys.executeUpdate();
+                }
+            }
+            try (PreparedStatement deleteAppointments = from.prepareStatement(
+                    "DELETE FROM " + table + " WHERE id IN (" + placeholders + ")")) {
+                bindIds(deleteAppointments, ids);
+                deleteAppointments.executeUpdate();
+            }
+            from.commit();
+        }
+    }
+
+    // Upsert every row of a table from the primary into the target; returns rows copied
+    private int copyTable(String table, ConnectionPool target) throws SQLException {
+        int copied = 0;
+
+        try (Connection from = DBConnection.getConnection();
+             Connection to = target.getConnection();
+             PreparedStatement select = from.prepareStatement("SELECT * FROM " + table);
+             ResultSet rs = select.executeQuery()) {
+
+            ResultSetMetaData meta = rs.getMetaData();
+            int columns = meta.getColumnCount();
+            List<String> names = new ArrayList<>();
+            List<String> updates = new ArrayList<>();
+            for (int i = 1; i <= columns; i++) {
+                names.add(meta.getColumnName(i));
+                updates.add(meta.getColumnName(i) + " = VALUES(" + meta.getColumnName(i) + ")");
+            }
+            String upsert = "INSERT INTO " + table + " (" + String.join(", ", names) + ") VALUES (" +
+                    String.join(", ", Collections.nCopies(columns, "?")) + ") ON DUPLICATE KEY UPDATE " +
+                    String.join(", ", updates);
+
+            to.setAutoCommit(false);
+            try (PreparedStatement insert = to.prepareStatement(upsert)) {
+                while (rs.next()) {
+                    for (int i = 1; i <= columns; i++) {
+                        insert.setObject(i, rs.getObject(i));
+                    }
+                    insert.addBatch();
+                    if (++copied % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            to.commit();
+        }
+        return copied;
+    }
+
+    private static void bindIds(PreparedStatement ps, List<Long> ids) throws SQLException {
+        int index = 1;
+        for (Long id : ids) {
+            ps.setLong(index++, id);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package dao;
+
+// Decides which shard holds a doctor's appointments; implementations must be deterministic
+public interface ShardMap {
+    int shardFor(int doctorId);
+
+    int shardCount();
+}
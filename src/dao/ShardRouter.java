@@ -0,0 +1,199 @@
+package dao;
+
+import java.lang.reflect.Constructor;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Partitions the appointments table across several databases by doctor id.
+ * Configured with -Ddb.shardUrls (comma-separated JDBC URLs, shard 0 first) and optionally
+ * -Ddb.shardMap (a ShardMap class with an (int shardCount) constructor, default ModuloShardMap).
+ * Without shard URLs every call goes to DBConnection, so an unsharded setup behaves as before.
+ */
+public final class ShardRouter {
+    private static final List<ConnectionPool> shards = new ArrayList<>();
+    private static final ShardMap shardMap;
+
+    // Scatter-gather queries run one virtual thread per shard
+    private static final ExecutorService scatterExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    static {
+        String shardUrls = System.getProperty("db.shardUrls", "").trim();
+        if (!shardUrls.isEmpty()) {
+            for (String shardUrl : shardUrls.split(",")) {
+                shards.add(DBConnection.newPool(shardUrl.trim()));
+            }
+        }
+        shardMap = createShardMap(System.getProperty("db.shardMap", ModuloShardMap.class.getName()),
+                Math.max(1, shards.size()));
+    }
+
+    private ShardRouter() {
+        throw new AssertionError("Utility class cannot be instantiated");
+    }
+
+    public static boolean isSharded() {
+        return !shards.isEmpty();
+    }
+
+    public static ShardMap getShardMap() {
+        return shardMap;
+    }
+
+    // Connection to the shard holding this doctor's appointments (primary when unsharded)
+    public static Connection getConnectionForDoctor(int doctorId) throws SQLException {
+        return isSharded() ? shards.get(shardMap.shardFor(doctorId)).getConnection() : DBConnection.getConnection();
+    }
+
+    // Read connection for this doctor's appointments (may be a replica when unsharded)
+    public static Connection getReadConnectionForDoctor(int doctorId) throws SQLException {
+        return isSharded() ? shards.get(shardMap.shardFor(doctorId)).getConnection() : DBConnection.getReadConnection();
+    }
+
+    // Connection to one shard by number (primary when unsharded)
+    public static Connection getConnectionForShard(int shard) throws SQLException {
+        return isSharded() ? shards.get(shard).getConnection() : DBConnection.getConnection();
+    }
+
+    // Shard pools in shard order (empty when unsharded)
+    static List<ConnectionPool> getShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    // Run a query on every shard in parallel and return the per-shard results in shard order
+    public static <T> List<T> scatter(boolean readOnly, ShardQuery<T> query) throws SQLException {
+        if (!isSharded()) {
+            try (Connection conn = readOnly ? DBConnection.getReadConnection() : DBConnection.getConnection()) {
+                return Collections.singletonList(query.run(conn));
+            }
+        }
+
+        Deadline deadline = QueryContext.getDeadline();
+        List<Future<T>> futures = new ArrayList<>();
+        for (ConnectionPool shard : shards) {
+            futures.add(scatterExecutor.submit(() -> QueryContext.withDeadline(deadline, () -> {
+                try (Connection conn = shard.getConnection()) {
+                    return query.run(conn);
+                }
+            })));
+        }
+
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted during scatter-gather query", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw new SQLException("Scatter-gather query failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    // Run a query on every shard one after another, in shard order, on the calling thread; for work whose
+    // output must not interleave, such as streaming rows into one file
+    public static <T> List<T> eachShard(boolean readOnly, ShardQuery<T> query) throws SQLException {
+        if (!isSharded()) {
+            try (Connection conn = readOnly ? DBConnection.getReadConnection() : DBConnection.getConnection()) {
+                return Collections.singletonList(query.run(conn));
+            }
+        }
+
+        List<T> results = new ArrayList<>();
+        for (ConnectionPool shard : shards) {
+            try (Connection conn = shard.getConnection()) {
+                results.add(query.run(conn));
+            }
+        }
+        return results;
+    }
+
+    // Apply a change to the reference tables (users, patients, doctors) on the primary and on every shard's
+    // copy, so foreign-key cascades run next to the appointments they affect; returns the primary's result.
+    // The primary's transaction commits only once every shard has the change, so a failed shard leaves the
+    // primary as it was (an update that commits by itself must be safe to run again); shard copies are written
+    // under the primary's ids as upserts, so re-applying them is harmless
+    public static <T> T writeEverywhere(ShardQuery<T> update) throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            if (!isSharded()) {
+                return update.run(conn);
+            }
+            conn.setAutoCommit(false);
+            try {
+                T result = update.run(conn);
+                scatter(false, update);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Scatter a query whose per-shard results are already sorted, and k-way merge them
+    public static <T> List<T> scatterSorted(ShardQuery<List<T>> query, Comparator<T> order) throws SQLException {
+        List<List<T>> perShard = scatter(true, query);
+        if (perShard.size() == 1) {
+            return perShard.get(0);
+        }
+        return mergeSorted(perShard, order);
+    }
+
+    // K-way merge of sorted lists
+    static <T> List<T> mergeSorted(List<List<T>> sortedLists, Comparator<T> order) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(
+                (a, b) -> order.compare(sortedLists.get(a[0]).get(a[1]), sortedLists.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int i = 0; i < sortedLists.size(); i++) {
+            total += sortedLists.get(i).size();
+            if (!sortedLists.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+
+        List<T> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> list = sortedLists.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (head[1] + 1 < list.size()) {
+                heads.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+
+    static ShardMap createShardMap(String className, int shardCount) {
+        try {
+            Constructor<?> constructor = Class.forName(className).getConstructor(int.class);
+            return (ShardMap) constructor.newInstance(shardCount);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException("Cannot create shard map " + className, e);
+        }
+    }
+
+    // Close idle shard connections
+    public static void closeConnections() {
+        shards.forEach(ConnectionPool::close);
+    }
+
+    @FunctionalInterface
+    public interface ShardQuery<T> {
+        T run(Connection conn) throws SQLException;
+    }
+}
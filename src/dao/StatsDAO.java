@@ -0,0 +1,17 @@
+package dao;
+
+import model.DoctorDayStats;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+// Per doctor-day booking and cancellation counts, kept in the appointment_stats summary table so
+// utilization reports never group over appointments
+public interface StatsDAO {
+    // Every doctor-day row on or after from
+    List<DoctorDayStats> getStatsFrom(LocalDate from) throws SQLException;
+
+    // Add each row's counts to the stored ones for its doctor-day, creating rows as needed; all or nothing
+    void addStats(List<DoctorDayStats> deltas) throws SQLException;
+}
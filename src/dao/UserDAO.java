@@ -1,111 +1,21 @@
 package dao;
 
 import model.User;
-import java.sql.*;
 
-public class UserDAO {
+import java.sql.SQLException;
 
-    // Register new user with prepared statement (prevents SQL injection)
-    public boolean registerUser(User user) throws SQLException {
-        String sql = "INSERT INTO users (username, password, role) VALUES (?, ?, ?)";
+// User accounts; unique usernames. Deleting a user removes their patient or doctor profile and appointments
+public interface UserDAO {
+    // Insert a user and set its generated id
+    boolean registerUser(User user) throws SQLException;
 
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+    User findUserByCredentials(String username, String password) throws SQLException;
 
-            ps.setString(1, user.getUsername());
-            ps.setString(2, user.getPassword());
-            ps.setString(3, user.getRole());
+    boolean usernameExists(String username) throws SQLException;
 
-            int rowsAffected = ps.executeUpdate();
+    User findUserById(int userId) throws SQLException;
 
-            if (rowsAffected > 0) {
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next()) {
-                        user.setId(rs.getInt(1));
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
+    boolean updatePassword(int userId, String newPassword) throws SQLException;
 
-    // Find user by username and password (login)
-    public User findUserByCredentials(String username, String password) throws SQLException {
-        String sql = "SELECT * FROM users WHERE username = ? AND password = ?";
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, username);
-            ps.setString(2, password);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return new User(
-                            rs.getInt("id"),
-                            rs.getString("username"),
-                            rs.getString("password"),
-                            rs.getString("role")
-                    );
-                }
-            }
-        }
-        return null;
-    }
-
-    // Check if username exists
-    public boolean usernameExists(String username) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM users WHERE username = ?";
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, username);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1) > 0;
-                }
-            }
-        }
-        return false;
-    }
-
-    // Find user by ID
-    public User findUserById(int userId) throws SQLException {
-        String sql = "SELECT * FROM users WHERE id = ?";
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, userId);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                return new User(
-                        rs.getInt("id"),
-                        rs.getString("username"),
-                        rs.getString("password"),
-                        rs.getString("role")
-                );
-            }
-        }
-
-        return null;
-    }
-
-    // Update password
-    public boolean updatePassword(int userId, String newPassword) throws SQLException {
-        String sql = "UPDATE users SET password = ? WHERE id = ?";
-
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, newPassword);
-            stmt.setInt(2, userId);
-
-            return stmt.executeUpdate() > 0;
-        }
-    }
+    boolean deleteUser(int userId) throws SQLException;
 }
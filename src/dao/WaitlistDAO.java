@@ -0,0 +1,28 @@
+package dao;
+
+import model.WaitlistEntry;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Per doctor-day FIFO queues of patients waiting for a place on a fully booked day. A patient is queued at
+ * most once per doctor-day; queuing twice fails with SQLIntegrityConstraintViolationException. Cancelling an
+ * appointment hands its place to the head of the queue in the same transaction (see
+ * AppointmentDAO.cancelAppointment), so a queued patient never has to poll for a free place.
+ */
+public interface WaitlistDAO {
+    // Queue the patient for the doctor's day if the day is full, counting pendingPlaces (places held by
+    // bookings not stored yet) as taken; returns their position, or 0 (not queued) when the day still has a
+    // place, checked atomically against cancellations
+    int joinWaitlist(int doctorId, LocalDate date, int patientId, int pendingPlaces) throws SQLException;
+
+    boolean leaveWaitlist(int doctorId, LocalDate date, int patientId) throws SQLException;
+
+    // The patient's places in queues for today onwards, by date, with doctor names
+    List<WaitlistEntry> getWaitlistByPatientId(int patientId) throws SQLException;
+
+    // Patients queued for the doctor's day
+    int getWaitlistLength(int doctorId, LocalDate date) throws SQLException;
+}
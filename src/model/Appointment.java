@@ -2,6 +2,7 @@ package model;
 
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.time.LocalTime;
 
 public class Appointment implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -11,6 +12,10 @@ public class Appointment implements Serializable {
     private int doctorId;
     private LocalDate appointmentDate;
 
+    // Time slot within the day; null (and duration 0) for a date-only appointment
+    private LocalTime startTime;
+    private int durationMinutes;
+
     // Additional fields for display purposes (not stored in DB)
     private transient String patientName;
     private transient String doctorName;
@@ -23,6 +28,14 @@ public class Appointment implements Serializable {
         this.appointmentDate = appointmentDate;
     }
 
+    // Constructor for new time-slot appointment (without id)
+    public Appointment(int patientId, int doctorId, LocalDate appointmentDate, LocalTime startTime,
+                       int durationMinutes) {
+        this(patientId, doctorId, appointmentDate);
+        this.startTime = startTime;
+        this.durationMinutes = durationMinutes;
+    }
+
     // Constructor for existing appointment (with id)
     public Appointment(long id, int patientId, int doctorId, LocalDate appointmentDate) {
         this.id = id;
@@ -76,6 +89,29 @@ public class Appointment implements Serializable {
         this.appointmentDate = appointmentDate;
     }
 
+    public LocalTime getStartTime() {
+        return startTime;
+    }
+
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    // Set the time slot; null start time makes it date-only
+    public void setTimeSlot(LocalTime startTime, int durationMinutes) {
+        this.startTime = startTime;
+        this.durationMinutes = startTime == null ? 0 : durationMinutes;
+    }
+
+    public boolean hasTimeSlot() {
+        return startTime != null;
+    }
+
+    // End of the time slot (exclusive), or null for a date-only appointment
+    public LocalTime getEndTime() {
+        return startTime == null ? null : startTime.plusMinutes(durationMinutes);
+    }
+
     public String getPatientName() {
         return patientName;
     }
@@ -107,6 +143,7 @@ public class Appointment implements Serializable {
                 ", patientId=" + patientId +
                 ", doctorId=" + doctorId +
                 ", appointmentDate=" + appointmentDate +
+                (startTime == null ? "" : ", startTime=" + startTime + ", durationMinutes=" + durationMinutes) +
                 ", patientName='" + patientName + '\'' +
                 ", doctorName='" + doctorName + '\'' +
                 ", doctorSpecialization='" + doctorSpecialization + '\'' +
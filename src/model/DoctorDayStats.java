@@ -0,0 +1,40 @@
+package model;
+
+import java.time.LocalDate;
+
+// Bookings and cancellations counted for one doctor on one day (a row of the appointment_stats summary)
+public class DoctorDayStats {
+    private final int doctorId;
+    private final LocalDate day;
+    private final long booked;
+    private final long cancelled;
+
+    public DoctorDayStats(int doctorId, LocalDate day, long booked, long cancelled) {
+        this.doctorId = doctorId;
+        this.day = day;
+        this.booked = booked;
+        this.cancelled = cancelled;
+    }
+
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public long getBooked() {
+        return booked;
+    }
+
+    public long getCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+        return "DoctorDayStats{doctorId=" + doctorId + ", day=" + day + ", booked=" + booked +
+                ", cancelled=" + cancelled + "}";
+    }
+}
@@ -0,0 +1,68 @@
+package model;
+
+import java.time.LocalDate;
+
+public class WaitlistEntry {
+    private long id;
+    private int patientId;
+    private int doctorId;
+    private LocalDate date;
+
+    // 1 for the patient next in line for the doctor's day
+    private int position;
+
+    // Additional field for display purposes
+    private String doctorName;
+
+    public WaitlistEntry(long id, int patientId, int doctorId, LocalDate date, int position) {
+        this.id = id;
+        this.patientId = patientId;
+        this.doctorId = doctorId;
+        this.date = date;
+        this.position = position;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public String getDoctorName() {
+        return doctorName;
+    }
+
+    public void setDoctorName(String doctorName) {
+        this.doctorName = doctorName;
+    }
+
+    @Override
+    public String toString() {
+        return "WaitlistEntry{" +
+                "id=" + id +
+                ", patientId=" + patientId +
+                ", doctorId=" + doctorId +
+                ", date=" + date +
+                ", position=" + position +
+                ", doctorName='" + doctorName + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,178 @@
+package service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD concurrency limit for one operation class.
+ * The limit grows by about one per limit's worth of fast calls while the limiter is busy,
+ * and is cut by 10% whenever a call is slower than the target latency or fails.
+ * Callers over the limit wait up to the queue timeout; a full queue fails immediately.
+ * Each call also holds one permit from every connection semaphore it was given (shared with other classes),
+ * taken in order within the same queue timeout, so the classes together stay within the connection pool.
+ */
+public class AdaptiveLimiter {
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final OperationClass operationClass;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final long queueTimeoutMs;
+    private final int maxQueueLength;
+    private final Semaphore[] connectionPermits;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition permitReleased = lock.newCondition();
+
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private long rejected;
+
+    // The limit never exceeds connectionCeiling, the most connections the class can get from its permits
+    public AdaptiveLimiter(OperationClass operationClass, int connectionCeiling, Semaphore... connectionPermits) {
+        int ceiling = Math.max(1, connectionCeiling);
+        this.operationClass = operationClass;
+        this.minLimit = Math.max(1, Math.min(ceiling, operationClass.getMinLimit()));
+        this.maxLimit = Math.max(minLimit, Math.min(ceiling, operationClass.getMaxLimit()));
+        this.limit = Math.min(maxLimit, Math.max(minLimit, operationClass.getInitialLimit()));
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(operationClass.getTargetLatencyMs());
+        this.queueTimeoutMs = Long.getLong("limiter.queueTimeoutMs", 2000);
+        this.maxQueueLength = Integer.getInteger("limiter.maxQueueLength", 50);
+        this.connectionPermits = connectionPermits.clone();
+    }
+
+    // Take a slot and the connection permits, waiting at most timeoutMs in all; throws when saturated
+    public void acquire(long timeoutMs) throws HospitalException {
+        long waitNanos = TimeUnit.MILLISECONDS.toNanos(Math.min(timeoutMs, queueTimeoutMs));
+        long deadlineNanos = System.nanoTime() + waitNanos;
+        takeSlot(waitNanos);
+
+        int taken = 0;
+        try {
+            while (taken < connectionPermits.length && connectionPermits[taken].tryAcquire(
+                    Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                taken++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            returnPermits(taken);
+            returnSlot(false);
+            throw new HospitalException("Interrupted while waiting for database capacity", e);
+        }
+        if (taken < connectionPermits.length) {
+            returnPermits(taken);
+            throw returnSlot(true);
+        }
+    }
+
+    private void takeSlot(long remainingNanos) throws HospitalException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (queued >= maxQueueLength) {
+                rejected++;
+                throw saturated();
+            }
+
+            queued++;
+            try {
+                while (inFlight >= (int) limit) {
+                    if (remainingNanos <= 0) {
+                        rejected++;
+                        throw saturated();
+                    }
+                    remainingNanos = permitReleased.awaitNanos(remainingNanos);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new HospitalException("Interrupted while waiting for database capacity", e);
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Give back a slot whose connection permits could not all be taken; the limit is left alone
+    private HospitalException returnSlot(boolean rejecting) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (rejecting) {
+                rejected++;
+            }
+            permitReleased.signalAll();
+            return saturated();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void returnPermits(int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            connectionPermits[i].release();
+        }
+    }
+
+    // Give the slot back and adjust the limit from the observed latency
+    public void release(long latencyNanos, boolean succeeded) {
+        returnPermits(connectionPermits.length);
+        lock.lock();
+        try {
+            boolean wasBusy = inFlight * 2 >= limit;
+            inFlight--;
+
+            if (!succeeded || latencyNanos > targetLatencyNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            } else if (wasBusy) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private HospitalException saturated() {
+        return new HospitalException("System is busy (" + operationClass.name().toLowerCase().replace('_', ' ')
+                + " capacity " + (int) limit + " in use). Please try again shortly.");
+    }
+}
@@ -0,0 +1,240 @@
+package service;
+
+import dao.DBConnection;
+import dao.ShardRouter;
+import model.Doctor;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Times the column analytics against the equivalent MySQL GROUP BY queries over the last -Dbench.days
+ * (default 365) days, -Dbench.iterations (default 10) runs each, and checks both give the same answers.
+ * With -Dbench.syntheticRows=N it skips MySQL and times the columns alone on N generated rows.
+ *
+ * Usage: java -Dbench.days=730 -cp bin service.AnalyticsBenchmark
+ */
+public class AnalyticsBenchmark {
+    private static final int DAYS = Math.max(1, Integer.getInteger("bench.days", 365));
+    private static final int ITERATIONS = Math.max(1, Integer.getInteger("bench.iterations", 10));
+    private static final int SYNTHETIC_ROWS = Math.max(0, Integer.getInteger("bench.syntheticRows", 0));
+
+    // Live and archived rows in the range; four date parameters
+    private static final String ROWS = "(SELECT doctor_id, patient_id, appointment_date FROM appointments " +
+            "WHERE appointment_date BETWEEN ? AND ? UNION ALL " +
+            "SELECT doctor_id, patient_id, appointment_date FROM appointments_archive " +
+            "WHERE appointment_date BETWEEN ? AND ?) a";
+
+    public static void main(String[] args) {
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusDays(DAYS - 1);
+
+        try {
+            long loadStart = System.nanoTime();
+            AppointmentAnalytics analytics = SYNTHETIC_ROWS > 0
+                    ? synthetic(from, to)
+                    : new AppointmentService().loadAnalytics(from, to);
+            System.out.printf("Loaded %d appointments (%s to %s) into columns in %.1f ms%n",
+                    analytics.getColumns().size(), from, to, (System.nanoTime() - loadStart) / 1e6);
+            System.out.printf("%-40s %12s %12s %8s%n", "Query", "MySQL ms", "Columns ms", "Same");
+
+            run("Bookings per specialization per week",
+                    () -> toComparable(analytics.bookingsPerSpecializationPerWeek(from, to)),
+                    () -> specializationPerWeekSql(from, to));
+            run("Bookings per doctor",
+                    () -> analytics.bookingsPerDoctor(from, to),
+                    () -> perDoctorSql(from, to));
+            run("Bookings per weekday",
+                    () -> Arrays.toString(analytics.bookingsPerWeekday(from, to)),
+                    () -> Arrays.toString(perWeekdaySql(from, to)));
+            run("Active patients",
+                    () -> analytics.activePatients(from, to),
+                    () -> activePatientsSql(from, to));
+        } catch (SQLException | HospitalException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            if (SYNTHETIC_ROWS == 0) {
+                AppointmentService.shutdown();
+                ShardRouter.closeConnections();
+                DBConnection.closeConnection();
+            }
+        }
+    }
+
+    // Median time of each side and whether their last answers agree
+    private static void run(String name, Query columns, Query mysql) throws SQLException {
+        Object columnsResult = null;
+        Object mysqlResult = null;
+        long[] columnsTimes = new long[ITERATIONS];
+        long[] mysqlTimes = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            columnsResult = columns.run();
+            columnsTimes[i] = System.nanoTime() - start;
+            if (SYNTHETIC_ROWS == 0) {
+                start = System.nanoTime();
+                mysqlResult = mysql.run();
+                mysqlTimes[i] = System.nanoTime() - start;
+            }
+        }
+        System.out.printf("%-40s %12s %12.2f %8s%n", name,
+                SYNTHETIC_ROWS == 0 ? String.format("%.2f", median(mysqlTimes) / 1e6) : "-",
+                median(columnsTimes) / 1e6,
+                SYNTHETIC_ROWS == 0 ? (columnsResult.equals(mysqlResult) ? "yes" : "NO") : "-");
+    }
+
+    private static Map<String, Long> specializationPerWeekSql(LocalDate from, LocalDate to) throws SQLException {
+        String sql = "SELECT d.specialization, FLOOR((TO_DAYS(a.appointment_date) - TO_DAYS(?)) / 7) AS week, " +
+                "COUNT(*) FROM " + ROWS + " JOIN doctors d ON d.id = a.doctor_id GROUP BY d.specialization, week";
+
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map<String, Long> shard : ShardRouter.scatter(true, conn -> {
+            Map<String, Long> result = new HashMap<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setDate(1, Date.valueOf(from.with(DayOfWeek.MONDAY)));
+                bindRange(ps, 2, from, to);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.put(rs.getString(1) + "/" + rs.getInt(2), rs.getLong(3));
+                    }
+                }
+            }
+            return result;
+        })) {
+            shard.forEach((key, count) -> counts.merge(key, count, Long::sum));
+        }
+        return counts;
+    }
+
+    private static Map<Integer, Long> perDoctorSql(LocalDate from, LocalDate to) throws SQLException {
+        String sql = "SELECT doctor_id, COUNT(*) FROM " + ROWS + " GROUP BY doctor_id";
+
+        Map<Integer, Long> counts = new HashMap<>();
+        for (Map<Integer, Long> shard : ShardRouter.scatter(true, conn -> {
+            Map<Integer, Long> result = new HashMap<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                bindRange(ps, 1, from, to);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.put(rs.getInt(1), rs.getLong(2));
+                    }
+                }
+            }
+            return result;
+        })) {
+            shard.forEach((doctorId, count) -> counts.merge(doctorId, count, Long::sum));
+        }
+        return counts;
+    }
+
+    private static long[] perWeekdaySql(LocalDate from, LocalDate to) throws SQLException {
+        // WEEKDAY(): 0 = Monday
+        String sql = "SELECT WEEKDAY(appointment_date), COUNT(*) FROM " + ROWS + " GROUP BY 1";
+
+        long[] counts = new long[7];
+        for (long[] shard : ShardRouter.scatter(true, conn -> {
+            long[] result = new long[7];
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                bindRange(ps, 1, from, to);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result[rs.getInt(1)] = rs.getLong(2);
+                    }
+                }
+            }
+            return result;
+        })) {
+            for (int i = 0; i < 7; i++) {
+                counts[i] += shard[i];
+            }
+        }
+        return counts;
+    }
+
+    // Patients are spread over every shard, so distinct ids are unioned rather than counts added
+    private static int activePatientsSql(LocalDate from, LocalDate to) throws SQLException {
+        String sql = "SELECT DISTINCT patient_id FROM " + ROWS;
+
+        Set<Integer> patients = new HashSet<>();
+        for (List<Integer> shard : ShardRouter.scatter(true, conn -> {
+            List<Integer> result = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                bindRange(ps, 1, from, to);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(rs.getInt(1));
+                    }
+                }
+            }
+            return result;
+        })) {
+            patients.addAll(shard);
+        }
+        return patients.size();
+    }
+
+    private static void bindRange(PreparedStatement ps, int index, LocalDate from, LocalDate to) throws SQLException {
+        for (int i = 0; i < 2; i++) {
+            ps.setDate(index++, Date.valueOf(from));
+            ps.setDate(index++, Date.valueOf(to));
+        }
+    }
+
+    // Per-week arrays as specialization/week -> count, leaving out empty weeks, to compare with the SQL rows
+    private static Map<String, Long> toComparable(Map<String, long[]> perWeek) {
+        Map<String, Long> result = new TreeMap<>();
+        perWeek.forEach((specialization, weeks) -> {
+            for (int week = 0; week < weeks.length; week++) {
+                if (weeks[week] > 0) {
+                    result.put(specialization + "/" + week, weeks[week]);
+                }
+            }
+        });
+        return result;
+    }
+
+    // Random bookings for 200 doctors in 12 specializations and 50000 patients, spread over the range
+    private static AppointmentAnalytics synthetic(LocalDate from, LocalDate to) {
+        Random random = new Random(42);
+        List<Doctor> doctors = new ArrayList<>();
+        for (int id = 1; id <= 200; id++) {
+            doctors.add(new Doctor(id, "Doctor " + id, "Specialization " + (id % 12), 0));
+        }
+        long days = to.toEpochDay() - from.toEpochDay() + 1;
+        long[] epochDays = new long[SYNTHETIC_ROWS];
+        for (int i = 0; i < SYNTHETIC_ROWS; i++) {
+            epochDays[i] = from.toEpochDay() + (long) (random.nextDouble() * days);
+        }
+        Arrays.sort(epochDays);
+        AppointmentColumns.Builder columns = new AppointmentColumns.Builder();
+        for (long epochDay : epochDays) {
+            columns.add(1 + random.nextInt(200), epochDay, 1 + random.nextInt(50000));
+        }
+        return new AppointmentAnalytics(columns.build(), from, to, doctors);
+    }
+
+    private static double median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    @FunctionalInterface
+    private interface Query {
+        Object run() throws SQLException;
+    }
+}
@@ -0,0 +1,112 @@
+package service;
+
+import model.Doctor;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Admin questions (bookings per specialization per week, per doctor, per weekday, active patients) answered
+ * from an in-memory column snapshot of the appointments in a date range, instead of ad-hoc joins and
+ * GROUP BYs in MySQL. Load one with AppointmentService.loadAnalytics; it does not see later changes.
+ */
+public class AppointmentAnalytics {
+    private final AppointmentColumns columns;
+    private final LocalDate from;
+    private final LocalDate to;
+    // Specialization code per doctor id (-1 = unknown doctor) and the specializations in code order
+    private final int[] specializationOfDoctor;
+    private final List<String> specializations;
+
+    AppointmentAnalytics(AppointmentColumns columns, LocalDate from, LocalDate to, List<Doctor> doctors) {
+        this.columns = columns;
+        this.from = from;
+        this.to = to;
+
+        TreeMap<String, Integer> codes = new TreeMap<>();
+        int maxDoctorId = 0;
+        for (Doctor doctor : doctors) {
+            codes.putIfAbsent(doctor.getSpecialization(), 0);
+            maxDoctorId = Math.max(maxDoctorId, doctor.getId());
+        }
+        int code = 0;
+        for (Map.Entry<String, Integer> entry : codes.entrySet()) {
+            entry.setValue(code++);
+        }
+        this.specializationOfDoctor = new int[maxDoctorId + 1];
+        Arrays.fill(specializationOfDoctor, -1);
+        for (Doctor doctor : doctors) {
+            specializationOfDoctor[doctor.getId()] = codes.get(doctor.getSpecialization());
+        }
+        this.specializations = List.copyOf(codes.keySet());
+    }
+
+    public AppointmentColumns getColumns() {
+        return columns;
+    }
+
+    // The range the snapshot holds; questions outside it see no appointments
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    // Bookings per specialization per week (Monday to Sunday) between two dates, by specialization; index 0 is
+    // the week containing from
+    public Map<String, long[]> bookingsPerSpecializationPerWeek(LocalDate from, LocalDate to) {
+        LocalDate monday = from.with(DayOfWeek.MONDAY);
+        long firstDay = monday.toEpochDay();
+        long lastDay = to.toEpochDay();
+        int weeks = (int) ((lastDay - firstDay) / 7 + 1);
+
+        Map<String, long[]> result = new TreeMap<>();
+        if (to.isBefore(from)) {
+            return result;
+        }
+        long[] bins = columns.countByDoctorKey(from.toEpochDay(), lastDay, firstDay, specializationOfDoctor,
+                specializations.size(), 7);
+        for (int code = 0; code < specializations.size(); code++) {
+            result.put(specializations.get(code), Arrays.copyOfRange(bins, code * weeks, (code + 1) * weeks));
+        }
+        return result;
+    }
+
+    // Bookings per doctor id between two dates (doctors without bookings are left out)
+    public Map<Integer, Long> bookingsPerDoctor(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return Collections.emptyMap();
+        }
+        long[] counts = columns.countByDoctor(from.toEpochDay(), to.toEpochDay());
+        Map<Integer, Long> result = new HashMap<>();
+        for (int doctorId = 0; doctorId < counts.length; doctorId++) {
+            if (counts[doctorId] > 0) {
+                result.put(doctorId, counts[doctorId]);
+            }
+        }
+        return result;
+    }
+
+    // Bookings per day between two dates, index 0 = from
+    public long[] bookingsPerDay(LocalDate from, LocalDate to) {
+        return to.isBefore(from) ? new long[0] : columns.histogram(from.toEpochDay(), to.toEpochDay(), 1);
+    }
+
+    // Bookings per day of the week between two dates, index 0 = Monday
+    public long[] bookingsPerWeekday(LocalDate from, LocalDate to) {
+        return to.isBefore(from) ? new long[7] : columns.weekdayHistogram(from.toEpochDay(), to.toEpochDay());
+    }
+
+    // Patients with at least one appointment between two dates
+    public int activePatients(LocalDate from, LocalDate to) {
+        return to.isBefore(from) ? 0 : columns.distinctPatients(from.toEpochDay(), to.toEpochDay());
+    }
+}
@@ -0,0 +1,229 @@
+package service;
+
+import model.Appointment;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Appointments as parallel primitive columns (doctor id, epoch day, patient id), sorted by day, so a date range
+ * is a binary search to a row range and every query is a tight loop over int arrays. Queries split the row
+ * range into chunks of -Danalytics.chunkRows (default 65536) scanned in parallel on the common fork/join pool,
+ * each chunk filling its own bins, which are then summed. Immutable once built; safe to share between threads.
+ */
+public final class AppointmentColumns {
+    private static final int CHUNK_ROWS = Math.max(1024, Integer.getInteger("analytics.chunkRows", 65536));
+
+    private final int size;
+    private final int[] doctorIds;
+    private final int[] epochDays;
+    private final int[] patientIds;
+    private final int maxDoctorId;
+
+    private AppointmentColumns(int size, int[] doctorIds, int[] epochDays, int[] patientIds) {
+        this.size = size;
+        this.doctorIds = doctorIds;
+        this.epochDays = epochDays;
+        this.patientIds = patientIds;
+        int max = 0;
+        for (int doctorId : doctorIds) {
+            max = Math.max(max, doctorId);
+        }
+        this.maxDoctorId = max;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // First row on or after the day
+    public int lowerBound(long epochDay) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochDays[mid] < epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Rows between two days (inclusive)
+    public int count(long fromDay, long toDay) {
+        return Math.max(0, lowerBound(toDay + 1) - lowerBound(fromDay));
+    }
+
+    // Rows between two days per key and bin, at index key * binsPerKey + (day - originDay) / binDays, where
+    // key = keyOfDoctor[doctor id] and binsPerKey = (toDay - originDay) / binDays + 1; rows whose doctor maps to
+    // a negative key or lies outside the array are skipped. originDay must not be after fromDay
+    public long[] countByDoctorKey(long fromDay, long toDay, long originDay, int[] keyOfDoctor, int keys,
+                                   int binDays) {
+        int binsPerKey = (int) ((toDay - originDay) / binDays + 1);
+        int first = (int) originDay;
+        return group(fromDay, toDay, keys * binsPerKey, (lo, hi, bins) -> {
+            for (int row = lo; row < hi; row++) {
+                int doctorId = doctorIds[row];
+                int key = doctorId < keyOfDoctor.length ? keyOfDoctor[doctorId] : -1;
+                if (key >= 0) {
+                    bins[key * binsPerKey + (epochDays[row] - first) / binDays]++;
+                }
+            }
+        });
+    }
+
+    // Rows per doctor id between two days (index = doctor id, up to the largest id seen)
+    public long[] countByDoctor(long fromDay, long toDay) {
+        return group(fromDay, toDay, maxDoctorId + 1, (lo, hi, bins) -> {
+            for (int row = lo; row < hi; row++) {
+                bins[doctorIds[row]]++;
+            }
+        });
+    }
+
+    // Rows per bin of binDays days from fromDay (binDays 1 = per day, 7 = per week)
+    public long[] histogram(long fromDay, long toDay, int binDays) {
+        int first = (int) fromDay;
+        return group(fromDay, toDay, (int) ((toDay - fromDay) / binDays + 1), (lo, hi, bins) -> {
+            for (int row = lo; row < hi; row++) {
+                bins[(epochDays[row] - first) / binDays]++;
+            }
+        });
+    }
+
+    // Rows per day of the week between two days (index 0 = Monday)
+    public long[] weekdayHistogram(long fromDay, long toDay) {
+        return group(fromDay, toDay, 7, (lo, hi, bins) -> {
+            for (int row = lo; row < hi; row++) {
+                // Epoch day 0 (1970-01-01) was a Thursday
+                bins[(int) Math.floorMod(epochDays[row] + 3L, 7L)]++;
+            }
+        });
+    }
+
+    // Patients with at least one row between two days
+    public int distinctPatients(long fromDay, long toDay) {
+        int lo = lowerBound(fromDay);
+        int hi = Math.max(lo, lowerBound(toDay + 1));
+        return ForkJoinPool.commonPool().invoke(new DistinctTask(patientIds, lo, hi)).cardinality();
+    }
+
+    // Run the kernel over the rows between two days in parallel chunks and sum their bins
+    private long[] group(long fromDay, long toDay, int bins, Kernel kernel) {
+        if (toDay < fromDay) {
+            return new long[Math.max(0, bins)];
+        }
+        int lo = lowerBound(fromDay);
+        int hi = Math.max(lo, lowerBound(toDay + 1));
+        return ForkJoinPool.commonPool().invoke(new GroupTask(lo, hi, bins, kernel));
+    }
+
+    @FunctionalInterface
+    private interface Kernel {
+        // Add rows [lo, hi) to bins
+        void accumulate(int lo, int hi, long[] bins);
+    }
+
+    // Fork/join tasks are Serializable by inheritance but never serialized
+    @SuppressWarnings("serial")
+    private static final class GroupTask extends RecursiveTask<long[]> {
+        private final int lo;
+        private final int hi;
+        private final int bins;
+        private final Kernel kernel;
+
+        private GroupTask(int lo, int hi, int bins, Kernel kernel) {
+            this.lo = lo;
+            this.hi = hi;
+            this.bins = bins;
+            this.kernel = kernel;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (hi - lo <= CHUNK_ROWS) {
+                long[] result = new long[bins];
+                kernel.accumulate(lo, hi, result);
+                return result;
+            }
+            int mid = (lo + hi) >>> 1;
+            GroupTask left = new GroupTask(lo, mid, bins, kernel);
+            left.fork();
+            long[] result = new GroupTask(mid, hi, bins, kernel).compute();
+            long[] other = left.join();
+            for (int i = 0; i < bins; i++) {
+                result[i] += other[i];
+            }
+            return result;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class DistinctTask extends RecursiveTask<BitSet> {
+        private final int[] patientIds;
+        private final int lo;
+        private final int hi;
+
+        private DistinctTask(int[] patientIds, int lo, int hi) {
+            this.patientIds = patientIds;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected BitSet compute() {
+            if (hi - lo <= CHUNK_ROWS) {
+                BitSet seen = new BitSet();
+                for (int row = lo; row < hi; row++) {
+                    seen.set(patientIds[row]);
+                }
+                return seen;
+            }
+            int mid = (lo + hi) >>> 1;
+            DistinctTask left = new DistinctTask(patientIds, lo, mid);
+            left.fork();
+            BitSet result = new DistinctTask(patientIds, mid, hi).compute();
+            result.or(left.join());
+            return result;
+        }
+    }
+
+    // Appends rows in day order (rows for a day must not come after a later day's)
+    public static final class Builder {
+        private int size;
+        private int[] doctorIds = new int[1024];
+        private int[] epochDays = new int[1024];
+        private int[] patientIds = new int[1024];
+
+        public Builder add(Appointment appointment) {
+            return add(appointment.getDoctorId(), appointment.getAppointmentDate().toEpochDay(),
+                    appointment.getPatientId());
+        }
+
+        public Builder add(int doctorId, long epochDay, int patientId) {
+            if (size > 0 && epochDay < epochDays[size - 1]) {
+                throw new IllegalArgumentException("Rows must be added in day order");
+            }
+            if (size == doctorIds.length) {
+                int capacity = size + (size >> 1);
+                doctorIds = Arrays.copyOf(doctorIds, capacity);
+                epochDays = Arrays.copyOf(epochDays, capacity);
+                patientIds = Arrays.copyOf(patientIds, capacity);
+            }
+            doctorIds[size] = doctorId;
+            epochDays[size] = (int) epochDay;
+            patientIds[size] = patientId;
+            size++;
+            return this;
+        }
+
+        public AppointmentColumns build() {
+            return new AppointmentColumns(size, Arrays.copyOf(doctorIds, size), Arrays.copyOf(epochDays, size),
+                    Arrays.copyOf(patientIds, size));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package service;
+
+import dao.DBConnection;
+import dao.ShardRouter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
+/**
+ * Streams appointments (live and archived, every shard) into one file: -Dexport.format csv (default), ndjson
+ * or binary, gzipped with -Dexport.gzip=true, limited to -Dexport.from / -Dexport.to (yyyy-MM-dd, inclusive)
+ * when given. The file name is the first argument, or appointments plus the format's extension.
+ *
+ * Usage: java -Dexport.format=ndjson -Dexport.gzip=true -cp bin service.AppointmentExportTool all.ndjson.gz
+ */
+public class AppointmentExportTool {
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        try {
+            AppointmentExporter.Format format = AppointmentExporter.Format.parse(
+                    System.getProperty("export.format", "csv"));
+            boolean compress = Boolean.getBoolean("export.gzip");
+            LocalDate from = dateProperty("export.from");
+            LocalDate to = dateProperty("export.to");
+            Path file = Paths.get(args.length > 0 ? args[0]
+                    : "appointments" + format.getExtension() + (compress ? ".gz" : ""));
+
+            long rows = new AppointmentService().exportAppointments(file, format, compress, from, to);
+            System.out.printf("✓ Exported %d appointments to %s in %.1f s%n", rows, file.toAbsolutePath(),
+                    (System.nanoTime() - start) / 1e9);
+        } catch (HospitalException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            AppointmentService.shutdown();
+            ShardRouter.closeConnections();
+            DBConnection.closeConnection();
+        }
+    }
+
+    private static LocalDate dateProperty(String name) throws HospitalException {
+        String value = System.getProperty(name);
+        try {
+            return value == null || value.isBlank() ? null : LocalDate.parse(value.trim());
+        } catch (RuntimeException e) {
+            throw new HospitalException("Invalid date for -D" + name + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package service;
+
+import model.Appointment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes appointments to a file one row at a time, as CSV, newline-delimited JSON or a compact binary format,
+ * optionally gzipped. Rows are formatted into one reusable StringBuilder and encoded straight into one
+ * -Dexport.bufferBytes (default 65536) buffer, which is handed to the FileChannel (or the gzip stream in
+ * front of it) whenever it fills, so memory use does not depend on the number of rows.
+ *
+ * Binary layout (big-endian): magic "HEXP", version, then per row: id (long), patient id, doctor id and
+ * epoch day (ints), start minute of the day (short, -1 = no time slot), duration minutes (short), then
+ * patient name, doctor name and specialization, each as an unsigned short byte length (0xFFFF = null)
+ * followed by UTF-8 bytes. Rows run to the end of the file.
+ *
+ * Not thread-safe; one exporter writes one file.
+ */
+public final class AppointmentExporter implements Closeable {
+    static final int BINARY_MAGIC = 0x48455850; // "HEXP"
+    static final int BINARY_VERSION = 1;
+
+    private static final int BUFFER_BYTES = Math.max(4096, Integer.getInteger("export.bufferBytes", 65536));
+    private static final int NULL_STRING = 0xFFFF;
+    private static final String CSV_HEADER = "id,patient_id,patient_name,doctor_id,doctor_name,specialization," +
+            "appointment_date,start_time,duration_minutes\n";
+
+    public enum Format {
+        CSV, NDJSON, BINARY;
+
+        // Format by name, ignoring case (csv, ndjson, binary)
+        public static Format parse(String name) throws HospitalException {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new HospitalException("Unknown export format: " + name);
+            }
+        }
+
+        // Usual file extension, without the .gz a compressed export adds
+        public String getExtension() {
+            return this == BINARY ? ".bin" : "." + name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Format format;
+    private final FileChannel channel;
+    private final OutputStream gzip;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final StringBuilder text = new StringBuilder(256);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(256);
+    private long rows;
+
+    private AppointmentExporter(Format format, FileChannel channel, boolean compress) throws IOException {
+        this.format = format;
+        this.channel = channel;
+        this.gzip = compress ? new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES) : null;
+    }
+
+    // Create (or truncate) the file and write the format's header
+    public static AppointmentExporter open(Path file, Format format, boolean compress) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            AppointmentExporter exporter = new AppointmentExporter(format, channel, compress);
+            if (format == Format.CSV) {
+                exporter.text.append(CSV_HEADER);
+                exporter.writeText();
+            } else if (format == Format.BINARY) {
+                exporter.buffer.putInt(BINARY_MAGIC).putInt(BINARY_VERSION);
+            }
+            return exporter;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public void write(Appointment appointment) throws IOException {
+        switch (format) {
+            case CSV:
+                formatCsv(appointment);
+                writeText();
+                break;
+            case NDJSON:
+                formatJson(appointment);
+                writeText();
+                break;
+            case BINARY:
+                writeBinary(appointment);
+                break;
+        }
+        rows++;
+    }
+
+    public long getRowCount() {
+        return rows;
+    }
+
+    // Write out what is buffered, finish the gzip trailer and sync the file
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+            if (gzip != null) {
+                gzip.close();
+            } else {
+                channel.force(false);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void formatCsv(Appointment appointment) {
+        text.setLength(0);
+        text.append(appointment.getId()).append(',')
+                .append(appointment.getPatientId()).append(',');
+        appendCsv(appointment.getPatientName());
+        text.append(',').append(appointment.getDoctorId()).append(',');
+        appendCsv(appointment.getDoctorName());
+        text.append(',');
+        appendCsv(appointment.getDoctorSpecialization());
+        text.append(',');
+        appendDate(appointment.getAppointmentDate());
+        text.append(',');
+        if (appointment.hasTimeSlot()) {
+            appendTime(appointment.getStartTime());
+            text.append(',').append(appointment.getDurationMinutes());
+        } else {
+            text.append(',');
+        }
+        text.append('\n');
+    }
+
+    private void formatJson(Appointment appointment) {
+        text.setLength(0);
+        text.append("{\"id\":").append(appointment.getId())
+                .append(",\"patientId\":").append(appointment.getPatientId())
+                .append(",\"patientName\":");
+        appendJson(appointment.getPatientName());
+        text.append(",\"doctorId\":").append(appointment.getDoctorId()).append(",\"doctorName\":");
+        appendJson(appointment.getDoctorName());
+        text.append(",\"specialization\":");
+        appendJson(appointment.getDoctorSpecialization());
+        text.append(",\"date\":\"");
+        appendDate(appointment.getAppointmentDate());
+        text.append('"');
+        if (appointment.hasTimeSlot()) {
+            text.append(",\"startTime\":\"");
+            appendTime(appointment.getStartTime());
+            text.append("\",\"durationMinutes\":").append(appointment.getDurationMinutes());
+        } else {
+            text.append(",\"startTime\":null,\"durationMinutes\":null");
+        }
+        text.append("}\n");
+    }
+
+    private void writeBinary(Appointment appointment) throws IOException {
+        ensureRoom(8 + 3 * 4 + 2 * 2);
+        buffer.putLong(appointment.getId())
+                .putInt(appointment.getPatientId())
+                .putInt(appointment.getDoctorId())
+                .putInt((int) appointment.getAppointmentDate().toEpochDay());
+        if (appointment.hasTimeSlot()) {
+            buffer.putShort((short) (appointment.getStartTime().toSecondOfDay() / 60))
+                    .putShort((short) appointment.getDurationMinutes());
+        } else {
+            buffer.putShort((short) -1).putShort((short) 0);
+        }
+        writeBinaryString(appointment.getPatientName());
+        writeBinaryString(appointment.getDoctorName());
+        writeBinaryString(appointment.getDoctorSpecialization());
+    }
+
+    // Length-prefixed UTF-8, encoded straight into the buffer and the length filled in afterwards
+    private void writeBinaryString(String value) throws IOException {
+        if (value == null) {
+            ensureRoom(2);
+            buffer.putShort((short) NULL_STRING);
+            return;
+        }
+        if (value.length() * 3 >= Math.min(NULL_STRING, BUFFER_BYTES - 2)) {
+            throw new IOException("String too long for the binary export format: " + value.length() + " chars");
+        }
+        ensureRoom(2 + value.length() * 3);
+        int lengthAt = buffer.position();
+        buffer.putShort((short) 0);
+        loadChars(value);
+        encoder.reset();
+        encoder.encode(chars, buffer, true);
+        encoder.flush(buffer);
+        buffer.putShort(lengthAt, (short) (buffer.position() - lengthAt - 2));
+    }
+
+    // Encode the formatted row into the buffer, flushing whenever it fills
+    private void writeText() throws IOException {
+        loadChars(text);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flushBuffer();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flushBuffer();
+        }
+    }
+
+    // Copy into the reusable char buffer, growing it only for a longer row than any before
+    private void loadChars(CharSequence value) {
+        int length = value.length();
+        if (chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+        }
+        chars.clear();
+        for (int i = 0; i < length; i++) {
+            chars.put(value.charAt(i));
+        }
+        chars.flip();
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        if (gzip != null) {
+            gzip.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    // Quoted only when it holds a comma, quote or line break; null is an empty field
+    private void appendCsv(String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            text.append(value);
+            return;
+        }
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                text.append('"');
+            }
+            text.append(c);
+        }
+        text.append('"');
+    }
+
+    private void appendJson(String value) {
+        if (value == null) {
+            text.append("null");
+            return;
+        }
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\').append(c);
+            } else if (c < 0x20) {
+                text.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+            } else {
+                text.append(c);
+            }
+        }
+        text.append('"');
+    }
+
+    // yyyy-MM-dd without going through a formatter
+    private void appendDate(LocalDate date) {
+        appendPadded(date.getYear(), 4);
+        text.append('-');
+        appendPadded(date.getMonthValue(), 2);
+        text.append('-');
+        appendPadded(date.getDayOfMonth(), 2);
+    }
+
+    private void appendTime(LocalTime time) {
+        appendPadded(time.getHour(), 2);
+        text.append(':');
+        appendPadded(time.getMinute(), 2);
+    }
+
+    private void appendPadded(int value, int digits) {
+        for (int limit = 10; digits > 1; digits--, limit *= 10) {
+            if (value < limit) {
+                text.append('0');
+            }
+        }
+        text.append(value);
+    }
+}
@@ -1,57 +1,287 @@
 package service;
 
 import dao.AppointmentDAO;
+import dao.BookingJournal;
+import dao.Cancellation;
+import dao.DAOFactory;
+import dao.DBConnection;
+import dao.Deadline;
 import dao.DoctorDAO;
+import dao.IdempotencyDAO;
+import dao.MySqlAppointmentDAO;
 import dao.PatientDAO;
+import dao.QueryContext;
+import dao.WaitlistDAO;
 import model.Appointment;
 import model.Doctor;
+import model.DoctorDayStats;
 import model.Patient;
+import model.WaitlistEntry;
 
 import java.io.FileWriter;
 import java.io.PrintWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
-import java.util.*;
-import java.util.concurrent.*;
 
 public class AppointmentService {
     private final AppointmentDAO appointmentDAO;
     private final DoctorDAO doctorDAO;
     private final PatientDAO patientDAO;
+    private final IdempotencyDAO idempotencyDAO;
+    private final WaitlistDAO waitlistDAO;
+
+    // Collection Framework: ConcurrentHashMap for thread-safe caching; each entry keeps when it was read and
+    // expires CACHE_EXPIRY_MS after that
+    private static final ConcurrentHashMap<Integer, ReadResult<List<Appointment>>> doctorAppointmentsCache =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, ReadResult<List<Appointment>>> patientAppointmentsCache =
+            new ConcurrentHashMap<>();
+    // A doctor's appointments from today through UPCOMING_DAYS ahead (the dashboard's first view)
+    private static final ConcurrentHashMap<Integer, ReadResult<List<Appointment>>> upcomingDoctorAppointmentsCache =
+            new ConcurrentHashMap<>();
+    private static final int UPCOMING_DAYS = Math.max(0, Integer.getInteger("schedule.upcomingDays", 7));
 
-    // Collection Framework: ConcurrentHashMap for thread-safe caching
-    private static final ConcurrentHashMap<Integer, List<Appointment>> doctorAppointmentsCache = new ConcurrentHashMap<>();
-    private static final ConcurrentHashMap<Integer, List<Appointment>> patientAppointmentsCache = new ConcurrentHashMap<>();
+    // Last successful read per key, kept past cache expiry so reads can still be answered (marked stale)
+    // while the database is unreachable; at most -Dcache.lastKnownSize keys each, least recently used dropped
+    private static final int LAST_KNOWN_SIZE = Math.max(1, Integer.getInteger("cache.lastKnownSize", 10000));
+    private static final Map<Integer, ReadResult<List<Appointment>>> lastKnownDoctorAppointments = lastKnownMap();
+    private static final Map<Integer, ReadResult<List<Appointment>>> lastKnownPatientAppointments = lastKnownMap();
+    private static final Map<Integer, ReadResult<List<Appointment>>> lastKnownUpcomingDoctorAppointments =
+            lastKnownMap();
+    private static volatile ReadResult<List<Doctor>> lastKnownDoctorDirectory = null;
+
+    // Doctor directory rarely changes, so it is cached separately and only dropped when a doctor registers
+    private static volatile ReadResult<List<Doctor>> doctorDirectory = null;
 
-    // volatile for thread visibility
-    private static volatile long cacheTimestamp = System.currentTimeMillis();
     private static final long CACHE_EXPIRY_MS = 60000; // 1 minute cache
 
+    // Upper bound for a doctor's daily capacity
+    private static final int MAX_DAILY_CAPACITY = 200;
+
+    // MySQL error for an insert whose foreign key points at a missing row
+    private static final int MYSQL_NO_REFERENCED_ROW = 1452;
+
+    // Bookable hours and slot grid for time-slot appointments
+    // (-Dschedule.dayStart=HH:MM, -Dschedule.dayEnd=HH:MM, -Dschedule.slotMinutes=N)
+    private static final LocalTime DAY_START = LocalTime.parse(System.getProperty("schedule.dayStart", "09:00"));
+    private static final LocalTime DAY_END = LocalTime.parse(System.getProperty("schedule.dayEnd", "17:00"));
+    private static final int SLOT_MINUTES = Math.max(1, Integer.getInteger("schedule.slotMinutes", 15));
+
+    // Patients per IN (...) query when prefetching (-Dprefetch.chunkSize=N)
+    private static final int PREFETCH_CHUNK_SIZE = Math.max(1, Integer.getInteger("prefetch.chunkSize", 100));
+
+    // Idempotency keys live for -Didempotency.ttlHours (default 24) and are purged every 10 minutes;
+    // up to -Didempotency.cacheSize recent keys are answered from memory
+    private static final Duration IDEMPOTENCY_TTL = Duration.ofHours(Long.getLong("idempotency.ttlHours", 24));
+    private static final long IDEMPOTENCY_PURGE_INTERVAL_MS = 10 * 60 * 1000;
+    private static final RecentKeyCache recentIdempotencyKeys = new RecentKeyCache(
+            Integer.getInteger("idempotency.cacheSize", 10000), IDEMPOTENCY_TTL.toMillis());
+    private static final AtomicLong lastIdempotencyPurge = new AtomicLong();
+
+    // Every doctor's schedule as date -> appointment ids, kept current on book and cancel (see loadScheduleIndex)
+    private static final ScheduleIndex scheduleIndex = new ScheduleIndex();
+
+    // Daily capacity per doctor, as last read or set
+    private static final ConcurrentHashMap<Integer, Integer> dailyCapacities = new ConcurrentHashMap<>();
+
+    // Optional appointment reminders (-Dreminders.enabled=true); null when disabled
+    private static final ReminderScheduler reminders = ReminderScheduler.startIfEnabled(DAY_START);
+
+    // Booked and cancelled counts per doctor-day, updated on every booking and cancellation and flushed to
+    // the appointment_stats summary table
+    private static final UtilizationStats utilizationStats = new UtilizationStats(DAOFactory.createStatsDAO());
+
+    // Today's and tomorrow's hospital-wide rosters, dropped per date on book and cancel
+    private static final RosterCache rosterCache = new RosterCache(Long.getLong("roster.refreshMs", 30000));
+
+    // Optional write-behind booking journal (-Dbooking.writeBehind=true); null when bookings are synchronous.
+    // Journaled bookings enter the schedule index once they are stored in MySQL (and get reminders then too,
+    // covering bookings replayed from the journal at startup)
+    private static final BookingJournal bookingJournal = BookingJournal.openIfEnabled(appointment -> {
+        scheduleIndex.add(appointment);
+        rosterCache.invalidate(appointment.getAppointmentDate());
+        if (reminders != null) {
+            reminders.schedule(appointment);
+        }
+    });
+    private static final long JOURNAL_FLUSH_WAIT_MS = 10000;
+
     // ExecutorService for multithreading demo
     private static final ExecutorService executorService = Executors.newFixedThreadPool(3);
 
+    // Default per-call timeout for every service call (-Dservice.callTimeoutMs=N, 0 = no deadline)
+    private static final long DEFAULT_CALL_TIMEOUT_MS = Long.getLong("service.callTimeoutMs", 0);
+
+    // Deadline applied to each call: a fixed absolute deadline, a per-call timeout, or both
+    private final Deadline fixedDeadline;
+    private final long callTimeoutMs;
+
     public AppointmentService() {
-        this.appointmentDAO = new AppointmentDAO();
-        this.doctorDAO = new DoctorDAO();
-        this.patientDAO = new PatientDAO();
+        this(Deadline.none(), DEFAULT_CALL_TIMEOUT_MS);
+    }
+
+    private AppointmentService(Deadline fixedDeadline, long callTimeoutMs) {
+        this.appointmentDAO = DAOFactory.createAppointmentDAO();
+        this.doctorDAO = DAOFactory.createDoctorDAO();
+        this.patientDAO = DAOFactory.createPatientDAO();
+        this.idempotencyDAO = DAOFactory.createIdempotencyDAO();
+        this.waitlistDAO = DAOFactory.createWaitlistDAO();
+        this.fixedDeadline = fixedDeadline;
+        this.callTimeoutMs = callTimeoutMs;
+    }
+
+    // A view of this service whose calls all finish by the given deadline (e.g. an incoming request's)
+    public AppointmentService withDeadline(Deadline deadline) {
+        return new AppointmentService(fixedDeadline.earliest(deadline), callTimeoutMs);
+    }
+
+    // A view of this service where every call gets its own timeout, counted from when the call starts
+    public AppointmentService withTimeout(Duration timeout) {
+        return new AppointmentService(fixedDeadline, timeout.toMillis());
     }
 
     // Book appointment with validation
-    public synchronized Appointment bookAppointment(int patientId, int doctorId, LocalDate appointmentDate)
+    public Appointment bookAppointment(int patientId, int doctorId, LocalDate appointmentDate)
+            throws HospitalException {
+        return bookAppointment(patientId, doctorId, appointmentDate, null);
+    }
+
+    // Book appointment with an optional client-supplied idempotency key: a retried request with the same key
+    // returns the originally booked appointment instead of failing or booking twice
+    public Appointment bookAppointment(int patientId, int doctorId, LocalDate appointmentDate,
+                                       String idempotencyKey) throws HospitalException {
+        // A keyed booking must commit together with its key, so it always takes the synchronous path
+        if (bookingJournal != null && idempotencyKey == null) {
+            return bookWriteBehind(patientId, doctorId, appointmentDate);
+        }
+        return bookSynchronously(new Appointment(patientId, doctorId, appointmentDate), idempotencyKey);
+    }
+
+    // Book a time slot: startTime on the slot grid within bookable hours, lasting a whole number of slots.
+    // Timed bookings are always synchronous, since the overlap check must see every stored slot
+    public Appointment bookAppointment(int patientId, int doctorId, LocalDate appointmentDate, LocalTime startTime,
+                                       int durationMinutes) throws HospitalException {
+        checkTimeSlot(appointmentDate, startTime, durationMinutes);
+        return bookSynchronously(new Appointment(patientId, doctorId, appointmentDate, startTime, durationMinutes),
+                null);
+    }
+
+    // Write-behind booking: a place on the day is reserved in memory and the booking is acknowledged once it is in the
+    // local journal (one fsync shared with concurrent bookings); a background flusher inserts it into MySQL
+    private Appointment bookWriteBehind(int patientId, int doctorId, LocalDate appointmentDate)
+            throws HospitalException {
+        Deadline deadline = callDeadline();
+        try {
+            Patient patient = DatabaseGuard.call(OperationClass.BOOKING, deadline,
+                    () -> patientDAO.findPatientById(patientId));
+            if (patient == null) {
+                throw new HospitalException("Patient not found!");
+            }
+
+            Doctor doctor = DatabaseGuard.call(OperationClass.BOOKING, deadline,
+                    () -> doctorDAO.findDoctorById(doctorId));
+            if (doctor == null) {
+                throw new HospitalException("Doctor not found!");
+            }
+
+            if (appointmentDate.isBefore(LocalDate.now())) {
+                throw new HospitalException("Cannot book appointment in the past!");
+            }
+
+            // Places left in the database, claimed atomically against other pending bookings for the day, which
+            // also refuses the patient's second pending place with the doctor that day
+            int freePlaces = placesLeft(OperationClass.BOOKING, deadline, doctorId, appointmentDate, false);
+            BookingJournal.Reservation reservation =
+                    bookingJournal.reserve(patientId, doctorId, appointmentDate, freePlaces);
+            if (reservation == BookingJournal.Reservation.PATIENT_ALREADY_BOOKED) {
+                throw new HospitalException("You already have an appointment with this doctor on this date!");
+            }
+            if (reservation == BookingJournal.Reservation.FULLY_BOOKED) {
+                throw new HospitalException("Doctor is fully booked on this date!");
+            }
+
+            Appointment appointment = new Appointment(patientId, doctorId, appointmentDate);
+            appointment.setPatientName(patient.getName());
+            appointment.setDoctorName(doctor.getName());
+            appointment.setDoctorSpecialization(doctor.getSpecialization());
+            try {
+                // Checked after reserving, on the primary: a booking leaves the journal only once it is stored,
+                // so a concurrent one is seen either here or by reserve
+                boolean alreadyBooked = DatabaseGuard.call(OperationClass.BOOKING, deadline,
+                        () -> QueryContext.withPrimaryReads(() -> appointmentDAO.getAppointmentsByDoctorIdBetween(
+                                doctorId, appointmentDate, appointmentDate))).stream()
+                        .anyMatch(a -> a.getPatientId() == patientId);
+                if (alreadyBooked) {
+                    throw new HospitalException("You already have an appointment with this doctor on this date!");
+                }
+                appointment.setId(DatabaseGuard.call(OperationClass.BOOKING, deadline,
+                        () -> bookingJournal.nextId(doctorId)));
+            } catch (HospitalException | SQLException | RuntimeException e) {
+                bookingJournal.release(patientId, doctorId, appointmentDate);
+                throw e;
+            }
+            bookingJournal.append(appointment, deadline);
+            utilizationStats.recordBooked(doctorId, appointmentDate);
+            if (reminders != null) {
+                reminders.schedule(appointment);
+            }
+
+            DBConnection.markSessionWrite();
+            clearCache();
+
+            return appointment;
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
+
+    // No lock is held here: the database's day counter and unique keys settle concurrent bookings, and a monitor
+    // would pin the caller's virtual thread for the whole JDBC round trip
+    private Appointment bookSynchronously(Appointment appointment, String idempotencyKey)
             throws HospitalException {
+        int patientId = appointment.getPatientId();
+        int doctorId = appointment.getDoctorId();
+        LocalDate appointmentDate = appointment.getAppointmentDate();
+        Deadline deadline = callDeadline();
+        byte[] keyHash = idempotencyKey == null ? null : hashIdempotencyKey(idempotencyKey);
+        String cacheKey = keyHash == null ? null : Base64.getEncoder().encodeToString(keyHash);
         try {
+            // Answer retries we have already seen without touching the database
+            if (cacheKey != null) {
+                Appointment previous = recentIdempotencyKeys.get(cacheKey);
+                if (previous != null) {
+                    return checkReplay(previous, appointment);
+                }
+                purgeExpiredIdempotencyKeysIfDue();
+            }
+
             // Validate patient exists
-            Patient patient = patientDAO.findPatientById(patientId);
+            Patient patient = DatabaseGuard.call(OperationClass.BOOKING, deadline,
+                    () -> patientDAO.findPatientById(patientId));
             if (patient == null) {
                 throw new HospitalException("Patient not found!");
             }
 
             // Validate doctor exists
-            Doctor doctor = doctorDAO.findDoctorById(doctorId);
+            Doctor doctor = DatabaseGuard.call(OperationClass.BOOKING, deadline,
+                    () -> doctorDAO.findDoctorById(doctorId));
             if (doctor == null) {
                 throw new HospitalException("Doctor not found!");
             }
@@ -61,16 +291,54 @@ public class AppointmentService {
                 throw new HospitalException("Cannot book appointment in the past!");
             }
 
-            // Check doctor availability
-            if (!appointmentDAO.isDoctorAvailable(doctorId, appointmentDate)) {
-                throw new HospitalException("Doctor is not available on this date!");
+            // Check the doctor has a place left for a date-only booking (a full day may be full because of this
+            // very request's earlier booking); the database's counter has the final word when it is inserted.
+            // Time slots take no place: bookable hours and the overlap check limit them instead
+            if (!appointment.hasTimeSlot()
+                    && placesLeft(OperationClass.BOOKING, deadline, doctorId, appointmentDate, true) == 0) {
+                Appointment previous = findIdempotentBooking(keyHash, cacheKey, deadline);
+                if (previous != null) {
+                    return checkReplay(previous, appointment);
+                }
+                throw new HospitalException("Doctor is fully booked on this date!");
             }
 
-            // Create appointment
-            Appointment appointment = new Appointment(patientId, doctorId, appointmentDate);
-            if (!appointmentDAO.bookAppointment(appointment)) {
-                throw new HospitalException("Failed to book appointment!");
+            // Check the time slot against the index; the database re-checks it when the booking is inserted
+            if (appointment.hasTimeSlot() && scheduleIndex.covers(appointmentDate) && !scheduleIndex.isSlotFree(
+                    doctorId, appointmentDate, appointment.getStartTime(), appointment.getEndTime())) {
+                throw new HospitalException("That time slot is already taken!");
+            }
+
+            try {
+                boolean booked = keyHash == null
+                        ? DatabaseGuard.callWithRetry(OperationClass.BOOKING, deadline,
+                                () -> appointmentDAO.bookAppointment(appointment))
+                        : DatabaseGuard.callWithRetry(OperationClass.BOOKING, deadline,
+                                () -> appointmentDAO.bookAppointment(appointment, keyHash));
+                if (!booked) {
+                    throw new HospitalException("Failed to book appointment!");
+                }
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Lost a race with a concurrent request carrying the same key, or for the day's last place,
+                // or the patient already has a place with this doctor that day
+                Appointment previous = findIdempotentBooking(keyHash, cacheKey, deadline);
+                if (previous != null) {
+                    return checkReplay(previous, appointment);
+                }
+                throw new HospitalException(appointment.hasTimeSlot() ? "Doctor is not available at that time!"
+                        : "Doctor is not available on this date!", e);
+            }
+
+            if (cacheKey != null) {
+                recentIdempotencyKeys.put(cacheKey, appointment);
+            }
+            scheduleIndex.add(appointment);
+            rosterCache.invalidate(appointmentDate);
+            utilizationStats.recordBooked(doctorId, appointmentDate);
+            if (reminders != null) {
+                reminders.schedule(appointment);
             }
+            DBConnection.markSessionWrite();
 
             // Clear cache after booking
             clearCache();
@@ -83,50 +351,144 @@ public class AppointmentService {
 
     // Get appointments for patient with caching
     public List<Appointment> getPatientAppointments(int patientId) throws HospitalException {
+        return new ArrayList<>(readPatientAppointments(patientId).getValue());
+    }
+
+    // Same as above, but during a database outage answers from the last good copy, marked stale
+    public ReadResult<List<Appointment>> readPatientAppointments(int patientId) throws HospitalException {
+        ReadResult<List<Appointment>> result = loadPatientAppointments(patientId);
+        return bookingJournal == null ? result
+                : result.map(list -> withPending(list, bookingJournal.pendingForPatient(patientId)));
+    }
+
+    private ReadResult<List<Appointment>> loadPatientAppointments(int patientId) throws HospitalException {
+        Deadline deadline = callDeadline();
         try {
-            // Check cache first
-            if (isCacheValid()) {
-                List<Appointment> cached = patientAppointmentsCache.get(patientId);
-                if (cached != null) {
-                    return new ArrayList<>(cached); // Return copy
-                }
+            // Check cache first (not for a session that must read its own recent writes)
+            ReadResult<List<Appointment>> cached = patientAppointmentsCache.get(patientId);
+            if (isCacheValid(cached) && !DBConnection.mustReadFromPrimary()) {
+                return cached.map(ArrayList::new); // Return copy, as of when it was read
             }
 
             // Fetch from database
-            List<Appointment> appointments = appointmentDAO.getAppointmentsByPatientId(patientId);
+            QueryContext.resetReplicaRead();
+            List<Appointment> appointments = DatabaseGuard.call(OperationClass.SCHEDULE_READ, deadline,
+                    () -> appointmentDAO.getAppointmentsByPatientId(patientId));
 
-            // Update cache
-            patientAppointmentsCache.put(patientId, appointments);
+            // Update cache; rows from a replica may predate a write that just cleared it
+            ReadResult<List<Appointment>> loaded = ReadResult.fresh(List.copyOf(appointments));
+            if (!QueryContext.wasReplicaRead()) {
+                patientAppointmentsCache.put(patientId, loaded);
+            }
+            lastKnownPatientAppointments.put(patientId, loaded);
 
-            return appointments;
-        } catch (SQLException e) {
-            throw new HospitalException("Database error: " + e.getMessage(), e);
+            return loaded.map(ArrayList::new);
+        } catch (SQLException | HospitalException e) {
+            return fallback(lastKnownPatientAppointments.get(patientId), e);
         }
     }
 
     // Get appointments for doctor with caching
     public List<Appointment> getDoctorAppointments(int doctorId) throws HospitalException {
+        return new ArrayList<>(readDoctorAppointments(doctorId).getValue());
+    }
+
+    // Same as above, but during a database outage answers from the last good copy, marked stale
+    public ReadResult<List<Appointment>> readDoctorAppointments(int doctorId) throws HospitalException {
+        ReadResult<List<Appointment>> result = loadDoctorAppointments(doctorId);
+        return bookingJournal == null ? result
+                : result.map(list -> withPending(list, bookingJournal.pendingForDoctor(doctorId)));
+    }
+
+    private ReadResult<List<Appointment>> loadDoctorAppointments(int doctorId) throws HospitalException {
+        Deadline deadline = callDeadline();
         try {
-            if (isCacheValid()) {
-                List<Appointment> cached = doctorAppointmentsCache.get(doctorId);
-                if (cached != null) {
-                    return new ArrayList<>(cached);
-                }
+            ReadResult<List<Appointment>> cached = doctorAppointmentsCache.get(doctorId);
+            if (isCacheValid(cached) && !DBConnection.mustReadFromPrimary()) {
+                return cached.map(ArrayList::new);
             }
 
-            List<Appointment> appointments = appointmentDAO.getAppointmentsByDoctorId(doctorId);
-            doctorAppointmentsCache.put(doctorId, appointments);
+            QueryContext.resetReplicaRead();
+            List<Appointment> appointments = DatabaseGuard.call(OperationClass.SCHEDULE_READ, deadline,
+                    () -> appointmentDAO.getAppointmentsByDoctorId(doctorId));
+            ReadResult<List<Appointment>> loaded = ReadResult.fresh(List.copyOf(appointments));
+            if (!QueryContext.wasReplicaRead()) {
+                doctorAppointmentsCache.put(doctorId, loaded);
+            }
+            lastKnownDoctorAppointments.put(doctorId, loaded);
 
-            return appointments;
-        } catch (SQLException e) {
-            throw new HospitalException("Database error: " + e.getMessage(), e);
+            return loaded.map(ArrayList::new);
+        } catch (SQLException | HospitalException e) {
+            return fallback(lastKnownDoctorAppointments.get(doctorId), e);
+        }
+    }
+
+    // The doctor's appointments from today through -Dschedule.upcomingDays ahead, one range query on
+    // (doctor_id, appointment_date) instead of the doctor's whole history; cached like the full list
+    public ReadResult<List<Appointment>> readUpcomingDoctorAppointments(int doctorId) throws HospitalException {
+        LocalDate from = LocalDate.now();
+        LocalDate to = from.plusDays(UPCOMING_DAYS);
+        ReadResult<List<Appointment>> result = loadUpcomingDoctorAppointments(doctorId, from, to);
+        if (bookingJournal == null) {
+            return result;
         }
+        List<Appointment> pending = bookingJournal.pendingForDoctor(doctorId).stream()
+                .filter(a -> !a.getAppointmentDate().isBefore(from) && !a.getAppointmentDate().isAfter(to))
+                .collect(Collectors.toList());
+        return result.map(list -> withPending(list, pending));
     }
 
-    // Cancel appointment
-    public synchronized boolean cancelAppointment(int appointmentId, int patientId) throws HospitalException {
+    private ReadResult<List<Appointment>> loadUpcomingDoctorAppointments(int doctorId, LocalDate from, LocalDate to)
+            throws HospitalException {
+        Deadline deadline = callDeadline();
         try {
-            Appointment appointment = appointmentDAO.getAppointmentById(appointmentId);
+            ReadResult<List<Appointment>> cached = upcomingDoctorAppointmentsCache.get(doctorId);
+            if (isCacheValid(cached) && !DBConnection.mustReadFromPrimary()) {
+                return cached.map(list -> fromDate(list, from));
+            }
+
+            QueryContext.resetReplicaRead();
+            List<Appointment> appointments = DatabaseGuard.call(OperationClass.SCHEDULE_READ, deadline,
+                    () -> appointmentDAO.getAppointmentsByDoctorIdBetween(doctorId, from, to));
+            ReadResult<List<Appointment>> loaded = ReadResult.fresh(List.copyOf(appointments));
+            if (!QueryContext.wasReplicaRead()) {
+                upcomingDoctorAppointmentsCache.put(doctorId, loaded);
+            }
+            lastKnownUpcomingDoctorAppointments.put(doctorId, loaded);
+
+            return loaded.map(ArrayList::new);
+        } catch (SQLException | HospitalException e) {
+            return fallback(lastKnownUpcomingDoctorAppointments.get(doctorId), e).map(list -> fromDate(list, from));
+        }
+    }
+
+    // Copy of the appointments on or after the date (an entry read before midnight still holds yesterday)
+    private static List<Appointment> fromDate(List<Appointment> appointments, LocalDate from) {
+        List<Appointment> result = new ArrayList<>(appointments.size());
+        for (Appointment appointment : appointments) {
+            if (!appointment.getAppointmentDate().isBefore(from)) {
+                result.add(appointment);
+            }
+        }
+        return result;
+    }
+
+    // Days after today covered by readUpcomingDoctorAppointments
+    public int getUpcomingDays() {
+        return UPCOMING_DAYS;
+    }
+
+    // Cancel appointment (the row lock taken by the DAO's SELECT ... FOR UPDATE settles concurrent cancels)
+    public boolean cancelAppointment(long appointmentId, int patientId) throws HospitalException {
+        Deadline deadline = callDeadline();
+        try {
+            // A booking still in the write-behind journal has to reach MySQL before it can be cancelled
+            if (bookingJournal != null && bookingJournal.isPending(appointmentId)) {
+                bookingJournal.awaitFlushed(deadline.earliest(Deadline.afterMillis(JOURNAL_FLUSH_WAIT_MS)));
+            }
+
+            Appointment appointment = DatabaseGuard.call(OperationClass.BOOKING, deadline,
+                    () -> appointmentDAO.getAppointmentById(appointmentId));
 
             if (appointment == null) {
                 throw new HospitalException("Appointment not found!");
@@ -142,42 +504,255 @@ public class AppointmentService {
                 throw new HospitalException("Cannot cancel past appointments!");
             }
 
-            boolean cancelled = appointmentDAO.cancelAppointment(appointmentId);
+            // The freed place goes straight to the first patient on the day's waitlist, if any
+            Cancellation cancellation = DatabaseGuard.callWithRetry(OperationClass.BOOKING, deadline,
+                    () -> appointmentDAO.cancelAppointment(appointmentId));
 
-            if (cancelled) {
+            if (cancellation.isCancelled()) {
+                // A retry of the original request must not be answered with the cancelled booking
+                recentIdempotencyKeys.removeAppointment(appointmentId);
+                scheduleIndex.remove(appointment);
+                rosterCache.invalidate(appointment.getAppointmentDate());
+                utilizationStats.recordCancelled(appointment.getDoctorId(), appointment.getAppointmentDate());
+                if (reminders != null) {
+                    reminders.cancel(appointmentId);
+                }
+                if (cancellation.getPromoted() != null) {
+                    scheduleIndex.add(cancellation.getPromoted());
+                    utilizationStats.recordBooked(cancellation.getPromoted().getDoctorId(),
+                            cancellation.getPromoted().getAppointmentDate());
+                    if (reminders != null) {
+                        reminders.schedule(cancellation.getPromoted());
+                    }
+                }
+                DBConnection.markSessionWrite();
                 clearCache();
             }
 
-            return cancelled;
+            return cancellation.isCancelled();
         } catch (SQLException e) {
             throw new HospitalException("Database error: " + e.getMessage(), e);
         }
     }
 
-    // Get all doctors (with filter by specialization)
-    public List<Doctor> getAllDoctors(String specializationFilter) throws HospitalException {
+    // Queue the patient for a fully booked doctor-day; a cancellation on that day books the freed place for
+    // the first patient in the queue. Returns the patient's position in the queue
+    public int joinWaitlist(int patientId, int doctorId, LocalDate date) throws HospitalException {
+        Deadline deadline = callDeadline();
         try {
-            List<Doctor> doctors = doctorDAO.getAllDoctors();
+            if (date.isBefore(LocalDate.now())) {
+                throw new HospitalException("Cannot join the waitlist for a past date!");
+            }
+            boolean alreadyBooked = readPatientAppointments(patientId).getValue().stream()
+                    .anyMatch(a -> a.getDoctorId() == doctorId && a.getAppointmentDate().equals(date));
+            if (alreadyBooked) {
+                throw new HospitalException("You already have an appointment with this doctor on this date!");
+            }
+            if (placesLeft(OperationClass.BOOKING, deadline, doctorId, date, true) > 0) {
+                throw new HospitalException("Doctor still has places on this date, book an appointment instead!");
+            }
 
-            if (specializationFilter != null && !specializationFilter.isEmpty()) {
-                // Collection Framework: Stream API for filtering
-                return doctors.stream()
-                        .filter(d -> d.getSpecialization().toLowerCase()
-                                .contains(specializationFilter.toLowerCase()))
-                        .collect(Collectors.toList());
+            // Write-behind bookings not yet in MySQL hold places the day counter cannot see yet
+            int pendingPlaces = bookingJournal == null ? 0 : bookingJournal.reservedCount(doctorId, date);
+            int position;
+            try {
+                position = DatabaseGuard.callWithRetry(OperationClass.BOOKING, deadline,
+                        () -> waitlistDAO.joinWaitlist(doctorId, date, patientId, pendingPlaces));
+            } catch (SQLIntegrityConstraintViolationException e) {
+                throw new HospitalException(e.getErrorCode() == MYSQL_NO_REFERENCED_ROW
+                        ? "Patient or doctor not found!" : "You are already on the waitlist for this date!", e);
+            }
+            if (position == 0) {
+                // A place was freed after the check above
+                throw new HospitalException("Doctor still has places on this date, book an appointment instead!");
             }
+            DBConnection.markSessionWrite();
+            return position;
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
 
-            return doctors;
+    public boolean leaveWaitlist(int patientId, int doctorId, LocalDate date) throws HospitalException {
+        try {
+            boolean left = DatabaseGuard.callWithRetry(OperationClass.BOOKING, callDeadline(),
+                    () -> waitlistDAO.leaveWaitlist(doctorId, date, patientId));
+            if (left) {
+                DBConnection.markSessionWrite();
+            }
+            return left;
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
+
+    // The patient's waitlist entries from today onwards, with their current positions
+    public List<WaitlistEntry> getPatientWaitlist(int patientId) throws HospitalException {
+        try {
+            return DatabaseGuard.call(OperationClass.SCHEDULE_READ, callDeadline(),
+                    () -> waitlistDAO.getWaitlistByPatientId(patientId));
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
+
+    // Patients waiting for a place on the doctor's day
+    public int getWaitlistLength(int doctorId, LocalDate date) throws HospitalException {
+        try {
+            return DatabaseGuard.call(OperationClass.SCHEDULE_READ, callDeadline(),
+                    () -> waitlistDAO.getWaitlistLength(doctorId, date));
         } catch (SQLException e) {
             throw new HospitalException("Database error: " + e.getMessage(), e);
         }
     }
 
+    // Get all doctors (with filter by specialization)
+    public List<Doctor> getAllDoctors(String specializationFilter) throws HospitalException {
+        return new ArrayList<>(readAllDoctors(specializationFilter).getValue());
+    }
+
+    // Same as above, marked stale when the directory came from cache during a database outage
+    public ReadResult<List<Doctor>> readAllDoctors(String specializationFilter) throws HospitalException {
+        ReadResult<List<Doctor>> directory = readDoctorDirectory();
+
+        if (specializationFilter != null && !specializationFilter.isEmpty()) {
+            // Collection Framework: Stream API for filtering
+            List<Doctor> filtered = directory.getValue().stream()
+                    .filter(d -> d.getSpecialization().toLowerCase()
+                            .contains(specializationFilter.toLowerCase()))
+                    .collect(Collectors.toList());
+            return directory.isStale() ? ReadResult.fresh(filtered).asStale() : ReadResult.fresh(filtered);
+        }
+
+        return directory;
+    }
+
     // Get all doctors (no filter)
     public List<Doctor> getAllDoctors() throws HospitalException {
         return getAllDoctors(null);
     }
 
+    // Load the doctor directory, served from cache when fresh
+    public List<Doctor> loadDoctorDirectory() throws HospitalException {
+        return new ArrayList<>(readDoctorDirectory().getValue());
+    }
+
+    // Same as above, but during a database outage answers from the last loaded directory, marked stale
+    public ReadResult<List<Doctor>> readDoctorDirectory() throws HospitalException {
+        ReadResult<List<Doctor>> cached = doctorDirectory;
+        if (isCacheValid(cached) && !DBConnection.mustReadFromPrimary()) {
+            return cached.map(ArrayList::new);
+        }
+
+        Deadline deadline = callDeadline();
+        try {
+            QueryContext.resetReplicaRead();
+            List<Doctor> doctors = DatabaseGuard.call(OperationClass.SEARCH, deadline, doctorDAO::getAllDoctors);
+            ReadResult<List<Doctor>> loaded = ReadResult.fresh(Collections.unmodifiableList(new ArrayList<>(doctors)));
+            if (!QueryContext.wasReplicaRead()) {
+                doctorDirectory = loaded;
+            }
+            lastKnownDoctorDirectory = loaded;
+            return loaded.map(ArrayList::new);
+        } catch (SQLException | HospitalException e) {
+            return fallback(lastKnownDoctorDirectory, e);
+        }
+    }
+
+    // Get every appointment (admin export); limited separately so it cannot starve bookings
+    public List<Appointment> getAllAppointments() throws HospitalException {
+        Deadline deadline = callDeadline();
+        try {
+            return DatabaseGuard.call(OperationClass.EXPORT, deadline, appointmentDAO::getAllAppointments);
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
+
+    // Every doctor's appointments on a date, grouped by specialization and doctor. Today's and tomorrow's are
+    // answered from the roster cache; write-behind bookings not yet in MySQL are included
+    public DailyRoster getDailyRoster(LocalDate date) throws HospitalException {
+        DailyRoster roster = loadDailyRoster(date);
+        return bookingJournal == null ? roster : roster.withPending(bookingJournal.pendingOn(date));
+    }
+
+    private DailyRoster loadDailyRoster(LocalDate date) throws HospitalException {
+        DailyRoster cached = DBConnection.mustReadFromPrimary() ? null : rosterCache.get(date);
+        if (cached != null) {
+            return cached;
+        }
+
+        Deadline deadline = callDeadline();
+        long version = rosterCache.version();
+        try {
+            QueryContext.resetReplicaRead();
+            DailyRoster roster = DailyRoster.of(date, DatabaseGuard.call(OperationClass.SCHEDULE_READ, deadline,
+                    () -> appointmentDAO.getAppointmentsOn(date)));
+            if (!QueryContext.wasReplicaRead()) {
+                rosterCache.put(roster, version);
+            }
+            return roster;
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
+
+    // A patient's appointments before today, newest first; settled months come from the history segments
+    public List<Appointment> getPastAppointments(int patientId) throws HospitalException {
+        Deadline deadline = callDeadline();
+        try {
+            return DatabaseGuard.call(OperationClass.SCHEDULE_READ, deadline,
+                    () -> appointmentDAO.getPastAppointmentsByPatientId(patientId));
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
+
+    // Appointments per doctor between two dates (inclusive); settled months are counted from the history
+    // segments. MySQL storage only
+    public Map<Integer, Integer> getAppointmentCountsByDoctor(LocalDate from, LocalDate to) throws HospitalException {
+        MySqlAppointmentDAO mySqlAppointmentDAO = mySqlAppointmentDAO();
+        Deadline deadline = callDeadline();
+        try {
+            return DatabaseGuard.call(OperationClass.EXPORT, deadline,
+                    () -> mySqlAppointmentDAO.countAppointmentsByDoctor(from, to));
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
+
+    // Stream every appointment between two dates (inclusive; null for no bound) from the database into a file,
+    // row by row in constant memory; bookings still in the write-behind journal are left out. Returns the
+    // number of rows written. MySQL storage only
+    public long exportAppointments(Path file, AppointmentExporter.Format format, boolean compress, LocalDate from,
+                                   LocalDate to) throws HospitalException {
+        MySqlAppointmentDAO mySqlAppointmentDAO = mySqlAppointmentDAO();
+        Deadline deadline = callDeadline();
+        try (AppointmentExporter exporter = AppointmentExporter.open(file, format, compress)) {
+            DatabaseGuard.call(OperationClass.EXPORT, deadline, () -> {
+                try {
+                    return mySqlAppointmentDAO.streamAppointments(from, to, exporter::write);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return exporter.getRowCount();
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        } catch (IOException | UncheckedIOException e) {
+            throw new HospitalException("Export failed: " + e.getMessage(), e);
+        }
+    }
+
+    // Streaming and counting over the archive are MySQL only, so they are not on AppointmentDAO
+    private static MySqlAppointmentDAO mySqlAppointmentDAO() throws HospitalException {
+        if (DAOFactory.isInMemory()) {
+            throw new HospitalException("Not available with in-memory storage");
+        }
+        return new MySqlAppointmentDAO();
+    }
+
+    // Small report of an already loaded list; use exportAppointments for full exports
     public void exportAppointmentsToFile(List<Appointment> appointments, String filename) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
             writer.println("Appointment Report - Generated on " + LocalDate.now());
@@ -195,43 +770,289 @@ public class AppointmentService {
     }
 
 
-    // Check doctor availability
+    // Check doctor availability: whether they have a place left on the date for a date-only appointment
     public boolean isDoctorAvailable(int doctorId, LocalDate date) throws HospitalException {
+        return getPlacesLeft(doctorId, date) > 0;
+    }
+
+    // Places the doctor still has on the date for date-only appointments (time slots take none)
+    public int getPlacesLeft(int doctorId, LocalDate date) throws HospitalException {
+        Deadline deadline = callDeadline();
         try {
-            return appointmentDAO.isDoctorAvailable(doctorId, date);
+            return placesLeft(OperationClass.SCHEDULE_READ, deadline, doctorId, date, true);
         } catch (SQLException e) {
             throw new HospitalException("Database error: " + e.getMessage(), e);
         }
     }
 
-    // Multithreading: Async method to prefetch appointments for multiple patients
-    public Future<Map<Integer, List<Appointment>>> prefetchPatientAppointments(List<Integer> patientIds) {
-        return executorService.submit(() -> {
-            Map<Integer, List<Appointment>> results = new ConcurrentHashMap<>();
+    // Date-only appointments the doctor takes per day
+    public int getDailyCapacity(int doctorId) throws HospitalException {
+        try {
+            return dailyCapacity(OperationClass.SCHEDULE_READ, callDeadline(), doctorId);
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
 
-            for (Integer patientId : patientIds) {
-                try {
-                    List<Appointment> appointments = appointmentDAO.getAppointmentsByPatientId(patientId);
-                    results.put(patientId, appointments);
-                } catch (SQLException e) {
-                    System.err.println("Error fetching appointments for patient " + patientId + ": " + e.getMessage());
+    // Change how many date-only appointments the doctor takes per day; days already booked beyond a lowered
+    // capacity keep their appointments
+    public void setDailyCapacity(int doctorId, int capacity) throws HospitalException {
+        if (capacity < 0 || capacity > MAX_DAILY_CAPACITY) {
+            throw new HospitalException("Daily capacity must be between 0 and " + MAX_DAILY_CAPACITY + "!");
+        }
+        Deadline deadline = callDeadline();
+        try {
+            DatabaseGuard.callWithRetry(OperationClass.ACCOUNT, deadline, () -> {
+                doctorDAO.setDailyCapacity(doctorId, capacity);
+                return null;
+            });
+            dailyCapacities.put(doctorId, capacity);
+            DBConnection.markSessionWrite();
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
+
+    // Start times on the date where the doctor has a free slot of the given length, earliest first; the day's
+    // places do not limit them. Answered from the schedule index when it covers the date
+    public List<LocalTime> getFreeSlots(int doctorId, LocalDate date, int durationMinutes) throws HospitalException {
+        checkDuration(durationMinutes);
+        Deadline deadline = callDeadline();
+        try {
+            List<LocalTime> free;
+            if (scheduleIndex.covers(date)) {
+                free = scheduleIndex.freeSlots(doctorId, date, DAY_START, DAY_END, SLOT_MINUTES, durationMinutes);
+            } else {
+                NavigableMap<LocalTime, ScheduleIndex.Slot> booked = new TreeMap<>();
+                for (Appointment a : DatabaseGuard.call(OperationClass.SCHEDULE_READ, deadline,
+                        () -> appointmentDAO.getAppointmentsByDoctorIdBetween(doctorId, date, date))) {
+                    if (a.hasTimeSlot()) {
+                        booked.put(a.getStartTime(), new ScheduleIndex.Slot(a.getEndTime(), a.getId()));
+                    }
                 }
+                free = ScheduleIndex.freeSlots(booked, DAY_START, DAY_END, SLOT_MINUTES, durationMinutes);
             }
+            if (date.equals(LocalDate.now())) {
+                LocalTime now = LocalTime.now();
+                free.removeIf(start -> !start.isAfter(now));
+            }
+            return free;
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
 
-            return results;
-        });
+    // Length of one slot on the booking grid, in minutes
+    public int getSlotMinutes() {
+        return SLOT_MINUTES;
+    }
+
+    // Dates of a doctor's appointments on or after a date, earliest first, at most limit;
+    // answered from the schedule index when it covers the date
+    public List<LocalDate> getBookedDates(int doctorId, LocalDate from, int limit) throws HospitalException {
+        if (scheduleIndex.covers(from)) {
+            return scheduleIndex.upcoming(doctorId, from).stream()
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+        return readDoctorAppointments(doctorId).getValue().stream()
+                .map(Appointment::getAppointmentDate)
+                .filter(date -> !date.isBefore(from))
+                .distinct()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    // Date of a doctor's next appointment on or after a date, or null if there is none
+    public LocalDate getNextAppointmentDate(int doctorId, LocalDate from) throws HospitalException {
+        if (scheduleIndex.covers(from)) {
+            return scheduleIndex.next(doctorId, from);
+        }
+        List<LocalDate> dates = getBookedDates(doctorId, from, 1);
+        return dates.isEmpty() ? null : dates.get(0);
+    }
+
+    // Booked, cancelled and completed appointments for one doctor between two dates (inclusive), from the
+    // in-memory counters; places are the doctor's current daily capacity times the days in the range
+    public Utilization getDoctorUtilization(int doctorId, LocalDate from, LocalDate to) throws HospitalException {
+        try {
+            Doctor doctor = DatabaseGuard.call(OperationClass.SCHEDULE_READ, callDeadline(),
+                    () -> doctorDAO.findDoctorById(doctorId));
+            if (doctor == null) {
+                throw new HospitalException("Doctor not found!");
+            }
+            return utilization(doctor, from, to);
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
+
+    // The doctor's counts per day between two dates (inclusive); days without bookings are left out
+    public List<DoctorDayStats> getDailyStats(int doctorId, LocalDate from, LocalDate to) {
+        return utilizationStats.daily(doctorId, from, to);
+    }
+
+    // Utilization of each of the given doctors, least busy first (ties: fewer bookings, then lower id)
+    public List<Utilization> rankByUtilization(List<Doctor> doctors, LocalDate from, LocalDate to)
+            throws HospitalException {
+        List<Utilization> ranking = new ArrayList<>();
+        for (Doctor doctor : doctors) {
+            ranking.add(utilization(doctor, from, to));
+        }
+        ranking.sort(Comparator.comparingDouble(Utilization::getUtilization)
+                .thenComparingLong(u -> u.getBooked() - u.getCancelled())
+                .thenComparingInt(Utilization::getDoctorId));
+        return ranking;
+    }
+
+    // Doctors of a specialization, least busy first over the date range
+    public List<Utilization> getLeastBusyDoctors(String specialization, LocalDate from, LocalDate to)
+            throws HospitalException {
+        return rankByUtilization(getAllDoctors(specialization), from, to);
+    }
+
+    // One total per specialization over the date range, by specialization
+    public List<Utilization> getSpecializationUtilization(LocalDate from, LocalDate to) throws HospitalException {
+        Map<String, long[]> totals = new TreeMap<>();
+        for (Utilization doctor : rankByUtilization(getAllDoctors(), from, to)) {
+            long[] sum = totals.computeIfAbsent(doctor.getSpecialization(), s -> new long[4]);
+            sum[0] += doctor.getBooked();
+            sum[1] += doctor.getCancelled();
+            sum[2] += doctor.getCompleted();
+            sum[3] += doctor.getPlaces();
+        }
+        List<Utilization> result = new ArrayList<>();
+        totals.forEach((specialization, sum) ->
+                result.add(new Utilization(0, specialization, specialization, sum[0], sum[1], sum[2], sum[3])));
+        return result;
+    }
+
+    private Utilization utilization(Doctor doctor, LocalDate from, LocalDate to) throws HospitalException {
+        long[] totals = utilizationStats.totals(doctor.getId(), from, to);
+        long days = Math.max(0, to.toEpochDay() - from.toEpochDay() + 1);
+        return new Utilization(doctor.getId(), doctor.getName(), doctor.getSpecialization(),
+                totals[0], totals[1], totals[2], days * getDailyCapacity(doctor.getId()));
+    }
+
+    // Snapshot the appointments between two dates into columns for admin analytics, reading a month at a time
+    // so only one month of row objects is held at once
+    public AppointmentAnalytics loadAnalytics(LocalDate from, LocalDate to) throws HospitalException {
+        Deadline deadline = callDeadline();
+        try {
+            AppointmentColumns.Builder columns = new AppointmentColumns.Builder();
+            for (LocalDate start = from; !start.isAfter(to); start = start.withDayOfMonth(1).plusMonths(1)) {
+                LocalDate monthStart = start;
+                LocalDate monthEnd = start.withDayOfMonth(start.lengthOfMonth()).isAfter(to)
+                        ? to : start.withDayOfMonth(start.lengthOfMonth());
+                for (Appointment appointment : DatabaseGuard.call(OperationClass.EXPORT, deadline,
+                        () -> appointmentDAO.getAppointmentsBetween(monthStart, monthEnd))) {
+                    columns.add(appointment);
+                }
+            }
+            List<Doctor> doctors = DatabaseGuard.call(OperationClass.EXPORT, deadline, doctorDAO::getAllDoctors);
+            return new AppointmentAnalytics(columns.build(), from, to, doctors);
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        }
+    }
+
+    // Build the schedule index from every appointment from today onwards (read from the primary, so no
+    // replica lag can hide a booking); until it has loaded, availability checks query the database.
+    // The same rows seed the reminder scheduler
+    public int loadScheduleIndex() throws HospitalException {
+        LocalDate today = LocalDate.now();
+        AtomicInteger count = new AtomicInteger();
+        if (reminders != null) {
+            reminders.beginSeeding();
+        }
+        try {
+            scheduleIndex.load(today, () -> {
+                List<Appointment> appointments = DatabaseGuard.call(OperationClass.EXPORT,
+                        () -> QueryContext.withPrimaryReads(() -> appointmentDAO.getAppointmentsFrom(today)));
+                count.set(appointments.size());
+                if (reminders != null) {
+                    reminders.seed(appointments);
+                }
+                return appointments;
+            });
+        } catch (SQLException e) {
+            throw new HospitalException("Database error: " + e.getMessage(), e);
+        } finally {
+            if (reminders != null) {
+                reminders.endSeeding();
+            }
+        }
+        return count.get();
+    }
+
+    // Multithreading: prefetch appointments for many patients in chunked IN (...) queries fanned out across
+    // the pool; results are stored in the patient cache and failures are reported per patient
+    public CompletableFuture<PrefetchResult> prefetchPatientAppointments(List<Integer> patientIds) {
+        return prefetchPatientAppointments(patientIds, null);
+    }
+
+    // Same as above; progress (if given) is called with (completed chunks, total chunks) as chunks finish
+    public CompletableFuture<PrefetchResult> prefetchPatientAppointments(List<Integer> patientIds,
+                                                                         BiConsumer<Integer, Integer> progress) {
+        Deadline deadline = callDeadline();
+        long start = System.currentTimeMillis();
+        List<Integer> distinctIds = new ArrayList<>(new LinkedHashSet<>(patientIds));
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int i = 0; i < distinctIds.size(); i += PREFETCH_CHUNK_SIZE) {
+            chunks.add(distinctIds.subList(i, Math.min(i + PREFETCH_CHUNK_SIZE, distinctIds.size())));
+        }
+
+        Map<Integer, List<Appointment>> loaded = new ConcurrentHashMap<>();
+        Map<Integer, String> failures = new ConcurrentHashMap<>();
+        AtomicInteger completedChunks = new AtomicInteger();
+        AtomicInteger failedChunks = new AtomicInteger();
+
+        CompletableFuture<?>[] tasks = chunks.stream()
+                .map(chunk -> CompletableFuture.runAsync(() -> {
+                    try {
+                        QueryContext.resetReplicaRead();
+                        Map<Integer, List<Appointment>> byPatient = DatabaseGuard.call(
+                                OperationClass.SCHEDULE_READ, deadline,
+                                () -> appointmentDAO.getAppointmentsByPatientIds(chunk));
+                        boolean fromPrimary = !QueryContext.wasReplicaRead();
+                        for (Integer patientId : chunk) {
+                            List<Appointment> appointments = byPatient.getOrDefault(patientId, new ArrayList<>());
+                            loaded.put(patientId, appointments);
+                            ReadResult<List<Appointment>> read = ReadResult.fresh(List.copyOf(appointments));
+                            if (fromPrimary) {
+                                patientAppointmentsCache.put(patientId, read);
+                            }
+                            lastKnownPatientAppointments.put(patientId, read);
+                        }
+                    } catch (SQLException | HospitalException e) {
+                        failedChunks.incrementAndGet();
+                        for (Integer patientId : chunk) {
+                            failures.put(patientId, e.getMessage());
+                        }
+                    } finally {
+                        int done = completedChunks.incrementAndGet();
+                        if (progress != null) {
+                            progress.accept(done, chunks.size());
+                        }
+                    }
+                }, executorService))
+                .toArray(CompletableFuture[]::new);
+
+        return CompletableFuture.allOf(tasks).thenApply(v -> new PrefetchResult(
+                loaded, failures, chunks.size(), failedChunks.get(), System.currentTimeMillis() - start));
     }
 
     // Multithreading: Async method to check multiple doctors' availability
     public Future<Map<Integer, Boolean>> checkMultipleDoctorsAvailability(List<Integer> doctorIds, LocalDate date) {
+        Deadline deadline = callDeadline();
         return executorService.submit(() -> {
             Map<Integer, Boolean> results = new ConcurrentHashMap<>();
 
             for (Integer doctorId : doctorIds) {
                 try {
-                    boolean available = appointmentDAO.isDoctorAvailable(doctorId, date);
+                    boolean available = placesLeft(OperationClass.SCHEDULE_READ, deadline, doctorId, date, true) > 0;
                     results.put(doctorId, available);
-                } catch (SQLException e) {
+                } catch (SQLException | HospitalException e) {
                     System.err.println("Error checking availability for doctor " + doctorId + ": " + e.getMessage());
                     results.put(doctorId, false);
                 }
@@ -241,19 +1062,190 @@ public class AppointmentService {
         });
     }
 
-    // Cache management
-    private boolean isCacheValid() {
-        return (System.currentTimeMillis() - cacheTimestamp) < CACHE_EXPIRY_MS;
+    // Look up the appointment booked under an idempotency key (null if none, or no key given)
+    private Appointment findIdempotentBooking(byte[] keyHash, String cacheKey, Deadline deadline)
+            throws HospitalException, SQLException {
+        if (keyHash == null) {
+            return null;
+        }
+
+        Instant notBefore = Instant.now().minus(IDEMPOTENCY_TTL);
+        Long appointmentId = DatabaseGuard.call(OperationClass.BOOKING, deadline,
+                () -> idempotencyDAO.findAppointmentId(keyHash, notBefore));
+        if (appointmentId == null) {
+            return null;
+        }
+
+        Appointment appointment = DatabaseGuard.call(OperationClass.BOOKING, deadline,
+                () -> appointmentDAO.getAppointmentById(appointmentId));
+        if (appointment == null) {
+            throw new HospitalException("This booking request was already processed, "
+                    + "but the appointment has since been cancelled.");
+        }
+        recentIdempotencyKeys.put(cacheKey, appointment);
+        return appointment;
+    }
+
+    // Places left on the doctor's day: capacity minus the day's date-only bookings, counted by the schedule index when
+    // it covers the date and by the database's day counter otherwise; includeJournal also subtracts
+    // write-behind bookings not yet in MySQL
+    private int placesLeft(OperationClass operation, Deadline deadline, int doctorId, LocalDate date,
+                           boolean includeJournal) throws SQLException, HospitalException {
+        int capacity = dailyCapacity(operation, deadline, doctorId);
+        int booked = scheduleIndex.covers(date) ? scheduleIndex.bookedCount(doctorId, date)
+                : DatabaseGuard.call(operation, deadline, () -> appointmentDAO.getBookedCount(doctorId, date));
+        if (includeJournal && bookingJournal != null) {
+            booked += bookingJournal.reservedCount(doctorId, date);
+        }
+        return Math.max(0, capacity - booked);
+    }
+
+    private static void checkTimeSlot(LocalDate date, LocalTime startTime, int durationMinutes)
+            throws HospitalException {
+        checkDuration(durationMinutes);
+        if (startTime == null) {
+            throw new HospitalException("Start time is required!");
+        }
+        long offset = Duration.between(DAY_START, startTime).toMinutes();
+        if (startTime.isBefore(DAY_START) || startTime.plusMinutes(durationMinutes).isAfter(DAY_END)
+                || startTime.plusMinutes(durationMinutes).isBefore(startTime)) {
+            throw new HospitalException("Appointments must be between " + DAY_START + " and " + DAY_END + "!");
+        }
+        if (startTime.getSecond() != 0 || startTime.getNano() != 0 || offset % SLOT_MINUTES != 0) {
+            throw new HospitalException("Start time must be on a " + SLOT_MINUTES + "-minute slot from "
+                    + DAY_START + "!");
+        }
+        if (!LocalDateTime.of(date, startTime).isAfter(LocalDateTime.now())) {
+            throw new HospitalException("Cannot book appointment in the past!");
+        }
     }
 
-    private static synchronized void clearCache() {
+    private static void checkDuration(int durationMinutes) throws HospitalException {
+        if (durationMinutes <= 0 || durationMinutes % SLOT_MINUTES != 0) {
+            throw new HospitalException("Duration must be a positive multiple of " + SLOT_MINUTES + " minutes!");
+        }
+    }
+
+    private int dailyCapacity(OperationClass operation, Deadline deadline, int doctorId)
+            throws SQLException, HospitalException {
+        Integer capacity = dailyCapacities.get(doctorId);
+        if (capacity == null) {
+            capacity = DatabaseGuard.call(operation, deadline, () -> doctorDAO.getDailyCapacity(doctorId));
+            dailyCapacities.putIfAbsent(doctorId, capacity);
+        }
+        return capacity;
+    }
+
+    // Add journaled bookings that have not reached MySQL yet (skipping any that just did), in date order
+    private static List<Appointment> withPending(List<Appointment> stored, List<Appointment> pending) {
+        if (pending.isEmpty()) {
+            return stored;
+        }
+        Set<Long> storedIds = stored.stream().map(Appointment::getId).collect(Collectors.toSet());
+        List<Appointment> merged = new ArrayList<>(stored);
+        for (Appointment appointment : pending) {
+            if (!storedIds.contains(appointment.getId())) {
+                merged.add(appointment);
+            }
+        }
+        merged.sort(Comparator.comparing(Appointment::getAppointmentDate).thenComparingLong(Appointment::getId));
+        return merged;
+    }
+
+    // During a database outage, answer with the last good copy (if any) marked stale; otherwise report the error
+    private static <T> ReadResult<T> fallback(ReadResult<T> lastKnown, Exception e) throws HospitalException {
+        if (lastKnown != null && DatabaseGuard.isOutage(e)) {
+            return lastKnown.asStale();
+        }
+        if (e instanceof HospitalException) {
+            throw (HospitalException) e;
+        }
+        throw new HospitalException("Database error: " + e.getMessage(), e);
+    }
+
+    // A key must only ever replay the same booking: same patient, doctor, date and time slot
+    private Appointment checkReplay(Appointment previous, Appointment requested) throws HospitalException {
+        if (previous.getPatientId() != requested.getPatientId()
+                || previous.getDoctorId() != requested.getDoctorId()
+                || !previous.getAppointmentDate().equals(requested.getAppointmentDate())
+                || !Objects.equals(previous.getStartTime(), requested.getStartTime())) {
+            throw new HospitalException("Idempotency key was already used for a different booking request.");
+        }
+        return previous;
+    }
+
+    // Keys are stored as a fixed 16-byte digest to keep the dedup table compact
+    private static byte[] hashIdempotencyKey(String idempotencyKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(idempotencyKey.getBytes(StandardCharsets.UTF_8));
+            return Arrays.copyOf(digest, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Purge expired keys in the background at most once per purge interval
+    private void purgeExpiredIdempotencyKeysIfDue() {
+        long now = System.currentTimeMillis();
+        long last = lastIdempotencyPurge.get();
+        if (now - last < IDEMPOTENCY_PURGE_INTERVAL_MS || !lastIdempotencyPurge.compareAndSet(last, now)) {
+            return;
+        }
+        executorService.submit(() -> {
+            try {
+                int purged = DatabaseGuard.call(OperationClass.EXPORT,
+                        () -> idempotencyDAO.purgeExpired(Instant.now().minus(IDEMPOTENCY_TTL)));
+                if (purged > 0 && Boolean.getBoolean("debug")) {
+                    System.out.println("Purged " + purged + " expired idempotency keys");
+                }
+            } catch (SQLException | HospitalException e) {
+                System.err.println("Error purging idempotency keys: " + e.getMessage());
+            }
+        });
+    }
+
+    // Deadline for a call starting now
+    private Deadline callDeadline() {
+        return fixedDeadline.earliest(Deadline.afterMillis(callTimeoutMs));
+    }
+
+    // Cache management: an entry is good for CACHE_EXPIRY_MS from its own read, so entries warmed at startup
+    // last as long as any other
+    private static boolean isCacheValid(ReadResult<?> cached) {
+        return cached != null && cached.getAgeMillis() < CACHE_EXPIRY_MS;
+    }
+
+    private static void clearCache() {
         doctorAppointmentsCache.clear();
         patientAppointmentsCache.clear();
-        cacheTimestamp = System.currentTimeMillis();
+        upcomingDoctorAppointmentsCache.clear();
+    }
+
+    // Access-ordered map that drops its least recently used key beyond LAST_KNOWN_SIZE
+    private static <K, V> Map<K, V> lastKnownMap() {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LAST_KNOWN_SIZE;
+            }
+        });
+    }
+
+    // Drop the cached doctor directory (called when a doctor registers)
+    public static void invalidateDoctorDirectory() {
+        doctorDirectory = null;
     }
 
-    // Shutdown executor service
+    // Shutdown executor service and drain the booking journal
     public static void shutdown() {
+        if (bookingJournal != null) {
+            bookingJournal.close();
+        }
+        if (reminders != null) {
+            reminders.shutdown();
+        }
+        utilizationStats.shutdown();
         executorService.shutdown();
         try {
             if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -0,0 +1,169 @@
+package service;
+
+import dao.DBConnection;
+import dao.QueryContext;
+import model.Appointment;
+import model.Doctor;
+import model.WaitlistEntry;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CompletableFuture facade over AppointmentService.
+ * Every call runs on its own virtual thread, so blocking JDBC calls are cheap to fan out.
+ * A semaphore bounds how many of them touch the database at once
+ * (-Ddb.asyncPermits=N, defaults to the connection pool size).
+ * Failures complete the future exceptionally with the original HospitalException.
+ */
+public class AsyncAppointmentService {
+    private static final int DB_PERMITS = Integer.getInteger("db.asyncPermits", DBConnection.getPoolSize());
+
+    private static final ExecutorService virtualExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private static final Semaphore dbPermits = new Semaphore(DB_PERMITS, true);
+
+    private final AppointmentService appointmentService;
+
+    public AsyncAppointmentService() {
+        this(new AppointmentService());
+    }
+
+    public AsyncAppointmentService(AppointmentService appointmentService) {
+        this.appointmentService = appointmentService;
+    }
+
+    public CompletableFuture<Appointment> bookAppointment(int patientId, int doctorId, LocalDate appointmentDate) {
+        return submit(() -> appointmentService.bookAppointment(patientId, doctorId, appointmentDate));
+    }
+
+    public CompletableFuture<Appointment> bookAppointment(int patientId, int doctorId, LocalDate appointmentDate,
+                                                          String idempotencyKey) {
+        return submit(() -> appointmentService.bookAppointment(patientId, doctorId, appointmentDate, idempotencyKey));
+    }
+
+    public CompletableFuture<Appointment> bookAppointment(int patientId, int doctorId, LocalDate appointmentDate,
+                                                          LocalTime startTime, int durationMinutes) {
+        return submit(() -> appointmentService.bookAppointment(patientId, doctorId, appointmentDate, startTime,
+                durationMinutes));
+    }
+
+    public CompletableFuture<List<Appointment>> getPatientAppointments(int patientId) {
+        return submit(() -> appointmentService.getPatientAppointments(patientId));
+    }
+
+    public CompletableFuture<List<Appointment>> getDoctorAppointments(int doctorId) {
+        return submit(() -> appointmentService.getDoctorAppointments(doctorId));
+    }
+
+    public CompletableFuture<Boolean> cancelAppointment(long appointmentId, int patientId) {
+        return submit(() -> appointmentService.cancelAppointment(appointmentId, patientId));
+    }
+
+    public CompletableFuture<Integer> joinWaitlist(int patientId, int doctorId, LocalDate date) {
+        return submit(() -> appointmentService.joinWaitlist(patientId, doctorId, date));
+    }
+
+    public CompletableFuture<Boolean> leaveWaitlist(int patientId, int doctorId, LocalDate date) {
+        return submit(() -> appointmentService.leaveWaitlist(patientId, doctorId, date));
+    }
+
+    public CompletableFuture<List<WaitlistEntry>> getPatientWaitlist(int patientId) {
+        return submit(() -> appointmentService.getPatientWaitlist(patientId));
+    }
+
+    public CompletableFuture<Integer> getWaitlistLength(int doctorId, LocalDate date) {
+        return submit(() -> appointmentService.getWaitlistLength(doctorId, date));
+    }
+
+    public CompletableFuture<DailyRoster> getDailyRoster(LocalDate date) {
+        return submit(() -> appointmentService.getDailyRoster(date));
+    }
+
+    public CompletableFuture<List<Doctor>> getAllDoctors(String specializationFilter) {
+        return submit(() -> appointmentService.getAllDoctors(specializationFilter));
+    }
+
+    public CompletableFuture<List<Doctor>> getAllDoctors() {
+        return submit(appointmentService::getAllDoctors);
+    }
+
+    public CompletableFuture<Boolean> isDoctorAvailable(int doctorId, LocalDate date) {
+        return submit(() -> appointmentService.isDoctorAvailable(doctorId, date));
+    }
+
+    public CompletableFuture<Integer> getPlacesLeft(int doctorId, LocalDate date) {
+        return submit(() -> appointmentService.getPlacesLeft(doctorId, date));
+    }
+
+    public CompletableFuture<Void> exportAppointmentsToFile(List<Appointment> appointments, String filename) {
+        return submit(() -> {
+            appointmentService.exportAppointmentsToFile(appointments, filename);
+            return null;
+        });
+    }
+
+    // Batched prefetch; chunks already run in parallel on the service pool
+    public CompletableFuture<PrefetchResult> prefetchPatientAppointments(List<Integer> patientIds) {
+        return appointmentService.prefetchPatientAppointments(patientIds);
+    }
+
+    // One virtual thread per doctor; a failed check reports the doctor as unavailable
+    public CompletableFuture<Map<Integer, Boolean>> checkMultipleDoctorsAvailability(List<Integer> doctorIds,
+                                                                                     LocalDate date) {
+        Map<Integer, Boolean> results = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] checks = doctorIds.stream()
+                .map(doctorId -> isDoctorAvailable(doctorId, date)
+                        .exceptionally(e -> false)
+                        .thenAccept(available -> results.put(doctorId, available)))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(checks).thenApply(v -> results);
+    }
+
+    // Run a service call on a virtual thread once a DB permit is free, under the caller's session
+    private <T> CompletableFuture<T> submit(ServiceCall<T> call) {
+        String session = QueryContext.getSession();
+        return CompletableFuture.supplyAsync(() -> {
+            QueryContext.bindSession(session);
+            try {
+                dbPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(new HospitalException("Interrupted while waiting for database access", e));
+            }
+            try {
+                return call.call();
+            } catch (HospitalException e) {
+                throw new CompletionException(e);
+            } finally {
+                dbPermits.release();
+                QueryContext.unbindSession();
+            }
+        }, virtualExecutor);
+    }
+
+    // Shutdown the virtual-thread executor
+    public static void shutdown() {
+        virtualExecutor.shutdown();
+        try {
+            if (!virtualExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                virtualExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            virtualExecutor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ServiceCall<T> {
+        T call() throws HospitalException;
+    }
+}
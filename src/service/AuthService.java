@@ -1,5 +1,9 @@
 package service;
 
+import dao.DAOFactory;
+import dao.DBConnection;
+import dao.Deadline;
+import dao.QueryContext;
 import dao.UserDAO;
 import dao.PatientDAO;
 import dao.DoctorDAO;
@@ -8,8 +12,14 @@ import model.Patient;
 import model.Doctor;
 import util.ValidationUtil; // Added import for ValidationUtil
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class AuthService {
     private final UserDAO userDAO;
@@ -19,17 +29,55 @@ public class AuthService {
     // Collection Framework: ConcurrentHashMap for thread-safe session management
     private static final ConcurrentHashMap<String, User> activeUsers = new ConcurrentHashMap<>();
 
+    // Users who signed in successfully (salted password hash) and their profiles, kept across logout so they
+    // can still sign in and see their dashboard while the database is unreachable
+    private static final ConcurrentHashMap<String, CachedLogin> knownLogins = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, Patient> knownPatients = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, Doctor> knownDoctors = new ConcurrentHashMap<>();
+    private static final SecureRandom saltSource = new SecureRandom();
+
+    // Serializes registrations and password changes across every view of this service (withDeadline and
+    // withTimeout return new instances); a ReentrantLock rather than a monitor, so a virtual thread waiting on
+    // JDBC inside it does not pin its carrier
+    private static final ReentrantLock accountLock = new ReentrantLock();
+
+    // Default per-call timeout for every service call (-Dservice.callTimeoutMs=N, 0 = no deadline)
+    private static final long DEFAULT_CALL_TIMEOUT_MS = Long.getLong("service.callTimeoutMs", 0);
+
+    // Deadline applied to each call: a fixed absolute deadline, a per-call timeout, or both
+    private final Deadline fixedDeadline;
+    private final long callTimeoutMs;
+
     public AuthService() {
-        this.userDAO = new UserDAO();
-        this.patientDAO = new PatientDAO();
-        this.doctorDAO = new DoctorDAO();
+        this(Deadline.none(), DEFAULT_CALL_TIMEOUT_MS);
+    }
+
+    private AuthService(Deadline fixedDeadline, long callTimeoutMs) {
+        this.userDAO = DAOFactory.createUserDAO();
+        this.patientDAO = DAOFactory.createPatientDAO();
+        this.doctorDAO = DAOFactory.createDoctorDAO();
+        this.fixedDeadline = fixedDeadline;
+        this.callTimeoutMs = callTimeoutMs;
+    }
+
+    // A view of this service whose calls all finish by the given deadline
+    public AuthService withDeadline(Deadline deadline) {
+        return new AuthService(fixedDeadline.earliest(deadline), callTimeoutMs);
+    }
+
+    // A view of this service where every call gets its own timeout, counted from when the call starts
+    public AuthService withTimeout(Duration timeout) {
+        return new AuthService(fixedDeadline, timeout.toMillis());
     }
 
     // Change password
-    public synchronized boolean changePassword(int userId, String oldPassword, String newPassword)
+    public boolean changePassword(int userId, String oldPassword, String newPassword)
             throws HospitalException {
+        Deadline deadline = callDeadline();
+        accountLock.lock();
         try {
-            User user = userDAO.findUserById(userId);
+            User user = DatabaseGuard.call(OperationClass.ACCOUNT, deadline,
+                    () -> QueryContext.withPrimaryReads(() -> userDAO.findUserById(userId)));
 
             if (user == null) {
                 throw new HospitalException("User not found!");
@@ -43,73 +91,115 @@ public class AuthService {
                 throw new HospitalException("New password must be at least 6 characters!");
             }
 
-            boolean changed = userDAO.updatePassword(userId, newPassword);
+            boolean changed = DatabaseGuard.call(OperationClass.ACCOUNT, deadline,
+                    () -> userDAO.updatePassword(userId, newPassword));
 
             if (changed) {
+                DBConnection.markSessionWrite();
+
                 // Update cached user
                 user.setPassword(newPassword);
                 activeUsers.put(user.getUsername(), user);
+                rememberLogin(user, newPassword);
             }
 
             return changed;
         } catch (SQLException e) {
             throw new HospitalException("Database error: " + e.getMessage(), e);
+        } finally {
+            accountLock.unlock();
         }
     }
 
     // Register new patient
-    public synchronized User registerPatient(String username, String password, String name, int age, String gender)
+    public User registerPatient(String username, String password, String name, int age, String gender)
             throws HospitalException {
+        Deadline deadline = callDeadline();
+        accountLock.lock();
         try {
             // Validate username doesn't exist
-            if (userDAO.usernameExists(username)) {
+            if (DatabaseGuard.call(OperationClass.ACCOUNT, deadline, () -> userDAO.usernameExists(username))) {
                 throw new HospitalException("Username already exists!");
             }
 
             // Create user account
             User user = new User(username, password, "PATIENT");
-            if (!userDAO.registerUser(user)) {
+            if (!DatabaseGuard.call(OperationClass.ACCOUNT, deadline, () -> userDAO.registerUser(user))) {
                 throw new HospitalException("Failed to create user account");
             }
 
             // Create patient profile
             Patient patient = new Patient(name, age, gender, user.getId());
-            if (!patientDAO.addPatient(patient)) {
-                throw new HospitalException("Failed to create patient profile");
+            try {
+                if (!DatabaseGuard.call(OperationClass.ACCOUNT, deadline, () -> patientDAO.addPatient(patient))) {
+                    throw new HospitalException("Failed to create patient profile");
+                }
+            } catch (HospitalException | SQLException | RuntimeException e) {
+                discardUser(user);
+                throw e;
             }
 
-            // Add to active users cache
+            // Add to active users cache; reads right after registering must see the new profile
             activeUsers.put(username, user);
+            rememberLogin(user, password);
+            QueryContext.bindSession(username);
+            DBConnection.markSessionWrite();
 
             return user;
         } catch (SQLException e) {
             throw new HospitalException("Database error during registration: " + e.getMessage(), e);
+        } finally {
+            accountLock.unlock();
         }
     }
 
     // Register new doctor
-    public synchronized User registerDoctor(String username, String password, String name, String specialization)
+    public User registerDoctor(String username, String password, String name, String specialization)
             throws HospitalException {
+        Deadline deadline = callDeadline();
+        accountLock.lock();
         try {
-            if (userDAO.usernameExists(username)) {
+            if (DatabaseGuard.call(OperationClass.ACCOUNT, deadline, () -> userDAO.usernameExists(username))) {
                 throw new HospitalException("Username already exists!");
             }
 
             User user = new User(username, password, "DOCTOR");
-            if (!userDAO.registerUser(user)) {
+            if (!DatabaseGuard.call(OperationClass.ACCOUNT, deadline, () -> userDAO.registerUser(user))) {
                 throw new HospitalException("Failed to create user account");
             }
 
             Doctor doctor = new Doctor(name, specialization, user.getId());
-            if (!doctorDAO.addDoctor(doctor)) {
-                throw new HospitalException("Failed to create doctor profile");
+            try {
+                if (!DatabaseGuard.call(OperationClass.ACCOUNT, deadline, () -> doctorDAO.addDoctor(doctor))) {
+                    throw new HospitalException("Failed to create doctor profile");
+                }
+            } catch (HospitalException | SQLException | RuntimeException e) {
+                discardUser(user);
+                throw e;
             }
+            AppointmentService.invalidateDoctorDirectory();
 
             activeUsers.put(username, user);
+            rememberLogin(user, password);
+            QueryContext.bindSession(username);
+            DBConnection.markSessionWrite();
 
             return user;
         } catch (SQLException e) {
             throw new HospitalException("Database error during registration: " + e.getMessage(), e);
+        } finally {
+            accountLock.unlock();
+        }
+    }
+
+    // Undo a registration whose profile could not be written, so the username is free to register again; runs
+    // without the caller's deadline, which may be what ran out
+    private void discardUser(User user) {
+        try {
+            DatabaseGuard.call(OperationClass.ACCOUNT, () -> userDAO.deleteUser(user.getId()));
+        } catch (HospitalException | SQLException e) {
+            System.err.println("Warning: could not remove user " + user.getUsername()
+                    + " after a failed registration - " + e.getMessage());
         }
     }
 
@@ -119,17 +209,29 @@ public class AuthService {
             // Check cache first
             User cachedUser = activeUsers.get(username);
             if (cachedUser != null && cachedUser.getPassword().equals(password)) {
+                QueryContext.bindSession(username);
                 return cachedUser;
             }
 
-            // Query database
-            User user = userDAO.findUserByCredentials(username, password);
+            // Query database; while it is unreachable, users who signed in before are checked against the cache
+            User user;
+            try {
+                user = DatabaseGuard.call(OperationClass.ACCOUNT, callDeadline(),
+                        () -> userDAO.findUserByCredentials(username, password));
+            } catch (SQLException | HospitalException e) {
+                if (!DatabaseGuard.isOutage(e)) {
+                    throw e;
+                }
+                user = loginFromCache(username, password);
+            }
             if (user == null) {
                 throw new HospitalException("Invalid username or password!");
             }
 
-            // Add to cache
+            // Add to cache and bind the session used for read-your-writes routing
             activeUsers.put(username, user);
+            rememberLogin(user, password);
+            QueryContext.bindSession(username);
 
             return user;
         } catch (SQLException e) {
@@ -140,34 +242,94 @@ public class AuthService {
     // Logout user
     public void logout(String username) {
         activeUsers.remove(username);
+        QueryContext.unbindSession();
     }
 
     // Get patient by user ID
     public Patient getPatientByUserId(int userId) throws HospitalException {
+        Deadline deadline = callDeadline();
+        Patient patient;
         try {
-            Patient patient = patientDAO.findPatientByUserId(userId);
-            if (patient == null) {
-                throw new HospitalException("Patient profile not found");
-            }
-            return patient;
-        } catch (SQLException e) {
-            throw new HospitalException("Database error: " + e.getMessage(), e);
+            patient = DatabaseGuard.call(OperationClass.ACCOUNT, deadline,
+                    () -> patientDAO.findPatientByUserId(userId));
+        } catch (SQLException | HospitalException e) {
+            patient = profileFromCache(knownPatients, userId, e);
+        }
+        if (patient == null) {
+            throw new HospitalException("Patient profile not found");
         }
+        knownPatients.put(userId, patient);
+        return patient;
     }
 
     // Get doctor by user ID
     public Doctor getDoctorByUserId(int userId) throws HospitalException {
+        Deadline deadline = callDeadline();
+        Doctor doctor;
         try {
-            Doctor doctor = doctorDAO.findDoctorByUserId(userId);
-            if (doctor == null) {
-                throw new HospitalException("Doctor profile not found");
-            }
-            return doctor;
-        } catch (SQLException e) {
-            throw new HospitalException("Database error: " + e.getMessage(), e);
+            doctor = DatabaseGuard.call(OperationClass.ACCOUNT, deadline,
+                    () -> doctorDAO.findDoctorByUserId(userId));
+        } catch (SQLException | HospitalException e) {
+            doctor = profileFromCache(knownDoctors, userId, e);
+        }
+        if (doctor == null) {
+            throw new HospitalException("Doctor profile not found");
+        }
+        knownDoctors.put(userId, doctor);
+        return doctor;
+    }
+
+    // Offline sign-in: the user must have signed in with this password before (null = wrong password); the
+    // user is rebuilt with the password just verified, as a database login would return it
+    private static User loginFromCache(String username, String password) throws HospitalException {
+        CachedLogin login = knownLogins.get(username);
+        if (login == null) {
+            throw new HospitalException("The database is temporarily unavailable and this account has not "
+                    + "signed in recently. Please try again shortly.");
+        }
+        if (!MessageDigest.isEqual(login.passwordHash, hashPassword(login.salt, password))) {
+            return null;
+        }
+        User cached = login.user;
+        return new User(cached.getId(), cached.getUsername(), password, cached.getRole());
+    }
+
+    // Offline profile lookup; errors other than an outage, or an unknown profile, are reported as before
+    private static <T> T profileFromCache(ConcurrentHashMap<Integer, T> known, int userId, Exception e)
+            throws HospitalException {
+        T profile = known.get(userId);
+        if (profile != null && DatabaseGuard.isOutage(e)) {
+            return profile;
+        }
+        if (e instanceof HospitalException) {
+            throw (HospitalException) e;
+        }
+        throw new HospitalException("Database error: " + e.getMessage(), e);
+    }
+
+    // Only the salted hash is kept; the cached copy of the user carries no password
+    private static void rememberLogin(User user, String password) {
+        byte[] salt = new byte[16];
+        saltSource.nextBytes(salt);
+        User withoutPassword = new User(user.getId(), user.getUsername(), null, user.getRole());
+        knownLogins.put(user.getUsername(), new CachedLogin(withoutPassword, salt, hashPassword(salt, password)));
+    }
+
+    private static byte[] hashPassword(byte[] salt, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 
+    // Deadline for a call starting now
+    private Deadline callDeadline() {
+        return fixedDeadline.earliest(Deadline.afterMillis(callTimeoutMs));
+    }
+
     // Get active users count (for monitoring)
     public static int getActiveUsersCount() {
         return activeUsers.size();
@@ -176,5 +338,20 @@ public class AuthService {
     // Clear all cached users (for maintenance)
     public static void clearCache() {
         activeUsers.clear();
+        knownLogins.clear();
+        knownPatients.clear();
+        knownDoctors.clear();
+    }
+
+    private static class CachedLogin {
+        private final User user;
+        private final byte[] salt;
+        private final byte[] passwordHash;
+
+        private CachedLogin(User user, byte[] salt, byte[] passwordHash) {
+            this.user = user;
+            this.salt = salt;
+            this.passwordHash = passwordHash;
+        }
     }
 }
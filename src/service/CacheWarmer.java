@@ -0,0 +1,129 @@
+package service;
+
+import dao.AppointmentDAO;
+import dao.DAOFactory;
+import dao.DBConnection;
+import model.Doctor;
+import util.StartupTimer;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Loads the caches the first requests after a restart would otherwise miss.
+ * Configured with system properties:
+ * -Dwarmup.enabled=false      skip warm-up entirely
+ * -Dwarmup.patientDays=30     look-back window for "recently active" patients
+ * -Dwarmup.maxPatients=500    cap on prefetched patients
+ * -Dwarmup.threads=4          warm-up executor size (never more than the DB pool)
+ */
+public class CacheWarmer {
+    private final AppointmentService appointmentService;
+    private final AppointmentDAO appointmentDAO;
+    private final StartupTimer timer;
+    // The window the doctor dashboard shows first (-Dschedule.upcomingDays)
+    private final int upcomingDays;
+
+    private final int patientDays = Integer.getInteger("warmup.patientDays", 30);
+    private final int maxPatients = Integer.getInteger("warmup.maxPatients", 500);
+    private final int threads = Math.max(1, Math.min(Integer.getInteger("warmup.threads", 4), DBConnection.getPoolSize()));
+
+    public CacheWarmer(AppointmentService appointmentService, StartupTimer timer) {
+        this.appointmentService = appointmentService;
+        this.upcomingDays = appointmentService.getUpcomingDays();
+        this.appointmentDAO = DAOFactory.createAppointmentDAO();
+        this.timer = timer;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("warmup.enabled", "true"));
+    }
+
+    // Run all warm-up phases in parallel and wait for them; failures are reported, not fatal
+    public void warmUp() {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            LocalDate today = LocalDate.now();
+
+            CompletableFuture<Void> doctors = timed("Doctor directory", () -> {
+                List<Doctor> directory = appointmentService.loadDoctorDirectory();
+                return directory.size() + " doctors";
+            }, executor);
+
+            CompletableFuture<Void> schedules = phase("Doctor schedules", executor,
+                    () -> DatabaseGuard.call(OperationClass.SCHEDULE_READ,
+                            () -> appointmentDAO.getDoctorIdsWithAppointmentsBetween(today, today.plusDays(upcomingDays))),
+                    doctorIds -> CompletableFuture.allOf(doctorIds.stream()
+                            .map(doctorId -> CompletableFuture.runAsync(() -> {
+                                try {
+                                    appointmentService.readUpcomingDoctorAppointments(doctorId);
+                                } catch (HospitalException e) {
+                                    throw new CompletionException(e);
+                                }
+                            }, executor))
+                            .toArray(CompletableFuture[]::new))
+                            .thenApply(v -> doctorIds.size() + " doctors, next " + upcomingDays + " days"));
+
+            CompletableFuture<Void> patients = phase("Recent patients", executor,
+                    () -> DatabaseGuard.call(OperationClass.SCHEDULE_READ, () -> appointmentDAO.getActivePatientIdsBetween(
+                            today.minusDays(patientDays), today.plusDays(upcomingDays), maxPatients)),
+                    patientIds -> appointmentService.prefetchPatientAppointments(patientIds)
+                            .thenApply(result -> result.getAppointments().size() + " patients"
+                                    + (result.isComplete() ? "" : ", " + result.getFailures().size() + " failed")));
+
+            CompletableFuture.allOf(doctors, schedules, patients).join();
+        } catch (CompletionException e) {
+            System.err.println("Warning: cache warm-up incomplete - " + e.getCause().getMessage());
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            timer.record("Cache warm-up (wall clock)", start, threads + " threads");
+        }
+    }
+
+    // A phase that loads a list of ids, then fans out work over them
+    private <T> CompletableFuture<Void> phase(String name, ExecutorService executor, Loader<List<T>> idLoader,
+                                              Function<List<T>, CompletableFuture<String>> fanOut) {
+        long start = System.nanoTime();
+        return CompletableFuture
+                .supplyAsync(() -> {
+                    try {
+                        return idLoader.load();
+                    } catch (SQLException | HospitalException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor)
+                .thenCompose(fanOut)
+                .thenAccept(detail -> timer.record(name, start, detail));
+    }
+
+    private CompletableFuture<Void> timed(String name, Loader<String> loader, ExecutorService executor) {
+        long start = System.nanoTime();
+        return CompletableFuture
+                .supplyAsync(() -> {
+                    try {
+                        return loader.load();
+                    } catch (SQLException | HospitalException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor)
+                .thenAccept(detail -> timer.record(name, start, detail));
+    }
+
+    @FunctionalInterface
+    private interface Loader<T> {
+        T load() throws SQLException, HospitalException;
+    }
+}
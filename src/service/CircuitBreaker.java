@@ -0,0 +1,137 @@
+package service;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker in front of the database.
+ * CLOSED: calls pass; -Dbreaker.failureThreshold consecutive outage failures (default 5) open it.
+ * OPEN: calls fail immediately for -Dbreaker.openMs (default 10000).
+ * HALF_OPEN: up to -Dbreaker.halfOpenProbes calls (default 1) are let through as probes; a probe that
+ * reaches the database closes the breaker, one that fails opens it again.
+ * Only failures that mean the database is unreachable or too slow count: connection errors
+ * (SQLState class 08) and timeouts. Constraint violations and deadlocks show the database is up.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold = Math.max(1, Integer.getInteger("breaker.failureThreshold", 5));
+    private final long openMs = Long.getLong("breaker.openMs", 10000);
+    private final int halfOpenProbes = Math.max(1, Integer.getInteger("breaker.halfOpenProbes", 1));
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int probesInFlight;
+    private long stateChangedAt = System.currentTimeMillis();
+
+    // Metrics: how often each state was entered, and calls refused while open
+    private final Map<State, AtomicLong> transitions = new EnumMap<>(State.class);
+    private final AtomicLong rejected = new AtomicLong();
+
+    public CircuitBreaker() {
+        for (State s : State.values()) {
+            transitions.put(s, new AtomicLong());
+        }
+    }
+
+    // Ask to run a call; false means the breaker is open and the call must fail fast
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - stateChangedAt < openMs) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= halfOpenProbes) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    // The call reached the database (even if it failed for an unrelated reason)
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            probesInFlight = 0;
+            transitionTo(State.CLOSED);
+        }
+    }
+
+    // The call failed because the database is unreachable or too slow
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = 0;
+            transitionTo(State.OPEN);
+            return;
+        }
+        if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    // The call never reached the database (e.g. rejected by a limiter); frees a probe slot without a verdict
+    public synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    // Whether a failure means the database itself is unavailable
+    public static boolean isOutage(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if (current instanceof SQLTimeoutException
+                    || current instanceof SQLTransientConnectionException
+                    || current instanceof SQLNonTransientConnectionException
+                    || current instanceof SQLRecoverableException
+                    || (current.getSQLState() != null && current.getSQLState().startsWith("08"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getStateChangedAt() {
+        return stateChangedAt;
+    }
+
+    // Times the breaker has entered the given state
+    public long getTransitionCount(State target) {
+        return transitions.get(target).get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private void transitionTo(State next) {
+        State previous = state;
+        state = next;
+        stateChangedAt = System.currentTimeMillis();
+        consecutiveFailures = 0;
+        transitions.get(next).incrementAndGet();
+
+        if (next == State.OPEN && previous == State.CLOSED) {
+            System.err.println("Warning: database unavailable - serving cached data, changes disabled");
+        } else if (next == State.CLOSED) {
+            System.err.println("Database connection restored");
+        } else if (Boolean.getBoolean("debug")) {
+            System.err.println("Database circuit " + previous + " -> " + next);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package service;
+
+import java.time.format.DateTimeFormatter;
+
+// Prints reminders to standard output
+public class ConsoleReminderSink implements ReminderSink {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("dd-MMM-yyyy HH:mm");
+
+    @Override
+    public void send(Reminder reminder) {
+        System.out.println("🔔 Reminder: appointment #" + reminder.getAppointmentId() + " (patient "
+                + reminder.getPatientId() + ", doctor " + reminder.getDoctorId() + ") at "
+                + reminder.getAppointmentTime().format(FORMAT));
+    }
+}
@@ -0,0 +1,102 @@
+package service;
+
+import model.Appointment;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One day's appointments across the hospital, grouped by specialization and then doctor: specializations in
+ * alphabetical order, doctors by name, and each doctor's appointments by start time (those without a time slot
+ * last), then id. Immutable once built.
+ */
+public final class DailyRoster {
+    private static final Comparator<Appointment> ROSTER_ORDER = Comparator
+            .comparing(Appointment::getDoctorSpecialization, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+            .thenComparing(Appointment::getDoctorName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+            .thenComparingInt(Appointment::getDoctorId)
+            .thenComparing(Appointment::getStartTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingLong(Appointment::getId);
+
+    private final LocalDate date;
+    private final List<Appointment> appointments;
+    private final Map<String, Map<Integer, List<Appointment>>> bySpecialization;
+    private final long loadedAtMillis;
+
+    private DailyRoster(LocalDate date, List<Appointment> appointments, long loadedAtMillis) {
+        List<Appointment> sorted = new ArrayList<>(appointments);
+        sorted.sort(ROSTER_ORDER);
+
+        Map<String, Map<Integer, List<Appointment>>> groups = new LinkedHashMap<>();
+        for (Appointment appointment : sorted) {
+            String specialization = appointment.getDoctorSpecialization() == null
+                    ? "" : appointment.getDoctorSpecialization();
+            groups.computeIfAbsent(specialization, s -> new LinkedHashMap<>())
+                    .computeIfAbsent(appointment.getDoctorId(), d -> new ArrayList<>())
+                    .add(appointment);
+        }
+        groups.replaceAll((specialization, doctors) -> {
+            doctors.replaceAll((doctorId, list) -> Collections.unmodifiableList(list));
+            return Collections.unmodifiableMap(doctors);
+        });
+
+        this.date = date;
+        this.appointments = Collections.unmodifiableList(sorted);
+        this.bySpecialization = Collections.unmodifiableMap(groups);
+        this.loadedAtMillis = loadedAtMillis;
+    }
+
+    // Roster of the given appointments, all on the date
+    public static DailyRoster of(LocalDate date, List<Appointment> appointments) {
+        return new DailyRoster(date, appointments, System.currentTimeMillis());
+    }
+
+    // The same roster plus appointments not stored yet (skipping any already on it)
+    public DailyRoster withPending(List<Appointment> pending) {
+        Set<Long> ids = new HashSet<>();
+        for (Appointment appointment : appointments) {
+            ids.add(appointment.getId());
+        }
+        List<Appointment> merged = new ArrayList<>(appointments);
+        for (Appointment appointment : pending) {
+            if (ids.add(appointment.getId())) {
+                merged.add(appointment);
+            }
+        }
+        return merged.size() == appointments.size() ? this : new DailyRoster(date, merged, loadedAtMillis);
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int size() {
+        return appointments.size();
+    }
+
+    public boolean isEmpty() {
+        return appointments.isEmpty();
+    }
+
+    // Every appointment in roster order
+    public List<Appointment> getAppointments() {
+        return appointments;
+    }
+
+    // Specialization -> doctor id -> that doctor's appointments, all in roster order
+    public Map<String, Map<Integer, List<Appointment>>> getBySpecialization() {
+        return bySpecialization;
+    }
+
+    // When the rows were read from the database
+    public long getLoadedAtMillis() {
+        return loadedAtMillis;
+    }
+}
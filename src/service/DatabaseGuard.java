@@ -0,0 +1,138 @@
+package service;
+
+import dao.DBConnection;
+import dao.Deadline;
+import dao.QueryContext;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+// Single path from the service layer to the DAOs: every DAO call passes the circuit breaker and its class's limiter
+public final class DatabaseGuard {
+    private static final Map<OperationClass, AdaptiveLimiter> limiters = new EnumMap<>(OperationClass.class);
+    private static final RetryPolicy writeRetryPolicy = new RetryPolicy();
+    private static final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    // Every call holds one pool permit, so the classes together never want more connections than the pool
+    // has; every class but BOOKING also holds a shared permit, which leaves -Dlimiter.bookingReserve
+    // connections that only bookings can use
+    private static final int POOL_SIZE = Math.max(1, DBConnection.getPoolSize());
+    private static final int BOOKING_RESERVE = Math.max(0, Math.min(POOL_SIZE - 1,
+            Integer.getInteger("limiter.bookingReserve", Math.max(1, POOL_SIZE / 5))));
+    private static final Semaphore poolPermits = new Semaphore(POOL_SIZE, true);
+    private static final Semaphore sharedPermits = new Semaphore(POOL_SIZE - BOOKING_RESERVE, true);
+
+    static {
+        for (OperationClass operationClass : OperationClass.values()) {
+            limiters.put(operationClass, operationClass == OperationClass.BOOKING
+                    ? new AdaptiveLimiter(operationClass, POOL_SIZE, poolPermits)
+                    : new AdaptiveLimiter(operationClass, POOL_SIZE - BOOKING_RESERVE, sharedPermits, poolPermits));
+        }
+    }
+
+    private DatabaseGuard() {
+        throw new AssertionError("Utility class cannot be instantiated");
+    }
+
+    // Run a DAO call under the limiter for its operation class, with no deadline
+    public static <T> T call(OperationClass operationClass, DbCall<T> call) throws HospitalException, SQLException {
+        return call(operationClass, Deadline.none(), call);
+    }
+
+    // Run a DAO call under the limiter for its operation class; every statement it issues gets the
+    // remaining time as its query timeout and is cancelled when the deadline passes
+    public static <T> T call(OperationClass operationClass, Deadline deadline, DbCall<T> call)
+            throws HospitalException, SQLException {
+        if (deadline.isExpired()) {
+            throw new HospitalException("Request timed out before reaching the database");
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            throw new DatabaseUnavailableException();
+        }
+
+        AdaptiveLimiter limiter = limiters.get(operationClass);
+        try {
+            limiter.acquire(deadline.remainingMillis());
+        } catch (HospitalException e) {
+            circuitBreaker.onAbandoned();
+            throw e;
+        }
+
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            T result = QueryContext.withDeadline(deadline, call::call);
+            succeeded = true;
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (SQLException e) {
+            if (isOwnDeadline(e, deadline)) {
+                // The caller ran out of time; that says nothing about the database's health
+                circuitBreaker.onAbandoned();
+                throw new HospitalException("Request timed out waiting for the database", e);
+            }
+            if (CircuitBreaker.isOutage(e)) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            circuitBreaker.onAbandoned();
+            throw e;
+        } finally {
+            limiter.release(System.nanoTime() - start, succeeded);
+        }
+    }
+
+    // A timeout raised because the call's own deadline passed (statement cancelled or query timeout hit at
+    // the deadline, or no pooled connection before it), rather than because the database stopped answering
+    private static boolean isOwnDeadline(SQLException e, Deadline deadline) {
+        if (!deadline.isExpired()) {
+            return false;
+        }
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if (current instanceof SQLTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Whether a failed call should be answered from cache: the breaker refused it, or the database
+    // could not be reached
+    public static boolean isOutage(Exception e) {
+        return e instanceof DatabaseUnavailableException
+                || (e instanceof SQLException && CircuitBreaker.isOutage((SQLException) e));
+    }
+
+    // Same as call(), but transient failures (deadlocks, lock wait timeouts) are retried with jittered backoff;
+    // each attempt takes its own limiter slot so no slot is held while backing off
+    public static <T> T callWithRetry(OperationClass operationClass, Deadline deadline, DbCall<T> call)
+            throws HospitalException, SQLException {
+        return writeRetryPolicy.execute(deadline, () -> call(operationClass, deadline, call));
+    }
+
+    // Retry metrics for booking and cancellation writes
+    public static RetryPolicy getWriteRetryPolicy() {
+        return writeRetryPolicy;
+    }
+
+    // Breaker state and transition counts (for monitoring)
+    public static CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    // Connections only bookings can use
+    public static int getBookingReserve() {
+        return BOOKING_RESERVE;
+    }
+
+    // Limiter for an operation class (for monitoring)
+    public static AdaptiveLimiter getLimiter(OperationClass operationClass) {
+        return limiters.get(operationClass);
+    }
+}
@@ -0,0 +1,11 @@
+package service;
+
+// Thrown without touching the database while the circuit breaker is open
+public class DatabaseUnavailableException extends HospitalException {
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseUnavailableException() {
+        super("The database is temporarily unavailable; changes are disabled until it recovers. "
+                + "Please try again shortly.");
+    }
+}
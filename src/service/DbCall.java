@@ -0,0 +1,9 @@
+package service;
+
+import java.sql.SQLException;
+
+// A single DAO call, run through DatabaseGuard
+@FunctionalInterface
+public interface DbCall<T> {
+    T call() throws SQLException;
+}
@@ -0,0 +1,40 @@
+package service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Appends one tab-separated line per reminder to -Dreminders.file (default reminders.log)
+public class FileReminderSink implements ReminderSink {
+    private final BufferedWriter writer;
+
+    public FileReminderSink() throws IOException {
+        this.writer = Files.newBufferedWriter(Paths.get(System.getProperty("reminders.file", "reminders.log")),
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void send(Reminder reminder) throws IOException {
+        writer.write(reminder.getSendTime() + "\t" + reminder.getAppointmentId() + "\t" + reminder.getPatientId()
+                + "\t" + reminder.getDoctorId() + "\t" + reminder.getAppointmentTime() + "\t"
+                + reminder.getLeadTime());
+        writer.newLine();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Error closing reminder file: " + e.getMessage());
+        }
+    }
+}
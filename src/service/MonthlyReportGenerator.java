@@ -0,0 +1,255 @@
+package service;
+
+import dao.AppointmentDAO;
+import dao.DAOFactory;
+import dao.DBConnection;
+import model.Appointment;
+import model.Doctor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Month-end schedule reports: one text file per doctor (doctor-<id>.txt) listing the month's appointments day
+ * by day, plus index.csv with every doctor's totals and file, all in the month's directory under the given
+ * root. Each doctor's appointments come from one range query on (doctor_id, appointment_date) through the
+ * EXPORT limiter; doctors are queried and rendered in parallel on -Dreport.threads (default 4, never more
+ * than the DB pool). A doctor whose report fails is listed in the index with the error; the others still run.
+ */
+public class MonthlyReportGenerator {
+    private static final String RULE = "=".repeat(60);
+
+    private final AppointmentService appointmentService;
+    private final AppointmentDAO appointmentDAO;
+    private final int threads = Math.max(1, Math.min(Integer.getInteger("report.threads", 4),
+            DBConnection.getPoolSize()));
+
+    public MonthlyReportGenerator(AppointmentService appointmentService) {
+        this.appointmentService = appointmentService;
+        this.appointmentDAO = DAOFactory.createAppointmentDAO();
+    }
+
+    // Write every doctor's report for the month into root/<yyyy-MM>/ and the index last; returns one entry
+    // per doctor, in index order (specialization, then name)
+    public List<DoctorReport> generate(YearMonth month, Path root) throws HospitalException {
+        Path directory = root.resolve(month.toString());
+        List<Doctor> doctors = appointmentService.loadDoctorDirectory();
+        doctors.sort(Comparator.comparing(Doctor::getSpecialization, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(Doctor::getName, String.CASE_INSENSITIVE_ORDER)
+                .thenComparingInt(Doctor::getId));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Files.createDirectories(directory);
+
+            List<Future<DoctorReport>> futures = new ArrayList<>();
+            for (Doctor doctor : doctors) {
+                futures.add(executor.submit(() -> report(doctor, month, directory)));
+            }
+
+            List<DoctorReport> reports = new ArrayList<>();
+            for (Future<DoctorReport> future : futures) {
+                reports.add(future.get());
+            }
+            writeIndex(directory.resolve("index.csv"), reports);
+            return reports;
+        } catch (IOException e) {
+            throw new HospitalException("Report failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HospitalException("Report generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new HospitalException("Report failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // One doctor's report; failures are returned, not thrown, so the other doctors carry on
+    private DoctorReport report(Doctor doctor, YearMonth month, Path directory) {
+        String fileName = "doctor-" + doctor.getId() + ".txt";
+        try {
+            List<Appointment> appointments = DatabaseGuard.call(OperationClass.EXPORT,
+                    () -> appointmentDAO.getAppointmentsByDoctorIdBetween(doctor.getId(), month.atDay(1),
+                            month.atEndOfMonth()));
+            DoctorReport report = summarize(doctor, fileName, appointments);
+            try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(fileName),
+                    StandardCharsets.UTF_8)) {
+                writer.append(render(doctor, month, appointments, report));
+            }
+            return report;
+        } catch (SQLException | HospitalException | IOException e) {
+            return new DoctorReport(doctor, fileName, 0, 0, 0, e.getMessage());
+        }
+    }
+
+    private static DoctorReport summarize(Doctor doctor, String fileName, List<Appointment> appointments) {
+        Set<LocalDate> days = new HashSet<>();
+        Set<Integer> patients = new HashSet<>();
+        for (Appointment appointment : appointments) {
+            days.add(appointment.getAppointmentDate());
+            patients.add(appointment.getPatientId());
+        }
+        return new DoctorReport(doctor, fileName, appointments.size(), days.size(), patients.size(), null);
+    }
+
+    // The month day by day (appointments arrive sorted by date and id), then the totals
+    private static String render(Doctor doctor, YearMonth month, List<Appointment> appointments,
+                                 DoctorReport report) {
+        StringBuilder text = new StringBuilder(256 + appointments.size() * 48);
+        text.append("Monthly Schedule Report - ")
+                .append(month.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH)).append(' ')
+                .append(month.getYear()).append('\n')
+                .append("Dr. ").append(doctor.getName()).append(" (").append(doctor.getSpecialization())
+                .append("), doctor #").append(doctor.getId()).append('\n')
+                .append("Generated on ").append(LocalDate.now()).append('\n')
+                .append(RULE).append('\n');
+
+        int start = 0;
+        while (start < appointments.size()) {
+            LocalDate date = appointments.get(start).getAppointmentDate();
+            int end = start;
+            while (end < appointments.size() && appointments.get(end).getAppointmentDate().equals(date)) {
+                end++;
+            }
+            renderDay(text, new ArrayList<>(appointments.subList(start, end)));
+            start = end;
+        }
+        if (appointments.isEmpty()) {
+            text.append("No appointments this month.\n");
+        }
+
+        text.append(RULE).append('\n')
+                .append("Appointments: ").append(report.getAppointments())
+                .append(" on ").append(report.getDays()).append(" day(s), ")
+                .append(report.getPatients()).append(" patient(s)\n");
+        return text.toString();
+    }
+
+    // One day's appointments, timed ones by start time first, then those for any time that day
+    private static void renderDay(StringBuilder text, List<Appointment> day) {
+        day.sort(Comparator.comparing(Appointment::getStartTime, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparingLong(Appointment::getId));
+        LocalDate date = day.get(0).getAppointmentDate();
+        text.append('\n').append(date).append(' ')
+                .append(date.getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.ENGLISH)).append('\n');
+        for (Appointment appointment : day) {
+            text.append("  ");
+            if (appointment.hasTimeSlot()) {
+                text.append(appointment.getStartTime()).append(" - ").append(appointment.getEndTime());
+            } else {
+                text.append("Any time     ");
+            }
+            text.append("  #").append(appointment.getId())
+                    .append("  ").append(appointment.getPatientName()).append('\n');
+        }
+    }
+
+    private static void writeIndex(Path file, List<DoctorReport> reports) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.append("doctor_id,doctor_name,specialization,appointments,days,patients,file,error\n");
+            for (DoctorReport report : reports) {
+                writer.append(String.valueOf(report.getDoctorId())).append(',')
+                        .append(csv(report.getDoctorName())).append(',')
+                        .append(csv(report.getSpecialization())).append(',')
+                        .append(String.valueOf(report.getAppointments())).append(',')
+                        .append(String.valueOf(report.getDays())).append(',')
+                        .append(String.valueOf(report.getPatients())).append(',')
+                        .append(report.isFailed() ? "" : report.getFileName()).append(',')
+                        .append(csv(report.getError())).append('\n');
+            }
+        }
+    }
+
+    // Quoted when it holds a comma, quote or line break; null is an empty field
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // One doctor's line in the index
+    public static final class DoctorReport {
+        private final Doctor doctor;
+        private final String fileName;
+        private final int appointments;
+        private final int days;
+        private final int patients;
+        private final String error;
+
+        private DoctorReport(Doctor doctor, String fileName, int appointments, int days, int patients,
+                             String error) {
+            this.doctor = doctor;
+            this.fileName = fileName;
+            this.appointments = appointments;
+            this.days = days;
+            this.patients = patients;
+            this.error = error;
+        }
+
+        public int getDoctorId() {
+            return doctor.getId();
+        }
+
+        public String getDoctorName() {
+            return doctor.getName();
+        }
+
+        public String getSpecialization() {
+            return doctor.getSpecialization();
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public int getAppointments() {
+            return appointments;
+        }
+
+        // Days with at least one appointment
+        public int getDays() {
+            return days;
+        }
+
+        // Distinct patients seen
+        public int getPatients() {
+            return patients;
+        }
+
+        // Why the report could not be written, or null
+        public String getError() {
+            return error;
+        }
+
+        public boolean isFailed() {
+            return error != null;
+        }
+    }
+}
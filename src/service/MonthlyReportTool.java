@@ -0,0 +1,57 @@
+package service;
+
+import dao.DBConnection;
+import dao.ShardRouter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Writes every doctor's schedule report for a month (the first argument, yyyy-MM; default last month) into
+ * -Dreport.dir (default "reports")/<yyyy-MM>/, with index.csv listing them. Exits with status 1 if any doctor's
+ * report failed.
+ *
+ * Usage: java -Dreport.threads=8 -Dlimiter.export.maxLimit=8 -cp bin service.MonthlyReportTool 2024-05
+ */
+public class MonthlyReportTool {
+    public static void main(String[] args) {
+        Path root = Paths.get(System.getProperty("report.dir", "reports"));
+        boolean failed = false;
+        long start = System.nanoTime();
+
+        try {
+            YearMonth month = args.length > 0 ? YearMonth.parse(args[0]) : YearMonth.now().minusMonths(1);
+            MonthlyReportGenerator generator = new MonthlyReportGenerator(new AppointmentService());
+            List<MonthlyReportGenerator.DoctorReport> reports = generator.generate(month, root);
+
+            long appointments = 0;
+            for (MonthlyReportGenerator.DoctorReport report : reports) {
+                appointments += report.getAppointments();
+                if (report.isFailed()) {
+                    failed = true;
+                    System.err.println("  Dr. " + report.getDoctorName() + " (#" + report.getDoctorId() + "): "
+                            + report.getError());
+                }
+            }
+            System.out.printf("✓ %d doctor reports (%d appointments) for %s written to %s in %.1f s on %d threads%n",
+                    reports.size(), appointments, month, root.resolve(month.toString()).toAbsolutePath(),
+                    (System.nanoTime() - start) / 1e9, generator.getThreads());
+        } catch (DateTimeParseException e) {
+            System.err.println("Invalid month (expected yyyy-MM): " + args[0]);
+            failed = true;
+        } catch (HospitalException e) {
+            System.err.println("Report generation failed: " + e.getMessage());
+            failed = true;
+        } finally {
+            AppointmentService.shutdown();
+            ShardRouter.closeConnections();
+            DBConnection.closeConnection();
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
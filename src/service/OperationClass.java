@@ -0,0 +1,43 @@
+package service;
+
+// Classes of database work that get separate concurrency limits, so one kind cannot starve another
+public enum OperationClass {
+    BOOKING(4, 1, 16, 250),
+    SCHEDULE_READ(6, 1, 32, 200),
+    SEARCH(3, 1, 16, 300),
+    EXPORT(1, 1, 2, 5000),
+    ACCOUNT(4, 1, 16, 250);
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyMs;
+
+    OperationClass(int initialLimit, int minLimit, int maxLimit, long targetLatencyMs) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyMs = targetLatencyMs;
+    }
+
+    // Each value can be overridden with e.g. -Dlimiter.booking.maxLimit=8
+    public int getInitialLimit() {
+        return Integer.getInteger(propertyPrefix() + "initialLimit", initialLimit);
+    }
+
+    public int getMinLimit() {
+        return Integer.getInteger(propertyPrefix() + "minLimit", minLimit);
+    }
+
+    public int getMaxLimit() {
+        return Integer.getInteger(propertyPrefix() + "maxLimit", maxLimit);
+    }
+
+    public long getTargetLatencyMs() {
+        return Long.getLong(propertyPrefix() + "targetLatencyMs", targetLatencyMs);
+    }
+
+    private String propertyPrefix() {
+        return "limiter." + name().toLowerCase().replace("_", "") + ".";
+    }
+}
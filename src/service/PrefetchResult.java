@@ -0,0 +1,61 @@
+package service;
+
+import model.Appointment;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Outcome of a batched prefetch: what was loaded, which patients failed and why
+public class PrefetchResult {
+    private final Map<Integer, List<Appointment>> appointments;
+    private final Map<Integer, String> failures;
+    private final int totalChunks;
+    private final int failedChunks;
+    private final long elapsedMillis;
+
+    public PrefetchResult(Map<Integer, List<Appointment>> appointments, Map<Integer, String> failures,
+                          int totalChunks, int failedChunks, long elapsedMillis) {
+        this.appointments = Collections.unmodifiableMap(appointments);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.totalChunks = totalChunks;
+        this.failedChunks = failedChunks;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    // Appointments per successfully loaded patient (patients with none map to an empty list)
+    public Map<Integer, List<Appointment>> getAppointments() {
+        return appointments;
+    }
+
+    // Error message per patient whose chunk failed
+    public Map<Integer, String> getFailures() {
+        return failures;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public int getFailedChunks() {
+        return failedChunks;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "PrefetchResult{" +
+                "loaded=" + appointments.size() +
+                ", failed=" + failures.size() +
+                ", chunks=" + (totalChunks - failedChunks) + "/" + totalChunks +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+}
@@ -0,0 +1,50 @@
+package service;
+
+import java.time.Instant;
+import java.util.function.Function;
+
+// A read served either live from the database or, during an outage, from the last good copy
+public final class ReadResult<T> {
+    private final T value;
+    private final boolean stale;
+    private final long asOfMillis;
+
+    private ReadResult(T value, boolean stale, long asOfMillis) {
+        this.value = value;
+        this.stale = stale;
+        this.asOfMillis = asOfMillis;
+    }
+
+    // A value just read from the database; a cache keeps the result and hands out map() copies, so its age
+    // stays that of the read
+    public static <T> ReadResult<T> fresh(T value) {
+        return new ReadResult<>(value, false, System.currentTimeMillis());
+    }
+
+    // The same value, marked as served from cache because the database could not be reached
+    public ReadResult<T> asStale() {
+        return new ReadResult<>(value, true, asOfMillis);
+    }
+
+    // The same result with its value transformed; staleness and age are kept
+    public <R> ReadResult<R> map(Function<T, R> mapper) {
+        return new ReadResult<>(mapper.apply(value), stale, asOfMillis);
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    // When the value was last read from the database
+    public Instant getAsOf() {
+        return Instant.ofEpochMilli(asOfMillis);
+    }
+
+    public long getAgeMillis() {
+        return System.currentTimeMillis() - asOfMillis;
+    }
+}
@@ -0,0 +1,56 @@
+package service;
+
+import model.Appointment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Bounded LRU of recently seen idempotency keys, so retries are answered without a database lookup
+public class RecentKeyCache {
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entry> entries;
+
+    public RecentKeyCache(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > RecentKeyCache.this.maxEntries;
+            }
+        };
+    }
+
+    // Appointment recorded for the key, or null if unknown or expired
+    public synchronized Appointment get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.storedAt > ttlMs) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.appointment;
+    }
+
+    public synchronized void put(String key, Appointment appointment) {
+        entries.put(key, new Entry(appointment, System.currentTimeMillis()));
+    }
+
+    // Forget every key recorded for the appointment (after it is cancelled)
+    public synchronized void removeAppointment(long appointmentId) {
+        entries.values().removeIf(entry -> entry.appointment.getId() == appointmentId);
+    }
+
+    private static class Entry {
+        private final Appointment appointment;
+        private final long storedAt;
+
+        private Entry(Appointment appointment, long storedAt) {
+            this.appointment = appointment;
+            this.storedAt = storedAt;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// A notification that an appointment is coming up, sent leadTime before it starts
+public class Reminder {
+    private final long appointmentId;
+    private final int patientId;
+    private final int doctorId;
+    private final LocalDateTime appointmentTime;
+    private final Duration leadTime;
+
+    public Reminder(long appointmentId, int patientId, int doctorId, LocalDateTime appointmentTime,
+                    Duration leadTime) {
+        this.appointmentId = appointmentId;
+        this.patientId = patientId;
+        this.doctorId = doctorId;
+        this.appointmentTime = appointmentTime;
+        this.leadTime = leadTime;
+    }
+
+    public long getAppointmentId() {
+        return appointmentId;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    // Start of the appointment (the start of bookable hours for one without a time slot)
+    public LocalDateTime getAppointmentTime() {
+        return appointmentTime;
+    }
+
+    public Duration getLeadTime() {
+        return leadTime;
+    }
+
+    public LocalDateTime getSendTime() {
+        return appointmentTime.minus(leadTime);
+    }
+
+    @Override
+    public String toString() {
+        return "Reminder{" +
+                "appointmentId=" + appointmentId +
+                ", patientId=" + patientId +
+                ", doctorId=" + doctorId +
+                ", appointmentTime=" + appointmentTime +
+                ", leadTime=" + leadTime +
+                '}';
+    }
+}
@@ -0,0 +1,225 @@
+package service;
+
+import model.Appointment;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a reminder at each configured lead time before every upcoming appointment (-Dreminders.enabled=true,
+ * -Dreminders.offsets=24h,2h). Fed by the service's book and cancel events and seeded once at startup from
+ * the appointments the schedule index loads, so the appointments table is never scanned for due reminders.
+ * Pending reminders sit in a hierarchical timing wheel ticking every -Dreminders.tickMs, which keeps
+ * scheduling and cancelling O(1) with millions pending. Reminders already due when scheduled are skipped.
+ */
+public class ReminderScheduler {
+    private static final long TICK_MS = Math.max(10, Long.getLong("reminders.tickMs", 1000));
+    private static final int WHEEL_SIZE = 512;
+
+    private final List<Duration> offsets;
+    // Time used for appointments without a time slot
+    private final LocalTime defaultTime;
+    private final ReminderSink sink;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Guarded by this
+    private final TimingWheel<Reminder> wheel;
+    private final Map<Long, List<TimingWheel.Timer<Reminder>>> timersByAppointment = new HashMap<>();
+    // Reminders due within the wheel's current tick, sent on the next one
+    private final List<Reminder> dueNow = new ArrayList<>();
+    // Appointments cancelled while the startup seed was being read, which the seed must not schedule
+    private boolean seeding;
+    private final Set<Long> cancelledDuringSeed = new HashSet<>();
+
+    private final ScheduledExecutorService ticker;
+
+    ReminderScheduler(List<Duration> offsets, LocalTime defaultTime, ReminderSink sink) {
+        this.offsets = offsets;
+        this.defaultTime = defaultTime;
+        this.sink = sink;
+        this.wheel = new TimingWheel<>(TICK_MS, WHEEL_SIZE, System.currentTimeMillis());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reminder-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Start the scheduler when -Dreminders.enabled=true; null otherwise
+    static ReminderScheduler startIfEnabled(LocalTime defaultTime) {
+        if (!Boolean.getBoolean("reminders.enabled")) {
+            return null;
+        }
+        List<Duration> offsets = parseOffsets(System.getProperty("reminders.offsets", "24h,2h"));
+        try {
+            return new ReminderScheduler(offsets, defaultTime, createSink(System.getProperty("reminders.sink", "console")));
+        } catch (Exception e) {
+            System.err.println("Reminders disabled, cannot create sink: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Schedule the appointment's reminders; an appointment already scheduled is left alone
+    public synchronized void schedule(Appointment appointment) {
+        if (appointment.getId() <= 0 || timersByAppointment.containsKey(appointment.getId())) {
+            return;
+        }
+        LocalDateTime start = LocalDateTime.of(appointment.getAppointmentDate(),
+                appointment.hasTimeSlot() ? appointment.getStartTime() : defaultTime);
+        long now = System.currentTimeMillis();
+
+        List<TimingWheel.Timer<Reminder>> timers = new ArrayList<>(offsets.size());
+        for (Duration offset : offsets) {
+            Reminder reminder = new Reminder(appointment.getId(), appointment.getPatientId(),
+                    appointment.getDoctorId(), start, offset);
+            long sendAt = reminder.getSendTime().atZone(zone).toInstant().toEpochMilli();
+            if (sendAt <= now) {
+                continue;
+            }
+            TimingWheel.Timer<Reminder> timer = wheel.schedule(sendAt, reminder);
+            if (timer == null) {
+                dueNow.add(reminder);
+            } else {
+                timers.add(timer);
+            }
+        }
+        if (!timers.isEmpty()) {
+            timersByAppointment.put(appointment.getId(), timers);
+        }
+    }
+
+    // Drop the appointment's pending reminders
+    public synchronized void cancel(long appointmentId) {
+        List<TimingWheel.Timer<Reminder>> timers = timersByAppointment.remove(appointmentId);
+        if (timers != null) {
+            timers.forEach(wheel::cancel);
+        }
+        dueNow.removeIf(reminder -> reminder.getAppointmentId() == appointmentId);
+        if (seeding) {
+            cancelledDuringSeed.add(appointmentId);
+        }
+    }
+
+    // Call before reading the startup seed, then seed() with what was read, then endSeeding()
+    public synchronized void beginSeeding() {
+        seeding = true;
+        cancelledDuringSeed.clear();
+    }
+
+    public synchronized void seed(List<Appointment> appointments) {
+        for (Appointment appointment : appointments) {
+            if (!cancelledDuringSeed.contains(appointment.getId())) {
+                schedule(appointment);
+            }
+        }
+    }
+
+    public synchronized void endSeeding() {
+        seeding = false;
+        cancelledDuringSeed.clear();
+    }
+
+    // Appointments with reminders still to send
+    public synchronized int pendingAppointments() {
+        return timersByAppointment.size();
+    }
+
+    public void shutdown() {
+        ticker.shutdown();
+        try {
+            ticker.awaitTermination(TICK_MS * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sink.close();
+    }
+
+    // Advance the wheel and deliver what fell due, outside the lock
+    private void tick() {
+        List<Reminder> due;
+        synchronized (this) {
+            due = new ArrayList<>(dueNow);
+            dueNow.clear();
+            due.addAll(wheel.advance(System.currentTimeMillis()));
+            for (Reminder reminder : due) {
+                List<TimingWheel.Timer<Reminder>> timers = timersByAppointment.get(reminder.getAppointmentId());
+                if (timers != null) {
+                    timers.removeIf(timer -> timer.getValue() == reminder);
+                    if (timers.isEmpty()) {
+                        timersByAppointment.remove(reminder.getAppointmentId());
+                    }
+                }
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        for (Reminder reminder : due) {
+            try {
+                sink.send(reminder);
+            } catch (Exception e) {
+                System.err.println("Reminder for appointment " + reminder.getAppointmentId() + " failed: "
+                        + e.getMessage());
+            }
+        }
+        try {
+            sink.flush();
+        } catch (Exception e) {
+            System.err.println("Reminder sink flush failed: " + e.getMessage());
+        }
+    }
+
+    // "24h,2h,30m,1d" -> lead times, longest first; unreadable entries are skipped with a warning
+    static List<Duration> parseOffsets(String spec) {
+        List<Duration> offsets = new ArrayList<>();
+        for (String token : spec.split(",")) {
+            String value = token.trim().toLowerCase();
+            if (value.isEmpty()) {
+                continue;
+            }
+            try {
+                long amount = Long.parseLong(value.substring(0, value.length() - 1));
+                switch (value.charAt(value.length() - 1)) {
+                    case 'd':
+                        offsets.add(Duration.ofDays(amount));
+                        break;
+                    case 'h':
+                        offsets.add(Duration.ofHours(amount));
+                        break;
+                    case 'm':
+                        offsets.add(Duration.ofMinutes(amount));
+                        break;
+                    default:
+                        throw new NumberFormatException();
+                }
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                System.err.println("Ignoring reminder offset '" + token.trim() + "' (use e.g. 24h, 30m or 1d)");
+            }
+        }
+        offsets.sort((a, b) -> b.compareTo(a));
+        return offsets;
+    }
+
+    private static ReminderSink createSink(String name) throws Exception {
+        switch (name) {
+            case "console":
+                return new ConsoleReminderSink();
+            case "file":
+                return new FileReminderSink();
+            default:
+                return (ReminderSink) Class.forName(name).getDeclaredConstructor().newInstance();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package service;
+
+/**
+ * Where due reminders are delivered (-Dreminders.sink): "console", "file" (-Dreminders.file), or the name of
+ * a class implementing this interface with a public no-argument constructor, e.g. an SMS or email gateway.
+ * Called from the reminder thread one reminder at a time, then flush() once per batch of due reminders; an
+ * exception from send is logged and that reminder dropped.
+ */
+public interface ReminderSink {
+    void send(Reminder reminder) throws Exception;
+
+    // Push out anything buffered by send
+    default void flush() throws Exception {
+    }
+
+    // Release resources when the scheduler stops
+    default void close() {
+    }
+}
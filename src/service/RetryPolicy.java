@@ -0,0 +1,161 @@
+package service;
+
+import dao.Deadline;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retries transient MySQL failures (deadlock 1213, lock wait timeout 1205, SQLState 40001)
+ * with exponential backoff and full jitter.
+ * A shared retry budget caps retries to a fraction of calls, so a struggling database does not
+ * get hit by a retry storm: each call earns -Dretry.budgetRatio tokens (default 0.2) and each retry
+ * spends one.
+ */
+public class RetryPolicy {
+    private static final int MYSQL_DEADLOCK = 1213;
+    private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+    private static final String SQLSTATE_SERIALIZATION_FAILURE = "40001";
+
+    private final int maxAttempts = Math.max(1, Integer.getInteger("retry.maxAttempts", 4));
+    private final long baseDelayMs = Long.getLong("retry.baseDelayMs", 20);
+    private final long maxDelayMs = Long.getLong("retry.maxDelayMs", 500);
+    private final double budgetRatio = Double.parseDouble(System.getProperty("retry.budgetRatio", "0.2"));
+    private final double maxBudget = Double.parseDouble(System.getProperty("retry.maxBudget", "10"));
+
+    // Retry budget in tokens (guarded by this); starts full so a cold start can still retry
+    private double budget = maxBudget;
+
+    // Metrics
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong budgetDenied = new AtomicLong();
+    private final AtomicLong deadlineDenied = new AtomicLong();
+
+    // Run a DAO call, retrying transient failures while attempts, budget and deadline allow
+    public <T> T execute(Deadline deadline, Attempt<T> attempt) throws HospitalException, SQLException {
+        calls.incrementAndGet();
+        deposit();
+
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                T result = attempt.run();
+                if (attemptNumber > 1) {
+                    recovered.incrementAndGet();
+                }
+                return result;
+            } catch (SQLException e) {
+                if (!isTransient(e)) {
+                    throw e;
+                }
+                if (attemptNumber >= maxAttempts) {
+                    exhausted.incrementAndGet();
+                    throw e;
+                }
+
+                long delayMs = backoffMillis(attemptNumber);
+                if (delayMs >= deadline.remainingMillis()) {
+                    deadlineDenied.incrementAndGet();
+                    throw e;
+                }
+                if (!withdraw()) {
+                    budgetDenied.incrementAndGet();
+                    throw e;
+                }
+
+                retries.incrementAndGet();
+                sleep(delayMs);
+            }
+        }
+    }
+
+    // Whether the failure is a safe-to-retry transient condition (the statement was rolled back)
+    public static boolean isTransient(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if (current instanceof SQLTimeoutException) {
+                return false;
+            }
+            if (current instanceof SQLTransactionRollbackException
+                    || current.getErrorCode() == MYSQL_DEADLOCK
+                    || current.getErrorCode() == MYSQL_LOCK_WAIT_TIMEOUT
+                    || SQLSTATE_SERIALIZATION_FAILURE.equals(current.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Full jitter: uniform in [0, min(max, base * 2^(attempt - 1))]
+    private long backoffMillis(int attemptNumber) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attemptNumber - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(maxBudget, budget + budgetRatio);
+    }
+
+    private synchronized boolean withdraw() {
+        if (budget < 1.0) {
+            return false;
+        }
+        budget -= 1.0;
+        return true;
+    }
+
+    private static void sleep(long delayMs) throws HospitalException {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HospitalException("Interrupted while retrying", e);
+        }
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getRecovered() {
+        return recovered.get();
+    }
+
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    public long getBudgetDenied() {
+        return budgetDenied.get();
+    }
+
+    // Retries skipped because the backoff would outlast the caller's deadline
+    public long getDeadlineDenied() {
+        return deadlineDenied.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{" +
+                "calls=" + calls +
+                ", retries=" + retries +
+                ", recovered=" + recovered +
+                ", exhausted=" + exhausted +
+                ", budgetDenied=" + budgetDenied +
+                ", deadlineDenied=" + deadlineDenied +
+                '}';
+    }
+
+    @FunctionalInterface
+    public interface Attempt<T> {
+        T run() throws HospitalException, SQLException;
+    }
+}
@@ -0,0 +1,72 @@
+package service;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Today's and tomorrow's daily rosters, so pulling them is a hash lookup. A date is loaded on first use and
+ * dropped when one of its appointments is booked or cancelled here (the next pull reloads it), or after
+ * -Droster.refreshMs (default 30000) so bookings made by other instances show up. At midnight tomorrow's
+ * roster becomes today's and the past day is dropped; other dates are never cached.
+ */
+public class RosterCache {
+    private final long refreshMs;
+    private final ConcurrentHashMap<LocalDate, DailyRoster> rosters = new ConcurrentHashMap<>();
+
+    // Bumped by every invalidation, so a load that raced with one is not cached
+    private final AtomicLong changes = new AtomicLong();
+    private volatile LocalDate today = LocalDate.now();
+
+    public RosterCache(long refreshMs) {
+        this.refreshMs = refreshMs;
+    }
+
+    // Cached roster for the date, or null if it is not cached or has expired
+    public DailyRoster get(LocalDate date) {
+        rollOver();
+        DailyRoster roster = rosters.get(date);
+        if (roster != null && System.currentTimeMillis() - roster.getLoadedAtMillis() > refreshMs) {
+            rosters.remove(date, roster);
+            return null;
+        }
+        return roster;
+    }
+
+    // Taken before reading the database; passed back to put()
+    public long version() {
+        return changes.get();
+    }
+
+    // Cache a roster read after version() returned the given value, unless its date changed since
+    public void put(DailyRoster roster, long version) {
+        rollOver();
+        if (!isCacheable(roster.getDate())) {
+            return;
+        }
+        rosters.put(roster.getDate(), roster);
+        if (changes.get() != version) {
+            rosters.remove(roster.getDate(), roster);
+        }
+    }
+
+    // Drop the date's roster after one of its appointments changed
+    public void invalidate(LocalDate date) {
+        changes.incrementAndGet();
+        rosters.remove(date);
+    }
+
+    private boolean isCacheable(LocalDate date) {
+        LocalDate current = today;
+        return date.equals(current) || date.equals(current.plusDays(1));
+    }
+
+    // Past midnight, drop the days that are no longer today or tomorrow
+    private void rollOver() {
+        LocalDate now = LocalDate.now();
+        if (!now.equals(today)) {
+            today = now;
+            rosters.keySet().removeIf(date -> !isCacheable(date));
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package service;
+
+import model.Appointment;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Always-current view of every doctor's schedule: per doctor, a sorted map from date to the ids of that
+ * day's appointments, plus the day's time slots sorted by start time so an overlap check is two O(log n)
+ * lookups; the ids without a slot mirror the day's booking counter in the database.
+ * Loaded once from the database, then kept up to date by the service on every book and cancel, so
+ * availability and upcoming-appointment questions are answered without a query.
+ * The index only covers dates from the day it was loaded; earlier dates, and any question asked before
+ * the load finished, must go to the database. The database's counter still decides every booking, so the
+ * index can never cause a day to be overbooked.
+ */
+public class ScheduleIndex {
+    // Swapped in whole by load(); reads never lock
+    private volatile Map<Integer, ConcurrentSkipListMap<LocalDate, Day>> byDoctor = new ConcurrentHashMap<>();
+    private volatile LocalDate coveredFrom = null;
+
+    // Guarded by this: changes made while a load is reading the database, replayed onto its result
+    private boolean loading;
+    private final List<Change> changesDuringLoad = new ArrayList<>();
+
+    // Replace the index with the given appointments (all those on or after from)
+    public void load(LocalDate from, Loader loader) throws SQLException, HospitalException {
+        synchronized (this) {
+            loading = true;
+            changesDuringLoad.clear();
+        }
+        try {
+            Map<Integer, ConcurrentSkipListMap<LocalDate, Day>> fresh = new ConcurrentHashMap<>();
+            for (Appointment appointment : loader.load()) {
+                new Change(appointment, true).applyTo(fresh);
+            }
+            synchronized (this) {
+                for (Change change : changesDuringLoad) {
+                    change.applyTo(fresh);
+                }
+                byDoctor = fresh;
+                coveredFrom = from;
+            }
+        } finally {
+            synchronized (this) {
+                loading = false;
+                changesDuringLoad.clear();
+            }
+        }
+    }
+
+    // Whether the index can answer questions about this date
+    public boolean covers(LocalDate date) {
+        LocalDate from = coveredFrom;
+        return from != null && !date.isBefore(from);
+    }
+
+    // Date-only appointments the doctor has on the date, i.e. the places taken
+    public int bookedCount(int doctorId, LocalDate date) {
+        NavigableMap<LocalDate, Day> days = byDoctor.get(doctorId);
+        Day day = days == null ? null : days.get(date);
+        return day == null ? 0 : Math.max(0, day.ids.size() - day.slots.size());
+    }
+
+    // Whether [start, end) overlaps none of the doctor's time slots on the date
+    public boolean isSlotFree(int doctorId, LocalDate date, LocalTime start, LocalTime end) {
+        NavigableMap<LocalDate, Day> days = byDoctor.get(doctorId);
+        Day day = days == null ? null : days.get(date);
+        if (day == null) {
+            return true;
+        }
+        Map.Entry<LocalTime, Slot> before = day.slots.floorEntry(start);
+        if (before != null && before.getValue().end.isAfter(start)) {
+            return false;
+        }
+        Map.Entry<LocalTime, Slot> after = day.slots.higherEntry(start);
+        return after == null || !after.getKey().isBefore(end);
+    }
+
+    // Start times between dayStart and dayEnd, stepMinutes apart, where a slot of the given length is free
+    public List<LocalTime> freeSlots(int doctorId, LocalDate date, LocalTime dayStart, LocalTime dayEnd,
+                                     int stepMinutes, int durationMinutes) {
+        NavigableMap<LocalDate, Day> days = byDoctor.get(doctorId);
+        Day day = days == null ? null : days.get(date);
+        return freeSlots(day == null ? Collections.emptyNavigableMap() : day.slots,
+                dayStart, dayEnd, stepMinutes, durationMinutes);
+    }
+
+    // Walk the grid and the booked slots together, jumping past each booked slot in one step
+    static List<LocalTime> freeSlots(NavigableMap<LocalTime, Slot> booked, LocalTime dayStart, LocalTime dayEnd,
+                                     int stepMinutes, int durationMinutes) {
+        List<LocalTime> free = new ArrayList<>();
+        int open = dayStart.toSecondOfDay() / 60;
+        int close = dayEnd.toSecondOfDay() / 60;
+        int minute = open;
+        while (minute + durationMinutes <= close) {
+            LocalTime start = LocalTime.ofSecondOfDay(minute * 60L);
+            LocalTime end = start.plusMinutes(durationMinutes);
+            Map.Entry<LocalTime, Slot> before = booked.floorEntry(start);
+            Map.Entry<LocalTime, Slot> after = booked.higherEntry(start);
+            LocalTime blockedUntil = null;
+            if (before != null && before.getValue().end.isAfter(start)) {
+                blockedUntil = before.getValue().end;
+            } else if (after != null && after.getKey().isBefore(end)) {
+                blockedUntil = after.getValue().end;
+            }
+            if (blockedUntil == null) {
+                free.add(start);
+                minute += stepMinutes;
+            } else {
+                // Next grid point at or after the end of the blocking slot
+                int until = blockedUntil.toSecondOfDay() / 60;
+                minute += Math.max(stepMinutes, (until - minute + stepMinutes - 1) / stepMinutes * stepMinutes);
+            }
+        }
+        return free;
+    }
+
+    // The first date on or after from with an appointment for the doctor, or null
+    public LocalDate next(int doctorId, LocalDate from) {
+        NavigableMap<LocalDate, Day> days = byDoctor.get(doctorId);
+        return days == null ? null : days.ceilingKey(from);
+    }
+
+    // Read-only view of the dates on or after from with appointments for the doctor
+    public NavigableSet<LocalDate> upcoming(int doctorId, LocalDate from) {
+        ConcurrentSkipListMap<LocalDate, Day> days = byDoctor.get(doctorId);
+        return days == null ? Collections.emptyNavigableSet()
+                : Collections.unmodifiableNavigableSet(days.tailMap(from, true).navigableKeySet());
+    }
+
+    public synchronized void add(Appointment appointment) {
+        record(new Change(appointment, true));
+    }
+
+    public synchronized void remove(Appointment appointment) {
+        record(new Change(appointment, false));
+    }
+
+    private void record(Change change) {
+        change.applyTo(byDoctor);
+        if (loading) {
+            changesDuringLoad.add(change);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        List<Appointment> load() throws SQLException, HospitalException;
+    }
+
+    // One doctor-day: every appointment id, and the timed ones by start time
+    private static class Day {
+        private final Set<Long> ids = ConcurrentHashMap.newKeySet();
+        private final ConcurrentSkipListMap<LocalTime, Slot> slots = new ConcurrentSkipListMap<>();
+    }
+
+    static class Slot {
+        final LocalTime end;
+        final long appointmentId;
+
+        Slot(LocalTime end, long appointmentId) {
+            this.end = end;
+            this.appointmentId = appointmentId;
+        }
+    }
+
+    private static class Change {
+        private final int doctorId;
+        private final LocalDate date;
+        private final long appointmentId;
+        private final LocalTime start;
+        private final LocalTime end;
+        private final boolean booked;
+
+        private Change(Appointment appointment, boolean booked) {
+            this.doctorId = appointment.getDoctorId();
+            this.date = appointment.getAppointmentDate();
+            this.appointmentId = appointment.getId();
+            this.start = appointment.getStartTime();
+            this.end = appointment.getEndTime();
+            this.booked = booked;
+        }
+
+        // Idempotent, so a change the load already saw can safely be applied again
+        private void applyTo(Map<Integer, ConcurrentSkipListMap<LocalDate, Day>> index) {
+            if (booked) {
+                Day day = index.computeIfAbsent(doctorId, id -> new ConcurrentSkipListMap<>())
+                        .computeIfAbsent(date, d -> new Day());
+                day.ids.add(appointmentId);
+                if (start != null) {
+                    day.slots.put(start, new Slot(end, appointmentId));
+                }
+            } else {
+                ConcurrentSkipListMap<LocalDate, Day> days = index.get(doctorId);
+                if (days != null) {
+                    days.computeIfPresent(date, (d, day) -> {
+                        day.ids.remove(appointmentId);
+                        if (start != null) {
+                            day.slots.computeIfPresent(start,
+                                    (t, slot) -> slot.appointmentId == appointmentId ? null : slot);
+                        }
+                        return day.ids.isEmpty() ? null : day;
+                    });
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: timers are hashed into buckets of a ring by expiration time, and timers too far
+ * out for a ring go to an overflow ring whose tick is the whole span of the ring below (created on demand).
+ * When the clock passes an overflow bucket its timers are re-inserted, falling into finer rings as their time
+ * approaches. Scheduling and cancelling are O(1) (a ring lookup per level and a doubly linked list splice),
+ * whatever the number of pending timers; advancing costs one step per bucket passed plus the timers that
+ * move or fall due.
+ * Not thread-safe; callers synchronize.
+ */
+public class TimingWheel<T> {
+    private final Level<T> finest;
+    private int size;
+
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("tickMs must be positive and wheelSize at least 2");
+        }
+        this.finest = new Level<>(tickMs, wheelSize, startMs);
+    }
+
+    // Add a timer; returns null (and adds nothing) if it is already due at the current tick
+    public Timer<T> schedule(long expirationMs, T value) {
+        Timer<T> timer = new Timer<>(expirationMs, value);
+        if (!finest.add(timer)) {
+            return null;
+        }
+        size++;
+        return timer;
+    }
+
+    // Remove a pending timer; false if it already fired or was cancelled
+    public boolean cancel(Timer<T> timer) {
+        if (timer.next == null) {
+            return false;
+        }
+        timer.unlink();
+        size--;
+        return true;
+    }
+
+    // Move the clock to now and return the values of the timers that fell due, earliest first
+    public List<T> advance(long nowMs) {
+        List<Timer<T>> passed = new ArrayList<>();
+        for (Level<T> level = finest; level != null; level = level.overflow) {
+            level.advance(nowMs, passed);
+        }
+
+        List<Timer<T>> due = new ArrayList<>();
+        for (Timer<T> timer : passed) {
+            if (!finest.add(timer)) {
+                due.add(timer);
+            }
+        }
+        size -= due.size();
+        due.sort((a, b) -> Long.compare(a.expirationMs, b.expirationMs));
+
+        List<T> values = new ArrayList<>(due.size());
+        for (Timer<T> timer : due) {
+            values.add(timer.value);
+        }
+        return values;
+    }
+
+    // Pending timers
+    public int size() {
+        return size;
+    }
+
+    public static final class Timer<T> {
+        private final long expirationMs;
+        private final T value;
+
+        // Neighbours in the bucket's circular list; null once fired or cancelled
+        private Timer<T> prev;
+        private Timer<T> next;
+
+        private Timer(long expirationMs, T value) {
+            this.expirationMs = expirationMs;
+            this.value = value;
+        }
+
+        public long getExpirationMs() {
+            return expirationMs;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+
+    private static final class Level<T> {
+        private final long tickMs;
+        private final int wheelSize;
+        private final long intervalMs;
+        // Start of the current tick, a multiple of tickMs
+        private long currentTime;
+        // One sentinel per bucket heading a circular doubly linked list
+        private final Timer<T>[] buckets;
+        private Level<T> overflow;
+
+        @SuppressWarnings("unchecked")
+        private Level(long tickMs, int wheelSize, long startMs) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.intervalMs = tickMs * wheelSize;
+            this.currentTime = startMs - Math.floorMod(startMs, tickMs);
+            this.buckets = (Timer<T>[]) new Timer<?>[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                Timer<T> sentinel = new Timer<>(0, null);
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                buckets[i] = sentinel;
+            }
+        }
+
+        // Put the timer in this level or a coarser one; false if it is due within the current tick
+        private boolean add(Timer<T> timer) {
+            if (timer.expirationMs < currentTime + tickMs) {
+                return false;
+            }
+            if (timer.expirationMs < currentTime + intervalMs) {
+                Timer<T> sentinel = buckets[(int) Math.floorMod(timer.expirationMs / tickMs, (long) wheelSize)];
+                timer.prev = sentinel.prev;
+                timer.next = sentinel;
+                sentinel.prev.next = timer;
+                sentinel.prev = timer;
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level<>(intervalMs, wheelSize, currentTime);
+            }
+            return overflow.add(timer);
+        }
+
+        // Move to the tick containing now, emptying every bucket passed on the way into passed
+        private void advance(long nowMs, List<Timer<T>> passed) {
+            long target = nowMs - Math.floorMod(nowMs, tickMs);
+            if (target <= currentTime) {
+                return;
+            }
+            long steps = Math.min(wheelSize, (target - currentTime) / tickMs);
+            long firstTick = currentTime / tickMs + 1;
+            for (long i = 0; i < steps; i++) {
+                Timer<T> sentinel = buckets[(int) Math.floorMod(firstTick + i, (long) wheelSize)];
+                while (sentinel.next != sentinel) {
+                    Timer<T> timer = sentinel.next;
+                    timer.unlink();
+                    passed.add(timer);
+                }
+            }
+            currentTime = target;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package service;
+
+// Booked, cancelled and completed appointments over a date range for one doctor or a whole specialization,
+// against the places offered in that range
+public class Utilization {
+    private final int doctorId;
+    private final String name;
+    private final String specialization;
+    private final long booked;
+    private final long cancelled;
+    private final long completed;
+    private final long places;
+
+    public Utilization(int doctorId, String name, String specialization, long booked, long cancelled,
+                       long completed, long places) {
+        this.doctorId = doctorId;
+        this.name = name;
+        this.specialization = specialization;
+        this.booked = booked;
+        this.cancelled = cancelled;
+        this.completed = completed;
+        this.places = places;
+    }
+
+    // 0 for a specialization total
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    // Doctor name, or the specialization for a specialization total
+    public String getName() {
+        return name;
+    }
+
+    public String getSpecialization() {
+        return specialization;
+    }
+
+    // Bookings made for the range, including those later cancelled
+    public long getBooked() {
+        return booked;
+    }
+
+    public long getCancelled() {
+        return cancelled;
+    }
+
+    // Appointments that stayed booked on days already past
+    public long getCompleted() {
+        return completed;
+    }
+
+    // Daily capacity times days in the range
+    public long getPlaces() {
+        return places;
+    }
+
+    // Share of places held by appointments that were not cancelled; 1 when there are no places at all
+    public double getUtilization() {
+        return places == 0 ? 1.0 : (double) (booked - cancelled) / places;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d booked, %d cancelled, %d completed, %.0f%% of %d places",
+                name, booked, cancelled, completed, getUtilization() * 100, places);
+    }
+}
@@ -0,0 +1,158 @@
+package service;
+
+import dao.StatsDAO;
+import model.DoctorDayStats;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Booking and cancellation counts per doctor and day, updated in memory on every booking and cancellation
+ * so utilization reports never run a GROUP BY over appointments. Each doctor-day is a set of LongAdders, so
+ * concurrent bookings for the same doctor never contend on a counter. Every -Dstats.flushMs (default 10000)
+ * the counts added since the last flush go to the appointment_stats summary table in one batched upsert;
+ * the first tick loads the table's rows from -Dstats.days (default 365) days back, which earlier counts are
+ * added to. Counts only cover this instance's bookings, so run a single instance.
+ */
+public class UtilizationStats {
+    private static final long FLUSH_MS = Math.max(100, Long.getLong("stats.flushMs", 10000));
+    private static final int LOADED_DAYS = Math.max(1, Integer.getInteger("stats.days", 365));
+
+    private final StatsDAO statsDAO;
+    private final Map<Integer, ConcurrentSkipListMap<LocalDate, Cell>> byDoctor = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private final ScheduledExecutorService flusher;
+
+    UtilizationStats(StatsDAO statsDAO) {
+        this.statsDAO = statsDAO;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stats-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::tick, 0, FLUSH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordBooked(int doctorId, LocalDate day) {
+        Cell cell = cell(doctorId, day);
+        cell.booked.increment();
+        cell.pendingBooked.increment();
+    }
+
+    public void recordCancelled(int doctorId, LocalDate day) {
+        Cell cell = cell(doctorId, day);
+        cell.cancelled.increment();
+        cell.pendingCancelled.increment();
+    }
+
+    // Whether the stored counts have been loaded; until then only this run's bookings are counted
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // The doctor's counts per day between two dates (inclusive), days without any left out
+    public List<DoctorDayStats> daily(int doctorId, LocalDate from, LocalDate to) {
+        List<DoctorDayStats> result = new ArrayList<>();
+        ConcurrentSkipListMap<LocalDate, Cell> days = byDoctor.get(doctorId);
+        if (days != null) {
+            days.subMap(from, true, to, true).forEach((day, cell) ->
+                    result.add(new DoctorDayStats(doctorId, day, cell.booked.sum(), cell.cancelled.sum())));
+        }
+        return result;
+    }
+
+    // The doctor's counts summed over two dates (inclusive) as {booked, cancelled, completed}; completed are the
+    // bookings that were not cancelled on days before today
+    public long[] totals(int doctorId, LocalDate from, LocalDate to) {
+        long[] totals = new long[3];
+        LocalDate today = LocalDate.now();
+        for (DoctorDayStats day : daily(doctorId, from, to)) {
+            totals[0] += day.getBooked();
+            totals[1] += day.getCancelled();
+            if (day.getDay().isBefore(today)) {
+                totals[2] += day.getBooked() - day.getCancelled();
+            }
+        }
+        return totals;
+    }
+
+    // Write what is left to the summary table and stop the flush thread
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (loaded) {
+            flush();
+        }
+    }
+
+    private Cell cell(int doctorId, LocalDate day) {
+        return byDoctor.computeIfAbsent(doctorId, id -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(day, d -> new Cell());
+    }
+
+    // Load the stored counts once (retried every tick until it works), then flush. Nothing is flushed before
+    // the load, so the load never sees counts that are also held in memory
+    private void tick() {
+        if (!loaded) {
+            try {
+                for (DoctorDayStats stored : statsDAO.getStatsFrom(LocalDate.now().minusDays(LOADED_DAYS))) {
+                    Cell cell = cell(stored.getDoctorId(), stored.getDay());
+                    cell.booked.add(stored.getBooked());
+                    cell.cancelled.add(stored.getCancelled());
+                }
+                loaded = true;
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Utilization stats not loaded yet: " + e.getMessage());
+                return;
+            }
+        }
+        flush();
+    }
+
+    // Drain every cell's pending counts into one upsert; on failure they are put back for the next flush
+    private synchronized void flush() {
+        List<DoctorDayStats> deltas = new ArrayList<>();
+        List<Cell> drained = new ArrayList<>();
+        byDoctor.forEach((doctorId, days) -> days.forEach((day, cell) -> {
+            long booked = cell.pendingBooked.sumThenReset();
+            long cancelled = cell.pendingCancelled.sumThenReset();
+            if (booked != 0 || cancelled != 0) {
+                deltas.add(new DoctorDayStats(doctorId, day, booked, cancelled));
+                drained.add(cell);
+            }
+        }));
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            statsDAO.addStats(deltas);
+        } catch (SQLException | RuntimeException e) {
+            for (int i = 0; i < deltas.size(); i++) {
+                drained.get(i).pendingBooked.add(deltas.get(i).getBooked());
+                drained.get(i).pendingCancelled.add(deltas.get(i).getCancelled());
+            }
+            System.err.println("Utilization stats flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    // Totals (stored plus this run's) and the part of this run's not yet flushed
+    private static class Cell {
+        private final LongAdder booked = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder pendingBooked = new LongAdder();
+        private final LongAdder pendingCancelled = new LongAdder();
+    }
+}
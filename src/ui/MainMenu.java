@@ -4,14 +4,21 @@ import model.Appointment;
 import model.Doctor;
 import model.Patient;
 import model.User;
+import model.WaitlistEntry;
 import service.AppointmentService;
 import service.AuthService;
+import service.DailyRoster;
 import service.HospitalException;
+import service.ReadResult;
+import service.Utilization;
 import util.InputUtil;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 
 public class MainMenu {
     private final User currentUser;
@@ -51,11 +58,12 @@ public class MainMenu {
                 System.out.println("3. View My Appointments");
                 System.out.println("4. Cancel Appointments");
                 System.out.println("5. Search Doctors by Specialization");
-                System.out.println("6. Change Password");
-                System.out.println("7. Logout");
+                System.out.println("6. My Waitlist");
+                System.out.println("7. Change Password");
+                System.out.println("8. Logout");
                 System.out.println("─────────────────────────────────────────");
 
-                int choice = inputUtil.readInt("Enter your choice: ", 1, 7);
+                int choice = inputUtil.readInt("Enter your choice: ", 1, 8);
 
                 try {
                     switch (choice) {
@@ -74,10 +82,13 @@ public class MainMenu {
                         case 5:
                             searchDoctorsBySpecialization();
                             break;
-                        case 6:                                    // ← ADD THIS CASE
-                            changePassword();
+                        case 6:
+                            manageWaitlist(patient.getId());
                             break;
                         case 7:
+                            changePassword();
+                            break;
+                        case 8:
                             authService.logout(currentUser.getUsername());
                             System.out.println("\n✓ Logged out successfully!");
                             return;
@@ -107,11 +118,14 @@ public class MainMenu {
                 System.out.println("1. View My Appointments");
                 System.out.println("2. View All Doctors");
                 System.out.println("3. Check My Availability");
-                System.out.println("4. Change Password");
-                System.out.println("5. Logout");
+                System.out.println("4. Set Daily Capacity");
+                System.out.println("5. My Utilization");
+                System.out.println("6. Daily Roster");
+                System.out.println("7. Change Password");
+                System.out.println("8. Logout");
                 System.out.println("─────────────────────────────────────────");
 
-                int choice = inputUtil.readInt("Enter your choice: ", 1, 4);
+                int choice = inputUtil.readInt("Enter your choice: ", 1, 8);
 
                 try {
                     switch (choice) {
@@ -124,10 +138,19 @@ public class MainMenu {
                         case 3:
                             checkDoctorAvailability(doctor.getId());
                             break;
-                        case 4:                                    // ← ADD THIS CASE
-                            changePassword();
+                        case 4:
+                            setDailyCapacity(doctor.getId());
                             break;
                         case 5:
+                            viewUtilization(doctor);
+                            break;
+                        case 6:
+                            viewDailyRoster();
+                            break;
+                        case 7:
+                            changePassword();
+                            break;
+                        case 8:
                             authService.logout(currentUser.getUsername());
                             System.out.println("\n✓ Logged out successfully!");
                             return;
@@ -157,14 +180,15 @@ public class MainMenu {
         System.out.println("\nYour upcoming appointments:");
         for (Appointment apt : appointments) {
             if (!apt.getAppointmentDate().isBefore(LocalDate.now())) {
-                System.out.printf("ID: %d | Doctor: %s | Date: %s%n",
+                System.out.printf("ID: %d | Doctor: %s | Date: %s | Time: %s%n",
                         apt.getId(),
                         apt.getDoctorName(),
-                        apt.getAppointmentDate());
+                        apt.getAppointmentDate(),
+                        formatTimeSlot(apt));
             }
         }
 
-        int appointmentId = inputUtil.readInt("\nEnter Appointment ID to cancel (0 to go back): ", 0, Integer.MAX_VALUE);
+        long appointmentId = inputUtil.readLong("\nEnter Appointment ID to cancel (0 to go back): ", 0, Long.MAX_VALUE);
 
         if (appointmentId == 0) return;
 
@@ -176,6 +200,36 @@ public class MainMenu {
         }
     }
 
+    // List the patient's waitlist entries and optionally leave one
+    private void manageWaitlist(int patientId) throws HospitalException {
+        System.out.println("\n═════════════ MY WAITLIST ═════════════");
+
+        List<WaitlistEntry> entries = appointmentService.getPatientWaitlist(patientId);
+        if (entries.isEmpty()) {
+            System.out.println("You are not waiting for any appointments.");
+            return;
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            WaitlistEntry entry = entries.get(i);
+            System.out.printf("%d. Doctor: %s | Date: %s | Position: %d%n",
+                    i + 1,
+                    entry.getDoctorName(),
+                    entry.getDate(),
+                    entry.getPosition());
+        }
+
+        int choice = inputUtil.readInt("\nEnter number to leave that waitlist (0 to go back): ", 0, entries.size());
+        if (choice == 0) return;
+
+        WaitlistEntry entry = entries.get(choice - 1);
+        if (appointmentService.leaveWaitlist(patientId, entry.getDoctorId(), entry.getDate())) {
+            System.out.println("\n✓ You have left the waitlist.");
+        } else {
+            System.out.println("\nYou were no longer on that waitlist (a place may already have been booked for you).");
+        }
+    }
+
     private void changePassword() throws HospitalException {
         System.out.println("\n═══════════ CHANGE PASSWORD ═══════════");
 
@@ -196,7 +250,9 @@ public class MainMenu {
     private void viewAllDoctors() throws HospitalException {
         System.out.println("\n════════════ AVAILABLE DOCTORS ════════════");
 
-        List<Doctor> doctors = appointmentService.getAllDoctors();
+        ReadResult<List<Doctor>> result = appointmentService.readAllDoctors(null);
+        printIfStale(result);
+        List<Doctor> doctors = result.getValue();
 
         if (doctors.isEmpty()) {
             System.out.println("No doctors available.");
@@ -223,18 +279,69 @@ public class MainMenu {
         int doctorId = inputUtil.readInt("\nEnter Doctor ID: ", 1, Integer.MAX_VALUE);
         LocalDate appointmentDate = inputUtil.readDate("Enter Appointment Date (YYYY-MM-DD): ");
 
-        Appointment appointment = appointmentService.bookAppointment(patientId, doctorId, appointmentDate);
+        // Time slots take none of the day's places, so only a day with neither left is full. A full day can be
+        // waited for instead: the first cancellation books its place for the waitlist's head
+        int slotMinutes = appointmentService.getSlotMinutes();
+        List<LocalTime> freeSlots = appointmentService.getFreeSlots(doctorId, appointmentDate, slotMinutes);
+        boolean placeLeft = appointmentDate.isBefore(LocalDate.now())
+                || appointmentService.getPlacesLeft(doctorId, appointmentDate) > 0;
+        if (!placeLeft && freeSlots.isEmpty()) {
+            System.out.println("\nDoctor is fully booked on this date ("
+                    + appointmentService.getWaitlistLength(doctorId, appointmentDate) + " already waiting).");
+            if (inputUtil.readConfirmation("Join the waitlist?")) {
+                int position = appointmentService.joinWaitlist(patientId, doctorId, appointmentDate);
+                System.out.println("\n✓ You are number " + position + " on the waitlist. If a place opens up it "
+                        + "is booked for you automatically.");
+            }
+            return;
+        }
+
+        // Offer the free time slots; booking without a time keeps the date-only appointment
+        if (!freeSlots.isEmpty()) {
+            System.out.println("\nFree " + slotMinutes + "-minute slots:");
+            for (int i = 0; i < freeSlots.size(); i++) {
+                System.out.print((i % 8 == 0 ? "  " : " ") + freeSlots.get(i) + (i % 8 == 7 ? "\n" : ""));
+            }
+            System.out.println();
+        }
+        if (!placeLeft) {
+            System.out.println("No places left for any time that day; pick a time slot.");
+        }
+        LocalTime startTime = inputUtil.readOptionalTime("Enter Start Time (HH:MM, blank for any time that day): ");
+        if (startTime == null && !placeLeft) {
+            System.out.println("\nDoctor is fully booked for any time that day.");
+            return;
+        }
+
+        Appointment appointment;
+        if (startTime == null) {
+            appointment = appointmentService.bookAppointment(patientId, doctorId, appointmentDate);
+        } else {
+            int duration = inputUtil.readInt("Enter Duration in minutes (multiple of " + slotMinutes + "): ",
+                    slotMinutes, 24 * 60);
+            appointment = appointmentService.bookAppointment(patientId, doctorId, appointmentDate, startTime, duration);
+        }
 
         System.out.println("\n✓ Appointment booked successfully!");
         System.out.println("Appointment ID: " + appointment.getId());
         System.out.println("Date: " + appointment.getAppointmentDate());
+        if (appointment.hasTimeSlot()) {
+            System.out.println("Time: " + appointment.getStartTime() + " - " + appointment.getEndTime());
+        }
+    }
+
+    // Time slot of an appointment for display, or "Any time" for a date-only one
+    private static String formatTimeSlot(Appointment apt) {
+        return apt.hasTimeSlot() ? apt.getStartTime() + " - " + apt.getEndTime() : "Any time";
     }
 
     // View patient's appointments
     private void viewMyAppointments(int patientId) throws HospitalException {
         System.out.println("\n════════════ MY APPOINTMENTS ════════════");
 
-        List<Appointment> appointments = appointmentService.getPatientAppointments(patientId);
+        ReadResult<List<Appointment>> result = appointmentService.readPatientAppointments(patientId);
+        printIfStale(result);
+        List<Appointment> appointments = result.getValue();
 
         if (appointments.isEmpty()) {
             System.out.println("You have no appointments.");
@@ -247,6 +354,7 @@ public class MainMenu {
             System.out.println("│ Doctor: " + apt.getDoctorName());
             System.out.println("│ Specialization: " + apt.getDoctorSpecialization());
             System.out.println("│ Date: " + apt.getAppointmentDate().format(DateTimeFormatter.ofPattern("dd-MMM-yyyy")));
+            System.out.println("│ Time: " + formatTimeSlot(apt));
             System.out.println("└─────────────────────────────────────");
         }
     }
@@ -255,18 +363,33 @@ public class MainMenu {
     private void viewDoctorAppointments(int doctorId) throws HospitalException {
         System.out.println("\n════════════ MY APPOINTMENTS ════════════");
 
-        List<Appointment> appointments = appointmentService.getDoctorAppointments(doctorId);
-
-        if (appointments.isEmpty()) {
+        // The next few days first (a range query, warmed at startup); the whole history only on request
+        ReadResult<List<Appointment>> upcoming = appointmentService.readUpcomingDoctorAppointments(doctorId);
+        printIfStale(upcoming);
+        System.out.println("Next " + appointmentService.getUpcomingDays() + " days:");
+        if (upcoming.getValue().isEmpty()) {
             System.out.println("You have no appointments scheduled.");
+        }
+        printDoctorAppointments(upcoming.getValue());
+
+        if (!inputUtil.readConfirmation("\nShow all your appointments, past and later ones included?")) {
             return;
         }
+        ReadResult<List<Appointment>> result = appointmentService.readDoctorAppointments(doctorId);
+        printIfStale(result);
+        if (result.getValue().isEmpty()) {
+            System.out.println("You have no appointments.");
+        }
+        printDoctorAppointments(result.getValue());
+    }
 
+    private static void printDoctorAppointments(List<Appointment> appointments) {
         for (Appointment apt : appointments) {
             System.out.println("\n┌─────────────────────────────────────");
             System.out.println("│ Appointment ID: " + apt.getId());
             System.out.println("│ Patient: " + apt.getPatientName());
             System.out.println("│ Date: " + apt.getAppointmentDate().format(DateTimeFormatter.ofPattern("dd-MMM-yyyy")));
+            System.out.println("│ Time: " + formatTimeSlot(apt));
             System.out.println("└─────────────────────────────────────");
         }
     }
@@ -277,22 +400,29 @@ public class MainMenu {
 
         String specialization = inputUtil.readNonEmpty("Enter Specialization: ");
 
-        List<Doctor> doctors = appointmentService.getAllDoctors(specialization);
+        ReadResult<List<Doctor>> result = appointmentService.readAllDoctors(specialization);
+        printIfStale(result);
+        List<Doctor> doctors = result.getValue();
 
         if (doctors.isEmpty()) {
             System.out.println("No doctors found with specialization: " + specialization);
             return;
         }
 
-        System.out.println("\nFound " + doctors.size() + " doctor(s):");
-        System.out.printf("%-5s %-25s %-30s%n", "ID", "Name", "Specialization");
-        System.out.println("─".repeat(60));
+        // Least busy first over the coming week, so patients see who is easiest to get an appointment with
+        LocalDate today = LocalDate.now();
+        List<Utilization> ranking = appointmentService.rankByUtilization(doctors, today, today.plusDays(6));
 
-        for (Doctor doctor : doctors) {
-            System.out.printf("%-5d %-25s %-30s%n",
-                    doctor.getId(),
+        System.out.println("\nFound " + doctors.size() + " doctor(s), least busy this week first:");
+        System.out.printf("%-5s %-25s %-30s %-10s%n", "ID", "Name", "Specialization", "Booked");
+        System.out.println("─".repeat(72));
+
+        for (Utilization doctor : ranking) {
+            System.out.printf("%-5d %-25s %-30s %3.0f%%%n",
+                    doctor.getDoctorId(),
                     doctor.getName(),
-                    doctor.getSpecialization());
+                    doctor.getSpecialization(),
+                    doctor.getUtilization() * 100);
         }
     }
 
@@ -302,13 +432,96 @@ public class MainMenu {
 
         LocalDate date = inputUtil.readDate("Enter Date (YYYY-MM-DD): ");
 
-        boolean available = appointmentService.isDoctorAvailable(doctorId, date);
+        int placesLeft = appointmentService.getPlacesLeft(doctorId, date);
 
-        if (available) {
+        if (placesLeft > 0) {
             System.out.println("\n✓ You are AVAILABLE on " + date.format(DateTimeFormatter.ofPattern("dd-MMM-yyyy")));
+            System.out.println("  (" + placesLeft + " of " + appointmentService.getDailyCapacity(doctorId)
+                    + " places left)");
         } else {
             System.out.println("\n✗ You are NOT AVAILABLE on " + date.format(DateTimeFormatter.ofPattern("dd-MMM-yyyy")));
-            System.out.println("  (Appointment already booked for this date)");
+            System.out.println("  (Fully booked for this date)");
+        }
+
+        LocalDate next = appointmentService.getNextAppointmentDate(doctorId, LocalDate.now());
+        if (next != null) {
+            System.out.println("  Next appointment: " + next.format(DateTimeFormatter.ofPattern("dd-MMM-yyyy")));
+        }
+    }
+
+    // Change how many appointments the doctor takes per day
+    private void setDailyCapacity(int doctorId) throws HospitalException {
+        System.out.println("\n═══════ DAILY CAPACITY ═══════");
+        System.out.println("Current: " + appointmentService.getDailyCapacity(doctorId) + " appointments per day");
+
+        int capacity = inputUtil.readInt("Enter new daily capacity (0-200): ", 0, 200);
+        appointmentService.setDailyCapacity(doctorId, capacity);
+
+        System.out.println("\n✓ Daily capacity set to " + capacity);
+    }
+
+    // Booked, cancelled and completed appointments over the last 30 days and the coming week, next to the
+    // specialization's total
+    private void viewUtilization(Doctor doctor) throws HospitalException {
+        System.out.println("\n═══════ MY UTILIZATION ═══════");
+        LocalDate today = LocalDate.now();
+
+        Utilization past = appointmentService.getDoctorUtilization(doctor.getId(), today.minusDays(30), today.minusDays(1));
+        Utilization coming = appointmentService.getDoctorUtilization(doctor.getId(), today, today.plusDays(6));
+        System.out.printf("Last 30 days: %d completed, %d cancelled, %.0f%% of %d places used%n",
+                past.getCompleted(), past.getCancelled(), past.getUtilization() * 100, past.getPlaces());
+        System.out.printf("Next 7 days:  %d booked, %d cancelled, %.0f%% of %d places taken%n",
+                coming.getBooked(), coming.getCancelled(), coming.getUtilization() * 100, coming.getPlaces());
+
+        for (Utilization specialization : appointmentService.getSpecializationUtilization(
+                today.minusDays(30), today.minusDays(1))) {
+            if (specialization.getName().equals(doctor.getSpecialization())) {
+                System.out.printf("All %s doctors, last 30 days: %.0f%% of places used%n",
+                        specialization.getName(), specialization.getUtilization() * 100);
+            }
+        }
+    }
+
+    // Every doctor's appointments on one day, by specialization and doctor
+    private void viewDailyRoster() throws HospitalException {
+        System.out.println("\n═══════ DAILY ROSTER ═══════");
+        System.out.println("1. Today");
+        System.out.println("2. Tomorrow");
+        System.out.println("3. Other Date");
+
+        int choice = inputUtil.readInt("Enter your choice: ", 1, 3);
+        LocalDate date = choice == 1 ? LocalDate.now()
+                : choice == 2 ? LocalDate.now().plusDays(1)
+                : inputUtil.readDate("Enter Date (YYYY-MM-DD): ");
+
+        DailyRoster roster = appointmentService.getDailyRoster(date);
+        System.out.println("\nRoster for " + date.format(DateTimeFormatter.ofPattern("dd-MMM-yyyy"))
+                + " - " + roster.size() + " appointment(s)");
+        if (roster.isEmpty()) {
+            System.out.println("No appointments on this date.");
+            return;
+        }
+
+        for (Map.Entry<String, Map<Integer, List<Appointment>>> specialization
+                : roster.getBySpecialization().entrySet()) {
+            System.out.println("\n■ " + specialization.getKey());
+            for (List<Appointment> appointments : specialization.getValue().values()) {
+                System.out.println("  Dr. " + appointments.get(0).getDoctorName()
+                        + " (" + appointments.size() + ")");
+                for (Appointment apt : appointments) {
+                    System.out.printf("    %-15s ID: %-8d %s%n", formatTimeSlot(apt), apt.getId(),
+                            apt.getPatientName());
+                }
+            }
+        }
+    }
+
+    // Warn when the list came from cache because the database is unreachable
+    private void printIfStale(ReadResult<?> result) {
+        if (result.isStale()) {
+            System.out.println("⚠ Database unavailable - showing data as of "
+                    + result.getAsOf().atZone(ZoneId.systemDefault())
+                    .format(DateTimeFormatter.ofPattern("dd-MMM-yyyy HH:mm:ss")));
         }
     }
 }
@@ -1,6 +1,7 @@
 package util;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Scanner;
@@ -8,6 +9,7 @@ import java.util.Scanner;
 public class InputUtil {
     private final Scanner scanner;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
 
     public InputUtil() {
         this.scanner = new Scanner(System.in);
@@ -36,6 +38,24 @@ public class InputUtil {
         return readInt(prompt, Integer.MIN_VALUE, Integer.MAX_VALUE);
     }
 
+    // Read long integer with validation and range checking (appointment ids)
+    public long readLong(String prompt, long min, long max) {
+        while (true) {
+            System.out.print(prompt);
+            String input = scanner.nextLine().trim();
+
+            try {
+                long value = Long.parseLong(input);
+                if (value >= min && value <= max) {
+                    return value;
+                }
+                System.out.println("❌ Please enter a number between " + min + " and " + max);
+            } catch (NumberFormatException e) {
+                System.out.println("❌ Invalid input. Please enter a valid number.");
+            }
+        }
+    }
+
     // Read non-empty string
     public String readNonEmpty(String prompt) {
         while (true) {
@@ -69,6 +89,23 @@ public class InputUtil {
         }
     }
 
+    // Read a time of day (HH:MM); empty input returns null
+    public LocalTime readOptionalTime(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            String input = scanner.nextLine().trim();
+
+            if (input.isEmpty()) {
+                return null;
+            }
+            try {
+                return LocalTime.parse(input, TIME_FORMATTER);
+            } catch (DateTimeParseException e) {
+                System.out.println("❌ Invalid time format. Please use HH:MM (e.g., 09:30)");
+            }
+        }
+    }
+
     // Read date with minimum date validation
     public LocalDate readDateWithMinimum(String prompt, LocalDate minDate) {
         while (true) {
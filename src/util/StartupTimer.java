@@ -0,0 +1,27 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StartupTimer {
+    private final long startNanos = System.nanoTime();
+    private final List<String> phaseNames = new ArrayList<>();
+    private final List<Long> phaseMillis = new ArrayList<>();
+    private final List<String> phaseDetails = new ArrayList<>();
+
+    // Record a finished phase (thread-safe, phases may finish on worker threads)
+    public synchronized void record(String phase, long startNanos, String detail) {
+        phaseNames.add(phase);
+        phaseMillis.add((System.nanoTime() - startNanos) / 1_000_000);
+        phaseDetails.add(detail == null ? "" : detail);
+    }
+
+    // Print the per-phase breakdown and total elapsed time
+    public synchronized void printReport() {
+        System.out.println("Startup timing:");
+        for (int i = 0; i < phaseNames.size(); i++) {
+            System.out.printf("  %-28s %6d ms  %s%n", phaseNames.get(i), phaseMillis.get(i), phaseDetails.get(i));
+        }
+        System.out.printf("  %-28s %6d ms%n%n", "Total", (System.nanoTime() - startNanos) / 1_000_000);
+    }
+}